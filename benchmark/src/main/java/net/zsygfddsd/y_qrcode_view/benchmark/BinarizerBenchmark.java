@@ -0,0 +1,57 @@
+package net.zsygfddsd.y_qrcode_view.benchmark;
+
+import com.google.zxing.NotFoundException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.PyramidStage;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotatedPlanarYUVLuminanceSource;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotationStage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link HybridBinarizer} on the framing rect, including the rotation of the
+ * crop it asks the source for, at full and at half resolution.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BinarizerBenchmark {
+
+    private final RotationStage rotationStage = new RotationStage();
+
+    private final PyramidStage pyramidStage = new PyramidStage();
+
+    @Benchmark
+    public BitMatrix hybridBinarizer(FrameState state) throws NotFoundException {
+        FrameCorpus.Frame frame = state.current;
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(
+                frame.data, frame.width, frame.height,
+                frame.cropLeft, frame.cropTop, frame.cropSize, frame.cropSize, rotationStage);
+        return new HybridBinarizer(source).getBlackMatrix();
+    }
+
+    @Benchmark
+    public BitMatrix hybridBinarizerHalfResolution(FrameState state) throws NotFoundException {
+        FrameCorpus.Frame frame = state.current;
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(
+                frame.data, frame.width, frame.height,
+                frame.cropLeft, frame.cropTop, frame.cropSize, frame.cropSize, rotationStage);
+        return new HybridBinarizer(source.downsample(pyramidStage)).getBlackMatrix();
+    }
+
+}
@@ -0,0 +1,188 @@
+package net.zsygfddsd.y_qrcode_view.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.EncodeHintType;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Random;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * The NV21 preview frames the benchmarks run on. A frame is named either by a
+ * synthetic key, {@code <symbology>_<width>x<height>_<lighting>} such as
+ * {@code qr_1280x720_dim}, or by the path of a recorded frame whose file name
+ * ends in {@code _<width>x<height>.nv21}.
+ * <p/>
+ * Synthetic frames are landscape, like the camera delivers them, and hold
+ * the code upright in the portrait orientation the decoder rotates to.
+ * <p/>
+ * 基准测试用的预览帧：合成的二维码/条形码帧，或者从设备上录制的原始NV21帧。
+ */
+public final class FrameCorpus {
+
+    /**
+     * 扫描框相对于屏幕小边的比例，与rect_width_scale一致
+     */
+    static final float RECT_WIDTH_SCALE = 0.6f;
+
+    private static final String CONTENTS = "http://www.zsygfddsd.net/y_qrcode_view?frame=benchmark";
+
+    private static final String ONE_D_CONTENTS = "Y_QRCODE_VIEW-12345";
+
+    private static final Pattern SYNTHETIC_KEY = Pattern.compile("(\\w+?)_(\\d+)x(\\d+)_(\\w+)");
+
+    private static final Pattern RECORDED_NAME = Pattern.compile(".*_(\\d+)x(\\d+)\\.nv21");
+
+    public enum Symbology {
+        QR,
+        CODE128
+    }
+
+    /**
+     * 模拟的光照条件：亮度增益、偏移和噪声
+     */
+    public enum Lighting {
+        NORMAL(100, 0, 4),
+        DIM(30, 0, 6),
+        BRIGHT(60, 100, 4),
+        LOW_CONTRAST(35, 80, 3);
+
+        final int gainPercent;
+        final int offset;
+        final int noise;
+
+        Lighting(int gainPercent, int offset, int noise) {
+            this.gainPercent = gainPercent;
+            this.offset = offset;
+            this.noise = noise;
+        }
+    }
+
+    /**
+     * A landscape NV21 frame and the framing rect in rotated (portrait)
+     * coordinates, the same as {@code CameraManager.getFramingRectOnScreen()}.
+     */
+    public static final class Frame {
+
+        public final String name;
+        public final byte[] data;
+        public final int width;
+        public final int height;
+        public final int cropLeft;
+        public final int cropTop;
+        public final int cropSize;
+
+        Frame(String name, byte[] data, int width, int height) {
+            if (data.length < width * height) {
+                throw new IllegalArgumentException(name + " is smaller than "
+                        + width + "x" + height);
+            }
+            this.name = name;
+            this.data = data;
+            this.width = width;
+            this.height = height;
+            // 旋转后图像宽为height，高为width，扫描框居中
+            this.cropSize = (int) (Math.min(width, height) * RECT_WIDTH_SCALE);
+            this.cropLeft = (height - cropSize) / 2;
+            this.cropTop = (width - cropSize) / 2;
+        }
+
+    }
+
+    private FrameCorpus() {
+    }
+
+    public static Frame load(String key) throws IOException {
+        if (key.endsWith(".nv21")) {
+            return loadRecorded(new File(key));
+        }
+        Matcher matcher = SYNTHETIC_KEY.matcher(key);
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Not a frame key: " + key);
+        }
+        Symbology symbology = Symbology.valueOf(matcher.group(1).toUpperCase(Locale.US));
+        int width = Integer.parseInt(matcher.group(2));
+        int height = Integer.parseInt(matcher.group(3));
+        Lighting lighting = Lighting.valueOf(matcher.group(4).toUpperCase(Locale.US));
+        return new Frame(key, render(symbology, width, height, lighting), width, height);
+    }
+
+    static Frame loadRecorded(File file) throws IOException {
+        Matcher matcher = RECORDED_NAME.matcher(file.getName());
+        if (!matcher.matches()) {
+            throw new IllegalArgumentException("Recorded frame name must end in _<width>x<height>.nv21: "
+                    + file);
+        }
+        int width = Integer.parseInt(matcher.group(1));
+        int height = Integer.parseInt(matcher.group(2));
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return new Frame(file.getName(), data, width, height);
+    }
+
+    /**
+     * Renders a landscape NV21 frame with the code centered in the framing
+     * rect. Pixel (x, y) of the portrait image lives at
+     * {@code data[y + (height - 1 - x) * width]}.
+     */
+    static byte[] render(Symbology symbology, int width, int height, Lighting lighting) {
+        int side = (int) (Math.min(width, height) * RECT_WIDTH_SCALE) * 3 / 4;
+        BitMatrix code = encode(symbology, side);
+        int codeLeft = (height - code.getWidth()) / 2;
+        int codeTop = (width - code.getHeight()) / 2;
+        Random random = new Random(width * 31 + lighting.ordinal());
+        byte[] frame = new byte[width * height * 3 / 2];
+        // (x, y)为竖屏图像中的坐标，竖屏图像宽为height，高为width
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < height; x++) {
+                int codeX = x - codeLeft;
+                int codeY = y - codeTop;
+                boolean black = codeX >= 0 && codeX < code.getWidth()
+                        && codeY >= 0 && codeY < code.getHeight()
+                        && code.get(codeX, codeY);
+                // 加一点从左到右的渐变，模拟不均匀的光照
+                int luma = black ? 30 : 200 + x * 40 / height;
+                luma = luma * lighting.gainPercent / 100 + lighting.offset;
+                if (lighting.noise > 0) {
+                    luma += random.nextInt(2 * lighting.noise + 1) - lighting.noise;
+                }
+                frame[y + (height - 1 - x) * width] = (byte) Math.max(0, Math.min(255, luma));
+            }
+        }
+        for (int i = width * height; i < frame.length; i++) {
+            frame[i] = (byte) 128;
+        }
+        return frame;
+    }
+
+    private static BitMatrix encode(Symbology symbology, int side) {
+        try {
+            if (symbology == Symbology.QR) {
+                return new QRCodeWriter().encode(CONTENTS, BarcodeFormat.QR_CODE, side, side);
+            }
+            Map<EncodeHintType, Object> hints = new EnumMap<EncodeHintType, Object>(EncodeHintType.class);
+            hints.put(EncodeHintType.MARGIN, 10);
+            return new Code128Writer().encode(ONE_D_CONTENTS, BarcodeFormat.CODE_128,
+                    side, side / 2, hints);
+        } catch (WriterException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+}
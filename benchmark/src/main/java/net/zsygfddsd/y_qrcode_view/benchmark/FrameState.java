@@ -0,0 +1,42 @@
+package net.zsygfddsd.y_qrcode_view.benchmark;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import java.io.IOException;
+
+/**
+ * The frame a benchmark runs on, one trial per corpus entry. Pass recorded
+ * frames with {@code -p frame=/path/a_1280x720.nv21,...} or through the
+ * {@code corpusDir} Gradle property.
+ */
+@State(Scope.Benchmark)
+public class FrameState {
+
+    @Param({
+            "qr_640x480_normal", "qr_640x480_dim", "qr_640x480_bright", "qr_640x480_low_contrast",
+            "qr_1280x720_normal", "qr_1280x720_dim", "qr_1280x720_bright", "qr_1280x720_low_contrast",
+            "qr_1920x1080_normal", "qr_1920x1080_dim", "qr_1920x1080_bright", "qr_1920x1080_low_contrast",
+            "code128_640x480_normal", "code128_640x480_dim",
+            "code128_1280x720_normal", "code128_1280x720_dim",
+            "code128_1920x1080_normal", "code128_1920x1080_dim"
+    })
+    public String frame;
+
+    FrameCorpus.Frame current;
+
+    /**
+     * 旧的解码路径：整帧旋转后的数据
+     */
+    byte[] rotatedFrame;
+
+    @Setup(Level.Trial)
+    public void load() throws IOException {
+        current = FrameCorpus.load(frame);
+        rotatedFrame = RotationBenchmark.rotateFullFrame(current.data, current.width, current.height);
+    }
+
+}
@@ -0,0 +1,59 @@
+package net.zsygfddsd.y_qrcode_view.benchmark;
+
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotatedPlanarYUVLuminanceSource;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotationStage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building the luminance source and reading its matrix, the way the
+ * binarizer does: {@link PlanarYUVLuminanceSource} over a rotated frame
+ * against {@link RotatedPlanarYUVLuminanceSource} over the camera buffer.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class LuminanceSourceBenchmark {
+
+    private final RotationStage rotationStage = new RotationStage();
+
+    @Benchmark
+    public PlanarYUVLuminanceSource planarYUVSource(FrameState state) {
+        FrameCorpus.Frame frame = state.current;
+        return new PlanarYUVLuminanceSource(state.rotatedFrame, frame.height, frame.width,
+                frame.cropLeft, frame.cropTop, frame.cropSize, frame.cropSize, false);
+    }
+
+    @Benchmark
+    public byte[] planarYUVMatrix(FrameState state) {
+        return planarYUVSource(state).getMatrix();
+    }
+
+    @Benchmark
+    public RotatedPlanarYUVLuminanceSource rotatedSource(FrameState state) {
+        FrameCorpus.Frame frame = state.current;
+        return new RotatedPlanarYUVLuminanceSource(frame.data, frame.width, frame.height,
+                frame.cropLeft, frame.cropTop, frame.cropSize, frame.cropSize, rotationStage);
+    }
+
+    @Benchmark
+    public byte[] rotatedMatrix(FrameState state) {
+        return rotatedSource(state).getMatrix();
+    }
+
+}
@@ -0,0 +1,74 @@
+package net.zsygfddsd.y_qrcode_view.benchmark;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotatedPlanarYUVLuminanceSource;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotationStage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The whole per-frame decode of DecodeHandler: source, binarizer and
+ * {@link MultiFormatReader#decodeWithState}, with the QR and 1D formats the
+ * capture view enables. Frames without a result are measured too, that is
+ * what most preview frames cost.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class ReaderBenchmark {
+
+    private final RotationStage rotationStage = new RotationStage();
+
+    private final MultiFormatReader reader = new MultiFormatReader();
+
+    @Setup
+    public void setUp() {
+        EnumSet<BarcodeFormat> formats = EnumSet.of(BarcodeFormat.QR_CODE,
+                BarcodeFormat.CODE_128, BarcodeFormat.CODE_39, BarcodeFormat.EAN_13,
+                BarcodeFormat.EAN_8, BarcodeFormat.UPC_A, BarcodeFormat.UPC_E,
+                BarcodeFormat.ITF, BarcodeFormat.CODABAR);
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        reader.setHints(hints);
+    }
+
+    @Benchmark
+    public Result decodeWithState(FrameState state) {
+        FrameCorpus.Frame frame = state.current;
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(
+                frame.data, frame.width, frame.height,
+                frame.cropLeft, frame.cropTop, frame.cropSize, frame.cropSize, rotationStage);
+        try {
+            return reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            reader.reset();
+        }
+    }
+
+}
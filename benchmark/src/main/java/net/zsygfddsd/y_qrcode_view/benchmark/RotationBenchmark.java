@@ -0,0 +1,56 @@
+package net.zsygfddsd.y_qrcode_view.benchmark;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotationStage;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The old full-frame rotation loop of DecodeHandler against
+ * {@link RotationStage}, which only rotates the framing rect.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class RotationBenchmark {
+
+    private final RotationStage rotationStage = new RotationStage();
+
+    @Benchmark
+    public byte[] fullFrame(FrameState state) {
+        FrameCorpus.Frame frame = state.current;
+        return rotateFullFrame(frame.data, frame.width, frame.height);
+    }
+
+    @Benchmark
+    public byte[] rotationStage(FrameState state) {
+        FrameCorpus.Frame frame = state.current;
+        return rotationStage.rotate(frame.data, frame.width, frame.height,
+                frame.cropLeft, frame.cropTop, frame.cropSize, frame.cropSize);
+    }
+
+    /**
+     * The rotation DecodeHandler used to run on every preview frame.
+     */
+    static byte[] rotateFullFrame(byte[] data, int width, int height) {
+        byte[] rotatedData = new byte[data.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                rotatedData[x * height + height - y - 1] = data[x + y * width];
+        }
+        return rotatedData;
+    }
+
+}
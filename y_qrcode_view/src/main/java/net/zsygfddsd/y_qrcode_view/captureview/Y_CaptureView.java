@@ -4,9 +4,12 @@ import android.graphics.Bitmap;
 import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.support.v7.app.AlertDialog;
 import android.support.v7.app.AppCompatActivity;
 import android.util.Log;
+import android.view.MotionEvent;
+import android.view.ScaleGestureDetector;
 import android.view.SurfaceHolder;
 import android.view.SurfaceView;
 import android.view.View;
@@ -18,16 +21,20 @@ import com.google.zxing.client.result.ResultParser;
 
 import net.zsygfddsd.y_qrcode_view.R;
 import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.PreviewSizePolicy;
 import net.zsygfddsd.y_qrcode_view.qrcode.capture.AmbientLightManager;
 import net.zsygfddsd.y_qrcode_view.qrcode.capture.BeepManager;
 import net.zsygfddsd.y_qrcode_view.qrcode.capture.FinishListener;
 import net.zsygfddsd.y_qrcode_view.qrcode.capture.InactivityTimer;
 import net.zsygfddsd.y_qrcode_view.qrcode.capture.IntentSource;
 import net.zsygfddsd.y_qrcode_view.qrcode.decode.CaptureViewHandler;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.DecodeResult;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.DecodeMetrics;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.StartupTimings;
 import net.zsygfddsd.y_qrcode_view.qrcode.view.ViewfinderView;
 
-import java.io.IOException;
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 
@@ -53,6 +60,18 @@ public class Y_CaptureView implements
      */
     private boolean hasSurface;
 
+    /**
+     * 相机线程正在打开相机；每次onPause后加一，丢弃上一次打开的回调
+     */
+    private boolean cameraOpening;
+
+    private int cameraSession;
+
+    /**
+     * 打开相机、开始预览、第一帧解码的耗时
+     */
+    private final StartupTimings startupTimings = new StartupTimings();
+
     /**
      * 活动监控器。如果手机没有连接电源线，那么当相机开启后如果一直处于不被使用状态则该服务会将当前activity关闭。
      * 活动监控器全程监控扫描活跃状态，与CaptureActivity生命周期相同.每一次扫描过后都会重置该监控，即重新倒计时。
@@ -75,6 +94,11 @@ public class Y_CaptureView implements
 
     private Result lastResult;
 
+    /**
+     * 最近一次的解码结果，持有那一帧预览数据，重新扫描或暂停时释放
+     */
+    private DecodeResult lastDecodeResult;
+
     /**
      * 【辅助解码的参数(用作MultiFormatReader的参数)】 编码类型，该参数告诉扫描器采用何种编码方式解码，即EAN-13，QR
      * Code等等 对应于DecodeHintType.POSSIBLE_FORMATS类型
@@ -111,6 +135,85 @@ public class Y_CaptureView implements
 
     public Y_I_QrCodeHandleDelegate delegate;
 
+    /**
+     * 预览缓冲区个数
+     */
+    int previewBufferCount = CameraManager.DEFAULT_PREVIEW_BUFFER_COUNT;
+
+    /**
+     * 解码线程数，0表示按CPU核数决定
+     */
+    int decodeWorkerCount;
+
+    /**
+     * 同时解码的最大帧数，0表示与解码线程数相同
+     */
+    int maxFramesInFlight;
+
+    /**
+     * 解码成功后是否在扫描框内展示缩略图，关掉时只有调用getResultThumbnail才会生成
+     */
+    boolean resultThumbnailEnabled = true;
+
+    /**
+     * 解码各阶段的耗时统计，为null时不计时
+     */
+    DecodeMetrics decodeMetrics;
+
+    /**
+     * 是否在解码前过滤掉没有对比度或者严重失焦的帧
+     */
+    boolean preFilterEnabled = false;
+
+    /**
+     * 是否跳过手机移动中的帧，以及判断为移动的阈值，0表示默认值
+     */
+    boolean motionSkipEnabled = false;
+
+    float motionThreshold;
+
+    /**
+     * 是否先解码缩小一半的扫描框，解不出来时才解码原始分辨率或者中间区域
+     */
+    boolean pyramidDecodeEnabled;
+
+    /**
+     * 多码模式，以及同一个码不重复上报的时间窗口，0表示默认值
+     */
+    boolean multiCodeEnabled;
+
+    long duplicateWindowMillis;
+
+    /**
+     * 连续扫描模式，以及是否允许同一个码在离开画面后再次上报；也可以在设置里打开
+     */
+    boolean bulkModeEnabled;
+
+    boolean rememberDuplicates;
+
+    /**
+     * 双指缩放预览，以及码太小时自动放大
+     */
+    boolean pinchZoomEnabled;
+
+    boolean autoZoomEnabled;
+
+    /**
+     * 预览尺寸的选择策略，为null时选最大的尺寸
+     */
+    PreviewSizePolicy previewSizePolicy;
+
+    /**
+     * 连续扫描时每个码的提示音，在界面线程里执行
+     */
+    private final Runnable bulkFeedback = new Runnable() {
+        @Override
+        public void run() {
+            inactivityTimer.onActivity();
+            beepManager.playBeepSoundAndVibrate();
+        }
+    };
+
     public Y_CaptureView(AppCompatActivity context) {
         this.context = context;
     }
@@ -121,7 +224,32 @@ public class Y_CaptureView implements
         inactivityTimer = new InactivityTimer(context);
         beepManager = new BeepManager(context);
         ambientLightManager = new AmbientLightManager(context);
+        if (pinchZoomEnabled) {
+            initPinchZoom();
+        }
+
+    }
 
+    /**
+     * 双指缩放，每一步手势的缩放比例交给相机，同一帧内的多次修改只提交一次
+     */
+    private void initPinchZoom() {
+        final ScaleGestureDetector scaleDetector = new ScaleGestureDetector(context,
+                new ScaleGestureDetector.SimpleOnScaleGestureListener() {
+                    @Override
+                    public boolean onScale(ScaleGestureDetector detector) {
+                        if (cameraManager != null) {
+                            cameraManager.zoomBy(detector.getScaleFactor());
+                        }
+                        return true;
+                    }
+                });
+        surfaceView.setOnTouchListener(new View.OnTouchListener() {
+            @Override
+            public boolean onTouch(View v, MotionEvent event) {
+                return scaleDetector.onTouchEvent(event);
+            }
+        });
     }
 
     public void onResume() {
@@ -138,6 +266,12 @@ public class Y_CaptureView implements
         // 不建议放到onCreate中，因为如果在onCreate中加上首次启动展示帮助信息的代码的 话，
         // 会导致扫描窗口的尺寸计算有误的bug
         cameraManager = new CameraManager(context.getApplication());
+        // 缓冲模式下除了正在解码的帧，还要留一块给等待中的最新帧，一块给相机写下一帧
+        cameraManager.setPreviewBufferCount(previewBufferCount > 0
+                ? Math.max(previewBufferCount, getResolvedMaxFramesInFlight() + 2) : 0);
+        if (previewSizePolicy != null) {
+            cameraManager.setPreviewSizePolicy(previewSizePolicy);
+        }
 
         viewfinderView.setCameraManager(cameraManager);
 
@@ -183,12 +317,15 @@ public class Y_CaptureView implements
             handler.quitSynchronously();
             handler = null;
         }
+        releaseLastDecodeResult();
         inactivityTimer.onPause();
         ambientLightManager.stop();
         beepManager.close();
 
-        // 关闭摄像头
-        cameraManager.closeDriver();
+        // 关闭摄像头，排在相机线程里可能还没完成的打开之后
+        cameraSession++;
+        cameraOpening = false;
+        cameraManager.closeDriverAsync();
         if (!hasSurface) {
             SurfaceHolder surfaceHolder = surfaceView.getHolder();
             surfaceHolder.removeCallback(this);
@@ -239,26 +376,93 @@ public class Y_CaptureView implements
      * A valid barcode has been found, so give an indication of success and show
      * the results.
      *
-     * @param rawResult   The contents of the barcode.
-     * @param scaleFactor amount by which thumbnail was scaled
-     * @param barcode     A greyscale bitmap of the camera data which was decoded.
+     * @param decodeResult The contents of the barcode, with a lazy thumbnail
+     *                     of the camera data which was decoded.
      */
-    public void handleDecode(Result rawResult, Bitmap barcode, float scaleFactor) {
+    public void handleDecode(DecodeResult decodeResult) {
 
         // 重新计时
         inactivityTimer.onActivity();
 
+        releaseLastDecodeResult();
+        lastDecodeResult = decodeResult;
+        Result rawResult = decodeResult.getRawResult();
         lastResult = rawResult;
 
-        // 把图片画到扫描框
-        viewfinderView.drawResultBitmap(barcode);
+        // 先回调结果，缩略图不在这条路径上生成
+        String result = ResultParser.parseResult(rawResult).toString();
+        if (delegate != null) {
+            delegate.onScanQRCodeSuccess(result);
+        }
+
         // TODO: 16/3/9  根据配置播放提示音和震动
         beepManager.playBeepSoundAndVibrate();
 
+        // 把图片画到扫描框
+        if (resultThumbnailEnabled) {
+            Bitmap barcode = decodeResult.getThumbnail();
+            if (barcode != null) {
+                viewfinderView.drawResultBitmap(barcode);
+            }
+        }
+    }
+
+    /**
+     * 多码模式下新出现的码，扫描不停止，也不显示缩略图
+     *
+     * @param results codes not reported within the duplicate window
+     */
+    public void handleStreamedResults(List<Result> results) {
+        inactivityTimer.onActivity();
+
+        for (Result rawResult : results) {
+            String result = ResultParser.parseResult(rawResult).toString();
+            if (delegate instanceof Y_I_MultiQrCodeHandleDelegate) {
+                ((Y_I_MultiQrCodeHandleDelegate) delegate).onScanQRCodeFound(result,
+                        rawResult.getBarcodeFormat());
+            } else if (delegate != null) {
+                delegate.onScanQRCodeSuccess(result);
+            }
+        }
+
+        beepManager.playBeepSoundAndVibrate();
+    }
+
+    /**
+     * 连续扫描模式下的结果，在结果队列自己的线程里回调，扫描不停止
+     *
+     * @param rawResult a code not reported before, see {@link #isRememberDuplicates()}
+     */
+    public void handleBulkResult(Result rawResult) {
         String result = ResultParser.parseResult(rawResult).toString();
-        if (delegate != null) {
+        if (delegate instanceof Y_I_MultiQrCodeHandleDelegate) {
+            ((Y_I_MultiQrCodeHandleDelegate) delegate).onScanQRCodeFound(result,
+                    rawResult.getBarcodeFormat());
+        } else if (delegate != null) {
             delegate.onScanQRCodeSuccess(result);
         }
+        context.runOnUiThread(bulkFeedback);
+    }
+
+    /**
+     * 连续扫描模式下最近一分钟回调的码的个数，不到一分钟时按比例折算
+     *
+     * @return codes per minute, 0 outside bulk mode
+     */
+    public float getCodesPerMinute() {
+        CaptureViewHandler theHandler = handler;
+        return theHandler == null ? 0f : theHandler.getCodesPerMinute();
+    }
+
+    /**
+     * 最近一次扫描结果所在那一帧的缩略图，第一次调用时才生成
+     *
+     * @return A greyscale bitmap of the camera data which was decoded, or null
+     * if there is no result or the scan has been restarted since.
+     */
+    public Bitmap getResultThumbnail() {
+        DecodeResult decodeResult = lastDecodeResult;
+        return decodeResult == null ? null : decodeResult.getThumbnail();
     }
 
     public void restartPreviewAfterDelay(long delayMS) {
@@ -284,9 +488,157 @@ public class Y_CaptureView implements
         return context;
     }
 
+    /**
+     * 每秒解码完成的帧数（不论成功与否），用来观察多线程解码的吞吐量
+     *
+     * @return frames decoded per second, 0 when not scanning
+     */
+    public float getFramesDecodedPerSecond() {
+        CaptureViewHandler theHandler = handler;
+        return theHandler == null ? 0f : theHandler.getFramesDecodedPerSecond();
+    }
+
+    /**
+     * 被丢掉没有解码的预览帧数：被更新的帧顶替、等待太久过期或者解码线程都在忙
+     *
+     * @return dropped preview frames, 0 when not scanning
+     */
+    public long getDroppedFrameCount() {
+        CaptureViewHandler theHandler = handler;
+        return theHandler == null ? 0 : theHandler.getDroppedFrameCount();
+    }
+
+    /**
+     * @return how long the camera took to open, to start the preview and to
+     * get the first frame through the decoder
+     */
+    public StartupTimings getStartupTimings() {
+        return startupTimings;
+    }
+
+    /**
+     * Called on the main thread whenever a frame has been through the decoder.
+     */
+    public void onFrameDecoded() {
+        if (startupTimings.getTimeToFirstDecodeMillis() < 0) {
+            startupTimings.onFrameDecoded(SystemClock.elapsedRealtime());
+            Log.i(TAG, "Startup: " + startupTimings);
+        }
+    }
+
+    /**
+     * @return the metrics registered through the builder, or null
+     */
+    public DecodeMetrics getDecodeMetrics() {
+        return decodeMetrics;
+    }
+
+    /**
+     * @return whether frames without contrast or sharp edges skip the readers
+     */
+    public boolean isPreFilterEnabled() {
+        return preFilterEnabled;
+    }
+
+    /**
+     * @return whether frames taken while the phone moves are skipped
+     */
+    public boolean isMotionSkipEnabled() {
+        return motionSkipEnabled;
+    }
+
+    /**
+     * @return whether frames are decoded at half resolution first
+     */
+    public boolean isPyramidDecodeEnabled() {
+        return pyramidDecodeEnabled;
+    }
+
+    /**
+     * @return whether every code of a frame is reported, without ending the scan
+     */
+    public boolean isMultiCodeEnabled() {
+        return multiCodeEnabled;
+    }
+
+    /**
+     * @return how long a code must be out of view before it is reported again,
+     * 0 for the default
+     */
+    public long getDuplicateWindowMillis() {
+        return duplicateWindowMillis;
+    }
+
+    /**
+     * @return whether scanning goes on after a code was found; the
+     * {@code Config.KEY_BULK_MODE} preference turns it on as well
+     */
+    public boolean isBulkModeEnabled() {
+        return bulkModeEnabled;
+    }
+
+    /**
+     * @return whether a code is reported again in bulk mode once it was out of
+     * view for the duplicate window, instead of once per scan; the
+     * {@code Config.KEY_REMEMBER_DUPLICATES} preference turns it on as well
+     */
+    public boolean isRememberDuplicates() {
+        return rememberDuplicates;
+    }
+
+    /**
+     * @return how the preview size is chosen, null for the largest size
+     */
+    public PreviewSizePolicy getPreviewSizePolicy() {
+        return previewSizePolicy;
+    }
+
+    /**
+     * @return whether the camera zooms in on its own when a code is found but
+     * too small to be decoded
+     */
+    public boolean isAutoZoomEnabled() {
+        return autoZoomEnabled;
+    }
+
+    /**
+     * @return the motion above which frames are skipped, 0 for the default
+     */
+    public float getMotionThreshold() {
+        return motionThreshold;
+    }
+
+    /**
+     * @return whether the thumbnail of the decoded frame is drawn into the viewfinder
+     */
+    public boolean isResultThumbnailEnabled() {
+        return resultThumbnailEnabled;
+    }
+
+    /**
+     * 把最近一次结果持有的预览缓冲区还给相机
+     */
+    private void releaseLastDecodeResult() {
+        if (lastDecodeResult != null) {
+            lastDecodeResult.release();
+            lastDecodeResult = null;
+        }
+    }
+
+    private int getResolvedDecodeWorkerCount() {
+        return decodeWorkerCount > 0 ? decodeWorkerCount
+                : CaptureViewHandler.getDefaultDecodeWorkerCount();
+    }
+
+    private int getResolvedMaxFramesInFlight() {
+        int workers = getResolvedDecodeWorkerCount();
+        return maxFramesInFlight > 0 ? Math.min(maxFramesInFlight, workers) : workers;
+    }
+
     private void resetStatusView() {
         viewfinderView.setVisibility(View.VISIBLE);
         lastResult = null;
+        releaseLastDecodeResult();
     }
 
     public void drawViewfinder() {
@@ -298,29 +650,66 @@ public class Y_CaptureView implements
             throw new IllegalStateException("No SurfaceHolder provided");
         }
 
-        if (cameraManager.isOpen()) {
+        if (cameraManager.isOpen() || cameraOpening) {
             Log.w(TAG,
                     "initCamera() while already open -- late SurfaceView callback?");
             return;
         }
-        try {
-            cameraManager.openDriver(surfaceHolder);
-            // Creating the handler starts the preview, which can also throw a
-            // RuntimeException.
-            if (handler == null) {
-                handler = new CaptureViewHandler(this, decodeFormats,
-                        decodeHints, characterSet, cameraManager);
+        // 在相机线程里打开相机并开始预览，界面线程不等待
+        cameraOpening = true;
+        startupTimings.onOpenRequested(SystemClock.elapsedRealtime());
+        cameraManager.openDriverAsync(surfaceHolder, new CameraStateCallback(cameraSession));
+    }
+
+    /**
+     * 相机线程的回调，onPause之后才到达的回调属于上一次打开，直接忽略
+     */
+    private final class CameraStateCallback implements CameraManager.StateCallback {
+
+        private final int session;
+
+        CameraStateCallback(int session) {
+            this.session = session;
+        }
+
+        @Override
+        public void onCameraOpened() {
+            if (session == cameraSession) {
+                startupTimings.onCameraOpened(SystemClock.elapsedRealtime());
             }
-            decodeOrStoreSavedBitmap(null, null);
-        } catch (IOException ioe) {
-            Log.w(TAG, ioe);
-            displayFrameworkBugMessageAndExit();
-        } catch (RuntimeException e) {
-            // Barcode Scanner has seen crashes in the wild of this variety:
-            // java.?lang.?RuntimeException: Fail to connect to camera service
+        }
+
+        @Override
+        public void onPreviewStarted() {
+            if (session != cameraSession) {
+                return;
+            }
+            cameraOpening = false;
+            startupTimings.onPreviewStarted(SystemClock.elapsedRealtime());
+            try {
+                // 预览已经在相机线程里开始了，这里只启动解码
+                if (handler == null) {
+                    handler = new CaptureViewHandler(Y_CaptureView.this, decodeFormats,
+                            decodeHints, characterSet, cameraManager,
+                            getResolvedDecodeWorkerCount(), getResolvedMaxFramesInFlight());
+                }
+                decodeOrStoreSavedBitmap(null, null);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "Unexpected error initializing camera", e);
+                displayFrameworkBugMessageAndExit();
+            }
+        }
+
+        @Override
+        public void onCameraError(Exception e) {
+            if (session != cameraSession) {
+                return;
+            }
+            cameraOpening = false;
             Log.w(TAG, "Unexpected error initializing camera", e);
             displayFrameworkBugMessageAndExit();
         }
+
     }
 
     /**
@@ -339,7 +728,7 @@ public class Y_CaptureView implements
             }
             if (savedResultToShow != null) {
                 Message message = Message.obtain(handler,
-                        R.id.decode_succeeded, savedResultToShow);
+                        R.id.decode_succeeded, new DecodeResult(savedResultToShow));
                 handler.sendMessage(message);
             }
             savedResultToShow = null;
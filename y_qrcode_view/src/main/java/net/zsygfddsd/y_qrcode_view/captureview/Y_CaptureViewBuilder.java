@@ -3,6 +3,9 @@ package net.zsygfddsd.y_qrcode_view.captureview;
 import android.support.v7.app.AppCompatActivity;
 import android.view.SurfaceView;
 
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.PreviewSizePolicy;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.DecodeMetrics;
 import net.zsygfddsd.y_qrcode_view.qrcode.view.ViewfinderView;
 
 /**
@@ -19,6 +22,38 @@ public class Y_CaptureViewBuilder {
 
     private Y_I_QrCodeHandleDelegate delegate;
 
+    private int previewBufferCount = CameraManager.DEFAULT_PREVIEW_BUFFER_COUNT;
+
+    private int decodeWorkerCount;
+
+    private int maxFramesInFlight;
+
+    private boolean resultThumbnailEnabled = true;
+
+    private DecodeMetrics decodeMetrics;
+
+    private boolean preFilterEnabled = false;
+
+    private boolean motionSkipEnabled = false;
+
+    private float motionThreshold;
+
+    private boolean pyramidDecodeEnabled;
+
+    private boolean multiCodeEnabled;
+
+    private long duplicateWindowMillis;
+
+    private boolean bulkModeEnabled;
+
+    private boolean rememberDuplicates;
+
+    private boolean pinchZoomEnabled;
+
+    private boolean autoZoomEnabled;
+
+    private PreviewSizePolicy previewSizePolicy;
+
     public Y_CaptureViewBuilder(AppCompatActivity context) {
         this.context = context;
     }
@@ -38,6 +73,193 @@ public class Y_CaptureViewBuilder {
         return this;
     }
 
+    /**
+     * 预览缓冲区的个数，相机循环复用这些缓冲区，0表示每帧使用一次性回调
+     *
+     * @param previewBufferCount
+     * @return
+     */
+    public Y_CaptureViewBuilder setPreviewBufferCount(int previewBufferCount) {
+        this.previewBufferCount = previewBufferCount;
+        return this;
+    }
+
+    /**
+     * 解码线程数，每个线程有自己的解码器，不设置时按CPU核数决定
+     *
+     * @param decodeWorkerCount
+     * @return
+     */
+    public Y_CaptureViewBuilder setDecodeWorkerCount(int decodeWorkerCount) {
+        this.decodeWorkerCount = decodeWorkerCount;
+        return this;
+    }
+
+    /**
+     * 同时解码的最大帧数，不能超过解码线程数，不设置时与解码线程数相同
+     *
+     * @param maxFramesInFlight
+     * @return
+     */
+    public Y_CaptureViewBuilder setMaxFramesInFlight(int maxFramesInFlight) {
+        this.maxFramesInFlight = maxFramesInFlight;
+        return this;
+    }
+
+    /**
+     * 解码成功后是否在扫描框中显示那一帧的缩略图，默认显示；
+     * 关掉后只有调用Y_CaptureView.getResultThumbnail()时才会生成缩略图
+     *
+     * @param resultThumbnailEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setResultThumbnailEnabled(boolean resultThumbnailEnabled) {
+        this.resultThumbnailEnabled = resultThumbnailEnabled;
+        return this;
+    }
+
+    /**
+     * 统计解码流水线各阶段的耗时（相机出帧、排队、旋转、二值化、识别、结果分发、界面），
+     * 不设置时不计时
+     *
+     * @param decodeMetrics
+     * @return
+     */
+    public Y_CaptureViewBuilder setDecodeMetrics(DecodeMetrics decodeMetrics) {
+        this.decodeMetrics = decodeMetrics;
+        return this;
+    }
+
+    /**
+     * 解码前先快速判断画面里有没有可能存在条码，对着白墙或者严重失焦的帧直接跳过，
+     * 默认关闭
+     *
+     * @param preFilterEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setPreFilterEnabled(boolean preFilterEnabled) {
+        this.preFilterEnabled = preFilterEnabled;
+        return this;
+    }
+
+    /**
+     * 比较相邻两帧的亮度缩略特征，手机还在移动时跳过这些帧，画面稳定后马上恢复解码，
+     * 还没有在真机的帧序列上验证过，默认关闭
+     *
+     * @param motionSkipEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setMotionSkipEnabled(boolean motionSkipEnabled) {
+        this.motionSkipEnabled = motionSkipEnabled;
+        return this;
+    }
+
+    /**
+     * 判断为移动的阈值，即相邻两帧去掉整体亮度变化后平均每个像素的亮度差，
+     * 越小越容易跳过，不设置时使用默认值
+     *
+     * @param motionThreshold
+     * @return
+     */
+    public Y_CaptureViewBuilder setMotionThreshold(float motionThreshold) {
+        this.motionThreshold = motionThreshold;
+        return this;
+    }
+
+    /**
+     * 金字塔解码：先解码缩小一半的扫描框，速度快且大部分码都能解出来；
+     * 解不出来时轮流解码原始分辨率和扫描框中间一半的区域，用于很小或很远的码，默认关闭
+     *
+     * @param pyramidDecodeEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setPyramidDecodeEnabled(boolean pyramidDecodeEnabled) {
+        this.pyramidDecodeEnabled = pyramidDecodeEnabled;
+        return this;
+    }
+
+    /**
+     * 多码模式：一帧里的所有码都会解出来，扫描不会在第一个码之后停止，
+     * 新出现的码通过{@link Y_I_MultiQrCodeHandleDelegate}逐个回调，默认关闭
+     *
+     * @param multiCodeEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setMultiCodeEnabled(boolean multiCodeEnabled) {
+        this.multiCodeEnabled = multiCodeEnabled;
+        return this;
+    }
+
+    /**
+     * 多码模式下的去重时间窗口，同一个码离开画面超过这个时间后才会再次回调，不设置时使用默认值
+     *
+     * @param duplicateWindowMillis
+     * @return
+     */
+    public Y_CaptureViewBuilder setDuplicateWindowMillis(long duplicateWindowMillis) {
+        this.duplicateWindowMillis = duplicateWindowMillis;
+        return this;
+    }
+
+    /**
+     * 连续扫描模式：找到码后不停止扫描，结果放进有界队列，由单独的线程回调delegate，
+     * 同一个码只上报一次，默认关闭；设置里的Config.KEY_BULK_MODE也可以打开
+     *
+     * @param bulkModeEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setBulkModeEnabled(boolean bulkModeEnabled) {
+        this.bulkModeEnabled = bulkModeEnabled;
+        return this;
+    }
+
+    /**
+     * 连续扫描模式下，同一个码离开画面超过去重时间窗口后是否再次上报，默认不上报；
+     * 设置里的Config.KEY_REMEMBER_DUPLICATES也可以打开
+     *
+     * @param rememberDuplicates
+     * @return
+     */
+    public Y_CaptureViewBuilder setRememberDuplicates(boolean rememberDuplicates) {
+        this.rememberDuplicates = rememberDuplicates;
+        return this;
+    }
+
+    /**
+     * 双指缩放预览画面，手势过程中每帧最多修改一次相机参数，默认关闭
+     *
+     * @param pinchZoomEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setPinchZoomEnabled(boolean pinchZoomEnabled) {
+        this.pinchZoomEnabled = pinchZoomEnabled;
+        return this;
+    }
+
+    /**
+     * 自动缩放：找到了码的定位点，但码在扫描框里太小解不出来时自动放大，
+     * 支持平滑缩放的相机会逐渐放大，默认关闭
+     *
+     * @param autoZoomEnabled
+     * @return
+     */
+    public Y_CaptureViewBuilder setAutoZoomEnabled(boolean autoZoomEnabled) {
+        this.autoZoomEnabled = autoZoomEnabled;
+        return this;
+    }
+
+    /**
+     * 预览尺寸的选择策略，不设置时选择宽高比合适的最大尺寸；
+     * PreviewSizePolicy.decodeBudget()按码的密度选择够用的最小尺寸，解码耗时超出预算时自动降一档
+     *
+     * @param previewSizePolicy
+     * @return
+     */
+    public Y_CaptureViewBuilder setPreviewSizePolicy(PreviewSizePolicy previewSizePolicy) {
+        this.previewSizePolicy = previewSizePolicy;
+        return this;
+    }
+
     public Y_CaptureView create() {
         Y_CaptureView y_captureView = new Y_CaptureView(context);
         if (this.surfaceView == null) {
@@ -46,9 +268,40 @@ public class Y_CaptureViewBuilder {
         if (this.viewfinderView == null) {
             throw new IllegalArgumentException("viewfinderView must not be null!");
         }
+        if (this.previewBufferCount < 0) {
+            throw new IllegalArgumentException("previewBufferCount must not be negative!");
+        }
+        if (this.decodeWorkerCount < 0) {
+            throw new IllegalArgumentException("decodeWorkerCount must not be negative!");
+        }
+        if (this.maxFramesInFlight < 0) {
+            throw new IllegalArgumentException("maxFramesInFlight must not be negative!");
+        }
+        if (this.motionThreshold < 0) {
+            throw new IllegalArgumentException("motionThreshold must not be negative!");
+        }
+        if (this.duplicateWindowMillis < 0) {
+            throw new IllegalArgumentException("duplicateWindowMillis must not be negative!");
+        }
         y_captureView.surfaceView = this.surfaceView;
         y_captureView.viewfinderView = this.viewfinderView;
         y_captureView.delegate = this.delegate;
+        y_captureView.previewBufferCount = this.previewBufferCount;
+        y_captureView.decodeWorkerCount = this.decodeWorkerCount;
+        y_captureView.maxFramesInFlight = this.maxFramesInFlight;
+        y_captureView.resultThumbnailEnabled = this.resultThumbnailEnabled;
+        y_captureView.decodeMetrics = this.decodeMetrics;
+        y_captureView.preFilterEnabled = this.preFilterEnabled;
+        y_captureView.motionSkipEnabled = this.motionSkipEnabled;
+        y_captureView.motionThreshold = this.motionThreshold;
+        y_captureView.pyramidDecodeEnabled = this.pyramidDecodeEnabled;
+        y_captureView.multiCodeEnabled = this.multiCodeEnabled;
+        y_captureView.duplicateWindowMillis = this.duplicateWindowMillis;
+        y_captureView.bulkModeEnabled = this.bulkModeEnabled;
+        y_captureView.rememberDuplicates = this.rememberDuplicates;
+        y_captureView.pinchZoomEnabled = this.pinchZoomEnabled;
+        y_captureView.autoZoomEnabled = this.autoZoomEnabled;
+        y_captureView.previewSizePolicy = this.previewSizePolicy;
         return y_captureView;
     }
 
@@ -0,0 +1,15 @@
+package net.zsygfddsd.y_qrcode_view.captureview;
+
+import com.google.zxing.BarcodeFormat;
+
+/**
+ * 多码模式下的回调：扫描不会在第一个码之后停止，每个新出现的码回调一次，
+ * 同一个码在去重时间窗口内不会重复回调。
+ * <p/>
+ * 只实现{@link Y_I_QrCodeHandleDelegate}时，多码模式下的每个码都回调onScanQRCodeSuccess。
+ */
+public interface Y_I_MultiQrCodeHandleDelegate extends Y_I_QrCodeHandleDelegate {
+
+    void onScanQRCodeFound(String result, BarcodeFormat format);
+
+}
@@ -50,11 +50,13 @@ final class AutoFocusManager implements Camera.AutoFocusCallback {
 	private final Camera camera;
 	private AsyncTask<?, ?, ?> outstandingTask;
 
-	AutoFocusManager(Context context, Camera camera) {
+	/**
+	 * @param currentFocusMode 相机当前的对焦模式，由调用者从缓存的参数中取出，省掉一次getParameters
+	 */
+	AutoFocusManager(Context context, Camera camera, String currentFocusMode) {
 		this.camera = camera;
 		SharedPreferences sharedPrefs = PreferenceManager
 				.getDefaultSharedPreferences(context);
-		String currentFocusMode = camera.getParameters().getFocusMode();
 		useAutoFocus = sharedPrefs.getBoolean(Config.KEY_AUTO_FOCUS, true)
 				&& FOCUS_MODES_CALLING_AF.contains(currentFocusMode);
 		Log.i(TAG, "Current focus mode '" + currentFocusMode
@@ -0,0 +1,135 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.os.Build;
+
+/**
+ * Remembers the configuration negotiated with a camera, so later opens on the
+ * same device can apply it directly instead of sorting every supported
+ * preview size and searching the supported modes again.
+ * <p/>
+ * 按机型、摄像头和屏幕尺寸保存协商好的相机配置，下次打开时直接使用；
+ * 系统升级后或者参数设置后没有生效时作废。
+ */
+final class CameraConfigCache {
+
+    private static final String PREFS_NAME = "y_qrcode_camera_config";
+
+    /**
+     * 保存格式的版本，格式变化时旧的记录全部作废
+     */
+    static final int VERSION = 1;
+
+    private static final char SEPARATOR = ';';
+
+    /**
+     * One negotiated configuration. Mode fields are null when the camera
+     * supports none of the wanted values.
+     */
+    static final class Entry {
+
+        final int previewWidth;
+
+        final int previewHeight;
+
+        final String focusMode;
+
+        final String torchOnMode;
+
+        final String torchOffMode;
+
+        final String negativeEffect;
+
+        Entry(int previewWidth, int previewHeight, String focusMode,
+              String torchOnMode, String torchOffMode, String negativeEffect) {
+            this.previewWidth = previewWidth;
+            this.previewHeight = previewHeight;
+            this.focusMode = focusMode;
+            this.torchOnMode = torchOnMode;
+            this.torchOffMode = torchOffMode;
+            this.negativeEffect = negativeEffect;
+        }
+
+        /**
+         * @param fingerprint Identifies the system build the entry is valid for.
+         */
+        String encode(String fingerprint) {
+            return new StringBuilder()
+                    .append(VERSION).append(SEPARATOR)
+                    .append(fingerprint).append(SEPARATOR)
+                    .append(previewWidth).append(SEPARATOR)
+                    .append(previewHeight).append(SEPARATOR)
+                    .append(nullToEmpty(focusMode)).append(SEPARATOR)
+                    .append(nullToEmpty(torchOnMode)).append(SEPARATOR)
+                    .append(nullToEmpty(torchOffMode)).append(SEPARATOR)
+                    .append(nullToEmpty(negativeEffect))
+                    .toString();
+        }
+
+        /**
+         * @return the entry, or null if {@code value} is malformed, of another
+         * format version or was saved under another system build
+         */
+        static Entry decode(String value, String fingerprint) {
+            if (value == null) {
+                return null;
+            }
+            // 相机参数的取值里不会出现分号
+            String[] fields = value.split(String.valueOf(SEPARATOR), -1);
+            if (fields.length != 8 || !String.valueOf(VERSION).equals(fields[0])
+                    || !fields[1].equals(fingerprint)) {
+                return null;
+            }
+            try {
+                int width = Integer.parseInt(fields[2]);
+                int height = Integer.parseInt(fields[3]);
+                if (width <= 0 || height <= 0) {
+                    return null;
+                }
+                return new Entry(width, height, emptyToNull(fields[4]),
+                        emptyToNull(fields[5]), emptyToNull(fields[6]), emptyToNull(fields[7]));
+            } catch (NumberFormatException nfe) {
+                return null;
+            }
+        }
+
+        private static String nullToEmpty(String value) {
+            return value == null ? "" : value;
+        }
+
+        private static String emptyToNull(String value) {
+            return value.length() == 0 ? null : value;
+        }
+
+    }
+
+    private final SharedPreferences prefs;
+
+    CameraConfigCache(Context context) {
+        prefs = context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE);
+    }
+
+    /**
+     * @param policyTag Distinguishes configurations chosen by different
+     *                  preview size policies.
+     * @return the key of a camera of this device model at a display size
+     */
+    static String key(int cameraId, int screenWidth, int screenHeight, String policyTag) {
+        return Build.MANUFACTURER + '/' + Build.MODEL + '/' + cameraId + '/'
+                + screenWidth + 'x' + screenHeight + '/' + policyTag;
+    }
+
+    Entry get(String key) {
+        return Entry.decode(prefs.getString(key, null), Build.FINGERPRINT);
+    }
+
+    void put(String key, Entry entry) {
+        prefs.edit().putString(key, entry.encode(Build.FINGERPRINT)).apply();
+    }
+
+    void remove(String key) {
+        prefs.edit().remove(key).apply();
+    }
+
+}
@@ -69,15 +69,67 @@ final class CameraConfigurationManager {
      */
     private Point cameraResolution;
 
+    /**
+     * 上次协商好的配置，按机型、摄像头和屏幕尺寸保存
+     */
+    private final CameraConfigCache configCache;
+
+    private int cameraId;
+
+    private String cacheKey;
+
+    /**
+     * 本次打开命中的缓存，为null时完整协商
+     */
+    private CameraConfigCache.Entry cachedConfig;
+
+    private PreviewSizePolicy previewSizePolicy = PreviewSizePolicy.largest();
+
+    /**
+     * 扫描框边长相对于预览画面短边的比例
+     */
+    private float framingFraction = 1f;
+
+    /**
+     * 横屏方向的屏幕分辨率，与预览尺寸的宽高方向一致
+     */
+    private Point screenResolutionForCamera;
+
+    /**
+     * 开关闪光灯时使用的模式，只查找一次
+     */
+    private boolean torchModesResolved;
+
+    private String torchOnMode;
+
+    private String torchOffMode;
+
     CameraConfigurationManager(Context context) {
         this.context = context;
+        this.configCache = new CameraConfigCache(context);
+    }
+
+    /**
+     * @param cameraId The id the camera was opened with, part of the cache key.
+     */
+    void setCameraId(int cameraId) {
+        this.cameraId = cameraId;
+    }
+
+    /**
+     * @param policy          How the preview size is chosen.
+     * @param framingFraction Side of the framing rect relative to the shorter
+     *                        side of the screen.
+     */
+    void setPreviewSizePolicy(PreviewSizePolicy policy, float framingFraction) {
+        this.previewSizePolicy = policy;
+        this.framingFraction = framingFraction;
     }
 
     /**
      * Reads, one time, values from the camera that are needed by the app.
      */
     void initFromCameraParameters(Camera camera) {
-        Camera.Parameters parameters = camera.getParameters();
         WindowManager manager = (WindowManager) context
                 .getSystemService(Context.WINDOW_SERVICE);
         Display display = manager.getDefaultDisplay();
@@ -102,6 +154,18 @@ final class CameraConfigurationManager {
             screenResolutionForCamera.y = screenResolution.x;
         }
 
+        this.screenResolutionForCamera = screenResolutionForCamera;
+        cacheKey = CameraConfigCache.key(cameraId, screenResolution.x, screenResolution.y,
+                previewSizePolicy.getCacheTag());
+        cachedConfig = configCache.get(cacheKey);
+        if (cachedConfig != null) {
+            // 命中缓存，不再读取参数和筛选预览尺寸
+            cameraResolution = new Point(cachedConfig.previewWidth, cachedConfig.previewHeight);
+            Log.i(TAG, "Camera resolution from cache: " + cameraResolution);
+            return;
+        }
+
+        Camera.Parameters parameters = camera.getParameters();
         cameraResolution = findBestPreviewSizeValue(parameters,
                 screenResolutionForCamera);
 
@@ -120,16 +184,27 @@ final class CameraConfigurationManager {
         return point;
     }
 
-    void setDesiredCameraParameters(Camera camera, boolean safeMode) {
+    /**
+     * Applies the configuration, the one saved for this device when there is
+     * one, and verifies it. A saved configuration which the camera rejects or
+     * does not keep is dropped, so the next open negotiates again.
+     *
+     * @return the parameters read back from the camera after applying them,
+     * or null if the camera has none
+     */
+    Camera.Parameters setDesiredCameraParameters(Camera camera, boolean safeMode) {
         Camera.Parameters parameters = camera.getParameters();
 
         if (parameters == null) {
             Log.w(TAG,
                     "Device error: no camera parameters are available. Proceeding without configuration.");
-            return;
+            return null;
         }
 
-        Log.i(TAG, "Initial camera parameters: " + parameters.flatten());
+        CameraConfigCache.Entry cached = safeMode ? null : cachedConfig;
+        if (cached == null) {
+            Log.i(TAG, "Initial camera parameters: " + parameters.flatten());
+        }
 
         if (safeMode) {
             Log.w(TAG,
@@ -140,37 +215,56 @@ final class CameraConfigurationManager {
                 .getDefaultSharedPreferences(context);
 
         // 初始化闪光灯
+        if (cached != null) {
+            torchOnMode = cached.torchOnMode;
+            torchOffMode = cached.torchOffMode;
+            torchModesResolved = true;
+        }
         initializeTorch(parameters, prefs, safeMode);
 
-        // 默认使用自动对焦
-        String focusMode = findSettableValue(
-                parameters.getSupportedFocusModes(),
-                Camera.Parameters.FOCUS_MODE_AUTO);
-
-        // Maybe selected auto-focus but not available, so fall through here:
-        if (!safeMode && focusMode == null) {
-            focusMode = findSettableValue(parameters.getSupportedFocusModes(),
-                    Camera.Parameters.FOCUS_MODE_MACRO,
-                    Camera.Parameters.FOCUS_MODE_EDOF);
+        String focusMode;
+        String negativeEffect;
+        if (cached != null) {
+            focusMode = cached.focusMode;
+            negativeEffect = cached.negativeEffect;
+        } else {
+            // 默认使用自动对焦
+            focusMode = findSettableValue(
+                    parameters.getSupportedFocusModes(),
+                    Camera.Parameters.FOCUS_MODE_AUTO);
+
+            // Maybe selected auto-focus but not available, so fall through here:
+            if (!safeMode && focusMode == null) {
+                focusMode = findSettableValue(parameters.getSupportedFocusModes(),
+                        Camera.Parameters.FOCUS_MODE_MACRO,
+                        Camera.Parameters.FOCUS_MODE_EDOF);
+            }
+            negativeEffect = findSettableValue(
+                    parameters.getSupportedColorEffects(),
+                    Camera.Parameters.EFFECT_NEGATIVE);
         }
         if (focusMode != null) {
             parameters.setFocusMode(focusMode);
         }
 
-        if (prefs.getBoolean(Config.KEY_INVERT_SCAN, false)) {
-            String colorMode = findSettableValue(
-                    parameters.getSupportedColorEffects(),
-                    Camera.Parameters.EFFECT_NEGATIVE);
-            if (colorMode != null) {
-                parameters.setColorEffect(colorMode);
-            }
+        if (prefs.getBoolean(Config.KEY_INVERT_SCAN, false) && negativeEffect != null) {
+            parameters.setColorEffect(negativeEffect);
         }
         //设置预览图像的尺寸
         parameters.setPreviewSize(cameraResolution.x, cameraResolution.y);
         //设置相机的参数
-        camera.setParameters(parameters);
+        try {
+            camera.setParameters(parameters);
+        } catch (RuntimeException re) {
+            if (cached != null) {
+                Log.w(TAG, "Camera rejected cached configuration, dropping it");
+                invalidateCachedConfig();
+            }
+            throw re;
+        }
 
         Camera.Parameters afterParameters = camera.getParameters();
+        boolean kept = true;
         Camera.Size afterSize = afterParameters.getPreviewSize();
         if (afterSize != null
                 && (cameraResolution.x != afterSize.width || cameraResolution.y != afterSize.height)) {
@@ -180,9 +274,30 @@ final class CameraConfigurationManager {
                     + afterSize.width + 'x' + afterSize.height);
             cameraResolution.x = afterSize.width;
             cameraResolution.y = afterSize.height;
+            kept = false;
+        }
+        if (focusMode != null && !focusMode.equals(afterParameters.getFocusMode())) {
+            Log.w(TAG, "Camera did not keep focus mode " + focusMode);
+            kept = false;
+        }
+
+        if (cached != null && !kept) {
+            invalidateCachedConfig();
+        } else if (cached == null && kept && !safeMode && cacheKey != null) {
+            configCache.put(cacheKey, new CameraConfigCache.Entry(
+                    cameraResolution.x, cameraResolution.y, focusMode,
+                    torchOnMode, torchOffMode, negativeEffect));
         }
 
         camera.setDisplayOrientation(90);
+        return afterParameters;
+    }
+
+    private void invalidateCachedConfig() {
+        cachedConfig = null;
+        if (cacheKey != null) {
+            configCache.remove(cacheKey);
+        }
     }
 
     Point getCameraResolution() {
@@ -193,23 +308,25 @@ final class CameraConfigurationManager {
         return screenResolution;
     }
 
-    boolean getTorchState(Camera camera) {
-        if (camera != null) {
-            Camera.Parameters parameters = camera.getParameters();
-            if (parameters != null) {
-                String flashMode = camera.getParameters().getFlashMode();
-                return flashMode != null
-                        && (Camera.Parameters.FLASH_MODE_ON.equals(flashMode) || Camera.Parameters.FLASH_MODE_TORCH
-                        .equals(flashMode));
-            }
+    /**
+     * @param parameters The parameters last applied to the camera.
+     * @return whether the flash mode in them keeps the light on
+     */
+    static boolean isTorchOn(Camera.Parameters parameters) {
+        if (parameters != null) {
+            String flashMode = parameters.getFlashMode();
+            return flashMode != null
+                    && (Camera.Parameters.FLASH_MODE_ON.equals(flashMode) || Camera.Parameters.FLASH_MODE_TORCH
+                    .equals(flashMode));
         }
         return false;
     }
 
-    void setTorch(Camera camera, boolean newSetting) {
-        Camera.Parameters parameters = camera.getParameters();
+    /**
+     * Only changes {@code parameters}, the caller commits them to the camera.
+     */
+    void setTorch(Camera.Parameters parameters, boolean newSetting) {
         doSetTorch(parameters, newSetting, false);
-        camera.setParameters(parameters);
     }
 
     private void initializeTorch(Camera.Parameters parameters,
@@ -220,15 +337,15 @@ final class CameraConfigurationManager {
 
     private void doSetTorch(Camera.Parameters parameters, boolean newSetting,
                             boolean safeMode) {
-        String flashMode;
-        if (newSetting) {
-            flashMode = findSettableValue(parameters.getSupportedFlashModes(),
+        if (!torchModesResolved) {
+            torchOnMode = findSettableValue(parameters.getSupportedFlashModes(),
                     Camera.Parameters.FLASH_MODE_TORCH,
                     Camera.Parameters.FLASH_MODE_ON);
-        } else {
-            flashMode = findSettableValue(parameters.getSupportedFlashModes(),
+            torchOffMode = findSettableValue(parameters.getSupportedFlashModes(),
                     Camera.Parameters.FLASH_MODE_OFF);
+            torchModesResolved = true;
         }
+        String flashMode = newSetting ? torchOnMode : torchOffMode;
         if (flashMode != null) {
             parameters.setFlashMode(flashMode);
         }
@@ -252,6 +369,58 @@ final class CameraConfigurationManager {
             return new Point(defaultSize.width, defaultSize.height);
         }
 
+        List<Camera.Size> supportedPreviewSizes = findSuitablePreviewSizes(
+                rawSupportedSizes, screenResolution);
+
+        if (previewSizePolicy.isLargest()) {
+            for (Camera.Size supportedPreviewSize : supportedPreviewSizes) {
+                int realWidth = supportedPreviewSize.width;
+                int realHeight = supportedPreviewSize.height;
+                boolean isCandidatePortrait = realWidth < realHeight;
+                int maybeFlippedWidth = isCandidatePortrait ? realHeight
+                        : realWidth;
+                int maybeFlippedHeight = isCandidatePortrait ? realWidth
+                        : realHeight;
+                if (maybeFlippedWidth == screenResolution.x
+                        && maybeFlippedHeight == screenResolution.y) {
+                    Point exactPoint = new Point(realWidth, realHeight);
+                    Log.i(TAG, "Found preview size exactly matching screen size: "
+                            + exactPoint);
+                    return exactPoint;
+                }
+            }
+        }
+
+        // If no exact match, use largest preview size. This was not a great
+        // idea on older devices because
+        // of the additional computation needed. We're likely to get here on
+        // newer Android 4+ devices, where
+        // the CPU is much more powerful.
+        // 按解码预算选择时，选能分辨出码的最小尺寸
+        if (!supportedPreviewSizes.isEmpty()) {
+            int index = previewSizePolicy.select(toSizeList(supportedPreviewSizes),
+                    framingFraction);
+            Camera.Size bestPreview = supportedPreviewSizes.get(index);
+            Point bestSize = new Point(bestPreview.width,
+                    bestPreview.height);
+            Log.i(TAG, "Using suitable preview size: " + bestSize);
+            return bestSize;
+        }
+
+        // If there is nothing at all suitable, return current preview size
+        Camera.Size defaultPreview = parameters.getPreviewSize();
+        Point defaultSize = new Point(defaultPreview.width,
+                defaultPreview.height);
+        Log.i(TAG, "No suitable preview sizes, using default: " + defaultSize);
+
+        return defaultSize;
+    }
+
+    /**
+     * 去掉太小和宽高比跟屏幕差得太多的尺寸，按像素数从大到小排序
+     */
+    private List<Camera.Size> findSuitablePreviewSizes(List<Camera.Size> rawSupportedSizes,
+                                                       Point screenResolution) {
         // Sort by size, descending
         List<Camera.Size> supportedPreviewSizes = new ArrayList<Camera.Size>(
                 rawSupportedSizes);
@@ -305,38 +474,50 @@ final class CameraConfigurationManager {
             double distortion = Math.abs(aspectRatio - screenAspectRatio);
             if (distortion > MAX_ASPECT_DISTORTION) {
                 it.remove();
-                continue;
-            }
-
-            if (maybeFlippedWidth == screenResolution.x
-                    && maybeFlippedHeight == screenResolution.y) {
-                Point exactPoint = new Point(realWidth, realHeight);
-                Log.i(TAG, "Found preview size exactly matching screen size: "
-                        + exactPoint);
-                return exactPoint;
             }
         }
+        return supportedPreviewSizes;
+    }
 
-        // If no exact match, use largest preview size. This was not a great
-        // idea on older devices because
-        // of the additional computation needed. We're likely to get here on
-        // newer Android 4+ devices, where
-        // the CPU is much more powerful.
-        if (!supportedPreviewSizes.isEmpty()) {
-            Camera.Size largestPreview = supportedPreviewSizes.get(0);
-            Point largestSize = new Point(largestPreview.width,
-                    largestPreview.height);
-            Log.i(TAG, "Using largest suitable preview size: " + largestSize);
-            return largestSize;
+    private static List<int[]> toSizeList(List<Camera.Size> sizes) {
+        List<int[]> list = new ArrayList<int[]>(sizes.size());
+        for (Camera.Size size : sizes) {
+            list.add(new int[]{size.width, size.height});
         }
+        return list;
+    }
 
-        // If there is nothing at all suitable, return current preview size
-        Camera.Size defaultPreview = parameters.getPreviewSize();
-        Point defaultSize = new Point(defaultPreview.width,
-                defaultPreview.height);
-        Log.i(TAG, "No suitable preview sizes, using default: " + defaultSize);
+    /**
+     * The next smaller preview size the policy allows, for when decoding is
+     * slower than the budget.
+     *
+     * @param rawSupportedSizes The sizes the camera supports.
+     * @return the size, or null if the current one is the smallest allowed
+     */
+    Point findSmallerPreviewSize(List<Camera.Size> rawSupportedSizes) {
+        if (rawSupportedSizes == null || cameraResolution == null
+                || screenResolutionForCamera == null) {
+            return null;
+        }
+        List<Camera.Size> suitable = findSuitablePreviewSizes(rawSupportedSizes,
+                screenResolutionForCamera);
+        int index = previewSizePolicy.findSmaller(toSizeList(suitable),
+                cameraResolution.x, cameraResolution.y, framingFraction);
+        if (index < 0) {
+            return null;
+        }
+        Camera.Size size = suitable.get(index);
+        return new Point(size.width, size.height);
+    }
 
-        return defaultSize;
+    /**
+     * The camera now uses {@code size}. The size is not saved in the
+     * configuration cache: it was reduced for this session's load, e.g. a hot
+     * device or the multi-code mode, and the next open starts again with the
+     * size the policy picks.
+     */
+    void onPreviewSizeChanged(Point size) {
+        cameraResolution = new Point(size.x, size.y);
     }
 
     /**
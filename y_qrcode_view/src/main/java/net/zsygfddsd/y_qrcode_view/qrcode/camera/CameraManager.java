@@ -16,20 +16,31 @@
 
 package net.zsygfddsd.y_qrcode_view.qrcode.camera;
 
+import android.annotation.TargetApi;
 import android.content.Context;
+import android.graphics.ImageFormat;
 import android.graphics.Point;
 import android.graphics.Rect;
 import android.hardware.Camera;
+import android.os.Build;
 import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
 import android.util.Log;
 import android.util.TypedValue;
+import android.view.Choreographer;
 import android.view.SurfaceHolder;
 
-import com.google.zxing.PlanarYUVLuminanceSource;
-
 import net.zsygfddsd.y_qrcode_view.R;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotatedPlanarYUVLuminanceSource;
+import net.zsygfddsd.y_qrcode_view.qrcode.decode.RotationStage;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
 
 
 /**
@@ -46,6 +57,57 @@ public final class CameraManager {
 
     private static final String TAG = CameraManager.class.getSimpleName();
 
+    /**
+     * 默认的预览缓冲区个数
+     */
+    public static final int DEFAULT_PREVIEW_BUFFER_COUNT = 3;
+
+    /**
+     * 相机线程，所有CameraManager共用，保证前一个界面关闭相机之后后一个界面才打开；
+     * 没有Looper，空闲一段时间后自动退出
+     */
+    private static final ThreadPoolExecutor CAMERA_THREAD = new ThreadPoolExecutor(1, 1,
+            5L, TimeUnit.SECONDS, new LinkedBlockingQueue<java.lang.Runnable>(),
+            new ThreadFactory() {
+                @Override
+                public Thread newThread(java.lang.Runnable runnable) {
+                    return new Thread(runnable, "CameraThread");
+                }
+            });
+
+    static {
+        CAMERA_THREAD.allowCoreThreadTimeOut(true);
+    }
+
+    private static final Handler MAIN_HANDLER = new Handler(Looper.getMainLooper());
+
+    /**
+     * 没有Choreographer的系统上，参数修改攒一帧的时间再提交
+     */
+    private static final long FRAME_INTERVAL_MS = 16L;
+
+    /**
+     * Progress of {@link #openDriverAsync}, always called on the main thread.
+     */
+    public interface StateCallback {
+
+        /**
+         * The camera is open and configured, the preview is being started.
+         */
+        void onCameraOpened();
+
+        /**
+         * The preview is running; frames can be requested now.
+         */
+        void onPreviewStarted();
+
+        /**
+         * The camera could not be opened or started; it has been released.
+         */
+        void onCameraError(Exception e);
+
+    }
+
     private final Context context;
 
     private final CameraConfigurationManager configManager;
@@ -54,6 +116,50 @@ public final class CameraManager {
 
     private AutoFocusManager autoFocusManager;
 
+    /**
+     * 最后一次设置给相机的参数，缩放、闪光灯、对焦模式的修改先记在这里，每帧提交一次
+     */
+    private final CameraParametersCache parametersCache;
+
+    private boolean commitScheduled;
+
+    /**
+     * 主线程正在锁外把参数设置给相机或者开始平滑缩放，期间不能再取待提交的修改，
+     * 也不能开始、停止预览或者关闭相机
+     */
+    private boolean committingParameters;
+
+    /**
+     * 手势缩放的目标倍数，保留小数，连续的小幅度手势不会因为取整而丢失；0表示没有
+     */
+    private float zoomRatioTarget;
+
+    /**
+     * startSmoothZoom开始后到相机回调停止之前为true
+     */
+    private boolean smoothZooming;
+
+    private final Camera.OnZoomChangeListener zoomChangeListener = new Camera.OnZoomChangeListener() {
+        @Override
+        public void onZoomChange(int zoomValue, boolean stopped, Camera camera) {
+            synchronized (CameraManager.this) {
+                if (smoothZooming) {
+                    parametersCache.onZoomChanged(zoomValue);
+                    if (stopped) {
+                        smoothZooming = false;
+                    }
+                }
+            }
+        }
+    };
+
+    private final java.lang.Runnable commitParameters = new java.lang.Runnable() {
+        @Override
+        public void run() {
+            commitParameters();
+        }
+    };
+
     private float rectWidthScale = 0.5f;//正方形扫描框的宽度相对于屏幕小边的比例，比如：720*1280，即是720的边，改变这个值可以改变扫描框的大小
 
     private Rect framingRect;
@@ -64,6 +170,12 @@ public final class CameraManager {
 
     private boolean previewing;
 
+    /**
+     * 相机线程正在锁外开始、停止预览或者设置预览尺寸，期间其他线程不能再改变预览状态，
+     * 关闭相机要等它结束
+     */
+    private boolean previewChanging;
+
     private int requestedFramingRectWidth;
 
     private int requestedFramingRectHeight;
@@ -75,46 +187,173 @@ public final class CameraManager {
      */
     private final PreviewCallback previewCallback;
 
+    /**
+     * 预览缓冲区个数，0表示使用一次性回调setOneShotPreviewCallback
+     */
+    private int previewBufferCount = DEFAULT_PREVIEW_BUFFER_COUNT;
+
+    private PreviewBufferPool previewBufferPool;
+
     public CameraManager(Context context) {
         this.context = context;
         TypedValue outValue = new TypedValue();
         context.getResources().getValue(R.dimen.rect_width_scale, outValue, true);
         this.rectWidthScale = outValue.getFloat();
         this.configManager = new CameraConfigurationManager(context);
+        this.parametersCache = new CameraParametersCache(configManager);
         previewCallback = new PreviewCallback(configManager);
     }
 
     /**
      * Opens the camera driver and initializes the hardware parameters.
+     * {@code Camera.open()} and the parameter negotiation run without holding
+     * this object's lock, so the UI thread can keep drawing the viewfinder
+     * while another thread opens the camera; {@link #isOpen()} turns true only
+     * once the camera is configured.
      *
      * @param holder The surface object which the camera will draw preview frames
      *               into.
      * @throws IOException Indicates the camera driver failed to open.
      */
-    public synchronized void openDriver(SurfaceHolder holder)
+    public void openDriver(SurfaceHolder holder)
             throws IOException {
-        Camera theCamera = camera;
-        if (theCamera == null) {
-            // 获取手机背面的摄像头
-            theCamera = OpenCameraInterface.open();
+        Camera theCamera;
+        synchronized (this) {
+            theCamera = camera;
+        }
+        boolean opened = theCamera == null;
+        if (opened) {
+            // 获取手机背面的摄像头，Camera.open()可能要几百毫秒
+            int cameraId = OpenCameraInterface.findCameraId();
+            theCamera = cameraId < 0 ? null : OpenCameraInterface.open(cameraId);
             if (theCamera == null) {
                 throw new IOException();
             }
+            configManager.setCameraId(cameraId);
+        }
+        Camera.Parameters applied;
+        try {
+            // 配置完成后读回的参数作为缓存，之后的读取都不再走getParameters
+            applied = configure(theCamera, holder);
+            if (applied == null) {
+                applied = theCamera.getParameters();
+            }
+        } catch (IOException ioe) {
+            if (opened) {
+                theCamera.release();
+            }
+            throw ioe;
+        } catch (RuntimeException re) {
+            if (opened) {
+                theCamera.release();
+            }
+            throw re;
+        }
+        synchronized (this) {
             camera = theCamera;
+            parametersCache.reset(theCamera, applied);
         }
+    }
+
+    /**
+     * Opens the camera, configures it and starts the preview on the camera
+     * thread, then reports back on the main thread. The camera thread has no
+     * Looper on purpose: the camera delivers its callbacks to the Looper of
+     * the thread which opened it, or to the main Looper if that thread has
+     * none, so preview frames and auto focus callbacks keep arriving on the
+     * main thread.
+     * <p/>
+     * 在相机线程里打开、配置相机并开始预览，完成后在主线程回调，避免打开扫描界面时卡住界面线程。
+     *
+     * @param holder   The surface object which the camera will draw preview
+     *                 frames into.
+     * @param callback Told about every step on the main thread.
+     */
+    public void openDriverAsync(final SurfaceHolder holder, final StateCallback callback) {
+        CAMERA_THREAD.execute(new java.lang.Runnable() {
+            @Override
+            public void run() {
+                try {
+                    openDriver(holder);
+                    postToMain(new java.lang.Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onCameraOpened();
+                        }
+                    });
+                    startPreview();
+                    postToMain(new java.lang.Runnable() {
+                        @Override
+                        public void run() {
+                            callback.onPreviewStarted();
+                        }
+                    });
+                } catch (IOException ioe) {
+                    closeDriver();
+                    postError(callback, ioe);
+                } catch (RuntimeException re) {
+                    // Barcode Scanner has seen crashes in the wild of this variety:
+                    // java.?lang.?RuntimeException: Fail to connect to camera service
+                    closeDriver();
+                    postError(callback, re);
+                }
+            }
+        });
+    }
 
+    /**
+     * Closes the camera on the camera thread, after any open still in
+     * progress, so the next {@link #openDriverAsync} of this or another
+     * CameraManager finds the camera released.
+     */
+    public void closeDriverAsync() {
+        CAMERA_THREAD.execute(new java.lang.Runnable() {
+            @Override
+            public void run() {
+                stopPreview();
+                closeDriver();
+            }
+        });
+    }
+
+    private void postError(final StateCallback callback, final Exception e) {
+        postToMain(new java.lang.Runnable() {
+            @Override
+            public void run() {
+                callback.onCameraError(e);
+            }
+        });
+    }
+
+    private static void postToMain(java.lang.Runnable runnable) {
+        MAIN_HANDLER.post(runnable);
+    }
+
+    /**
+     * @return the parameters the camera has after the configuration, or null
+     * if they could not be read back
+     */
+    private Camera.Parameters configure(Camera theCamera, SurfaceHolder holder) throws IOException {
         // 设置摄像头预览view
         theCamera.setPreviewDisplay(holder);
         theCamera.lock();
 
-        if (!initialized) {
-            initialized = true;
+        boolean needsInit;
+        synchronized (this) {
+            needsInit = !initialized;
+        }
+        if (needsInit) {
+            // 读取参数、排序预览尺寸在锁外进行，界面线程每帧都要拿这个锁
             configManager.initFromCameraParameters(theCamera);
-            if (requestedFramingRectWidth > 0 && requestedFramingRectHeight > 0) {
-                setManualFramingRect(requestedFramingRectWidth,
-                        requestedFramingRectHeight);
-                requestedFramingRectWidth = 0;
-                requestedFramingRectHeight = 0;
+            synchronized (this) {
+                // 释放锁之后，界面线程通过initialized看到的是初始化完成的结果
+                initialized = true;
+                if (requestedFramingRectWidth > 0 && requestedFramingRectHeight > 0) {
+                    setManualFramingRect(requestedFramingRectWidth,
+                            requestedFramingRectHeight);
+                    requestedFramingRectWidth = 0;
+                    requestedFramingRectHeight = 0;
+                }
             }
         }
 
@@ -124,7 +363,7 @@ public final class CameraManager {
         // these,
         // temporarily
         try {
-            configManager.setDesiredCameraParameters(theCamera, false);
+            return configManager.setDesiredCameraParameters(theCamera, false);
         } catch (RuntimeException re) {
             // Driver failed
             Log.w(TAG,
@@ -137,7 +376,7 @@ public final class CameraManager {
                 parameters.unflatten(parametersFlattened);
                 try {
                     theCamera.setParameters(parameters);
-                    configManager.setDesiredCameraParameters(theCamera, true);
+                    return configManager.setDesiredCameraParameters(theCamera, true);
                 } catch (RuntimeException re2) {
                     // Well, darn. Give up
                     Log.w(TAG,
@@ -145,7 +384,7 @@ public final class CameraManager {
                 }
             }
         }
-
+        return null;
     }
 
     public synchronized boolean isOpen() {
@@ -155,64 +394,497 @@ public final class CameraManager {
     /**
      * Closes the camera driver if still in use.
      */
-    public synchronized void closeDriver() {
-        if (camera != null) {
-            camera.release();
+    public void closeDriver() {
+        Camera theCamera;
+        synchronized (this) {
+            waitForPreviewChange();
+            theCamera = camera;
+            if (theCamera == null) {
+                return;
+            }
             camera = null;
+            parametersCache.reset(null, null);
+            smoothZooming = false;
+            zoomRatioTarget = 0f;
             // Make sure to clear these each time we close the camera, so that
             // any scanning rect
             // requested by intent is forgotten.
             framingRect = null;
             framingRectOnScreen = null;
         }
+        // 在锁外释放，释放相机也要一段时间
+        theCamera.release();
     }
 
     /**
      * Asks the camera hardware to begin drawing preview frames to the screen.
+     * The buffers are allocated and the camera is started without holding
+     * this object's lock; the new state is published once the preview runs.
      */
-    public synchronized void startPreview() {
-        Camera theCamera = camera;
-        if (theCamera != null && !previewing) {
+    public void startPreview() {
+        Camera theCamera;
+        int bufferCount;
+        Point cameraResolution;
+        String focusMode;
+        synchronized (this) {
+            waitForParametersCommit();
+            theCamera = camera;
+            if (theCamera == null || previewing || previewChanging) {
+                return;
+            }
+            previewChanging = true;
+            bufferCount = previewBufferCount;
+            cameraResolution = configManager.getCameraResolution();
+            focusMode = parametersCache.getFocusMode();
+        }
+        PreviewBufferPool pool = null;
+        AutoFocusManager focusManager = null;
+        try {
             // Starts capturing and drawing preview frames to the screen
             // Preview will not actually start until a surface is supplied with
             // setPreviewDisplay(SurfaceHolder) or
             // setPreviewTexture(SurfaceTexture).
+            if (bufferCount > 0) {
+                pool = startBufferedPreviewCallback(theCamera, bufferCount, cameraResolution);
+            }
             theCamera.startPreview();
-
-            previewing = true;
-            autoFocusManager = new AutoFocusManager(context, camera);
+            focusManager = new AutoFocusManager(context, theCamera, focusMode);
+        } finally {
+            synchronized (this) {
+                if (focusManager != null) {
+                    previewBufferPool = pool;
+                    previewing = true;
+                    autoFocusManager = focusManager;
+                } else if (pool != null) {
+                    previewCallback.setBufferPool(null);
+                    pool.clear();
+                }
+                previewChangeFinished();
+            }
         }
     }
 
     /**
      * Tells the camera to stop drawing preview frames.
      */
-    public synchronized void stopPreview() {
-        if (autoFocusManager != null) {
-            autoFocusManager.stop();
+    public void stopPreview() {
+        stopPreview(true);
+    }
+
+    /**
+     * @param clearRequest false to keep a pending frame request, so the first
+     *                     frame after the next start goes to the same handler
+     */
+    private void stopPreview(boolean clearRequest) {
+        Camera theCamera;
+        AutoFocusManager focusManager;
+        PreviewBufferPool pool;
+        synchronized (this) {
+            waitForParametersCommit();
+            if (previewChanging) {
+                return;
+            }
+            focusManager = autoFocusManager;
             autoFocusManager = null;
+            theCamera = previewing ? camera : null;
+            pool = previewBufferPool;
+            if (theCamera != null) {
+                previewing = false;
+                previewChanging = true;
+                previewBufferPool = null;
+                if (clearRequest) {
+                    previewCallback.setHandler(null, 0);
+                }
+            }
+        }
+        if (focusManager != null) {
+            focusManager.stop();
+        }
+        if (theCamera == null) {
+            return;
+        }
+        try {
+            theCamera.stopPreview();
+            if (pool != null) {
+                theCamera.setPreviewCallbackWithBuffer(null);
+                previewCallback.setBufferPool(null);
+                pool.clear();
+            }
+        } finally {
+            synchronized (this) {
+                previewChangeFinished();
+            }
+        }
+    }
+
+    /**
+     * Must hold the lock.
+     */
+    private void previewChangeFinished() {
+        previewChanging = false;
+        notifyAll();
+    }
+
+    /**
+     * Must hold the lock. Lets a start or stop of the preview or a parameters
+     * commit running outside the lock finish before the camera is released.
+     */
+    private void waitForPreviewChange() {
+        while (previewChanging || committingParameters) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Must hold the lock. Lets a parameters commit running outside the lock
+     * finish, so its {@code setParameters()} never overlaps another camera
+     * call changing the preview. The commit runs on the main thread and never
+     * waits for the camera thread.
+     */
+    private void waitForParametersCommit() {
+        while (committingParameters) {
+            try {
+                wait();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    /**
+     * Sets how many preview buffers are kept in the ring used with
+     * {@link Camera#setPreviewCallbackWithBuffer}. 0 falls back to a one-shot
+     * callback per frame. Takes effect the next time the preview starts.
+     *
+     * @param count The number of preallocated preview buffers.
+     */
+    public synchronized void setPreviewBufferCount(int count) {
+        if (count < 0) {
+            throw new IllegalArgumentException("preview buffer count must not be negative");
+        }
+        previewBufferCount = count;
+    }
+
+    /**
+     * Sets how the preview size is chosen. Takes effect the next time the
+     * camera is opened by a new CameraManager.
+     */
+    public synchronized void setPreviewSizePolicy(PreviewSizePolicy policy) {
+        configManager.setPreviewSizePolicy(policy, rectWidthScale);
+    }
+
+    /**
+     * Switches the running preview to the next smaller size the
+     * {@link PreviewSizePolicy} allows, for when decoding takes longer than its
+     * budget. Restarting the preview takes as long as starting it, so this
+     * runs on the camera thread like {@link #openDriverAsync}. A pending frame
+     * request stays registered, so the next frame of the new size goes to the
+     * same handler. Frames of the old size still being decoded are no longer
+     * returned to the camera.
+     * <p/>
+     * 解码耗时超出预算时在相机线程里把预览尺寸降一档，重新开始预览。
+     * 降低的尺寸只在这次打开期间有效，不会保存到配置缓存里。
+     */
+    public void reducePreviewSizeAsync() {
+        CAMERA_THREAD.execute(new java.lang.Runnable() {
+            @Override
+            public void run() {
+                reducePreviewSize();
+            }
+        });
+    }
+
+    /**
+     * Stops the preview, sets the smaller size and starts the preview again,
+     * each camera call outside the lock.
+     *
+     * @return true if the preview size was reduced
+     */
+    private boolean reducePreviewSize() {
+        Camera theCamera;
+        List<Camera.Size> supportedSizes;
+        synchronized (this) {
+            theCamera = camera;
+            if (theCamera == null || !previewing || previewChanging) {
+                return false;
+            }
+            supportedSizes = parametersCache.getSupportedPreviewSizes();
+        }
+        Point smaller = configManager.findSmallerPreviewSize(supportedSizes);
+        if (smaller == null) {
+            return false;
+        }
+        // 正在等待的取帧请求保留下来，新尺寸的第一帧交给同一个handler
+        stopPreview(false);
+
+        Camera.Parameters parameters;
+        boolean stopZoom;
+        synchronized (this) {
+            waitForParametersCommit();
+            if (camera != theCamera || previewChanging) {
+                return false;
+            }
+            previewChanging = true;
+            // 预览停止后不会再开始新的平滑缩放，进行中的在设置参数前停下来
+            stopZoom = smoothZooming;
+            smoothZooming = false;
+            // 预览尺寸和其他待提交的修改一起设置
+            parametersCache.setPreviewSize(smaller.x, smaller.y);
+            parameters = parametersCache.takePendingChanges();
         }
-        if (camera != null && previewing) {
-            camera.stopPreview();
-            previewCallback.setHandler(null, 0);
-            previewing = false;
+        boolean changed = false;
+        Camera.Parameters current = null;
+        try {
+            if (stopZoom) {
+                stopSmoothZoom(theCamera);
+            }
+            theCamera.setParameters(parameters);
+            changed = true;
+        } catch (RuntimeException re) {
+            Log.w(TAG, "Camera rejected preview size " + smaller, re);
+            try {
+                current = theCamera.getParameters();
+            } catch (RuntimeException re2) {
+                // 相机已经不可用，等待关闭
+            }
+        }
+        synchronized (this) {
+            if (changed) {
+                Log.i(TAG, "Reduced preview size to " + smaller);
+                configManager.onPreviewSizeChanged(smaller);
+                // 扫描框在预览数据中的位置按新的尺寸重新计算
+                framingRectOnScreen = null;
+            } else {
+                parametersCache.reset(theCamera, current);
+            }
+            previewChangeFinished();
+        }
+        startPreview();
+        synchronized (this) {
+            if (previewing && previewBufferPool == null && camera == theCamera) {
+                // 一次性回调随着停止预览被清掉了
+                theCamera.setOneShotPreviewCallback(previewCallback);
+            }
+            if (parametersCache.hasPendingChanges()) {
+                // 设置尺寸期间的缩放、闪光灯修改被推迟了
+                scheduleParametersCommit();
+            }
+        }
+        return changed;
+    }
+
+    /**
+     * Gives a frame delivered through {@link #requestPreviewFrame} back to the
+     * camera once the decoder is done with it. Frames of the one-shot mode are
+     * simply dropped.
+     *
+     * @param data The preview frame from the message.obj field.
+     */
+    public synchronized void releasePreviewFrame(byte[] data) {
+        if (previewBufferPool != null) {
+            previewBufferPool.release(data);
+        }
+    }
+
+    /**
+     * How long the camera took to deliver the last frame handed out by
+     * {@link #requestPreviewFrame}, measured from the request. Only meaningful
+     * on the thread which requests the frames and receives the messages.
+     *
+     * @return nanoseconds, -1 before the first frame
+     */
+    public long getLastFrameDeliveryNanos() {
+        return previewCallback.getLastDeliveryNanos();
+    }
+
+    /**
+     * When the camera delivered {@code data}, the frame last handed out by
+     * {@link #requestPreviewFrame}. The message itself is sent when the frame
+     * is handed out, which can be later in the buffered mode.
+     *
+     * @return the {@link android.os.SystemClock#uptimeMillis()} of the
+     * delivery, -1 if {@code data} is not the last frame handed out
+     */
+    public long getPreviewFrameTime(byte[] data) {
+        return previewCallback.getFrameTime(data);
+    }
+
+    /**
+     * @return the average time between two camera frames in milliseconds, 0
+     * if unknown
+     */
+    public long getFrameIntervalMillis() {
+        return previewCallback.getFrameIntervalMs();
+    }
+
+    /**
+     * @return preview frames replaced by a newer one before they were requested
+     */
+    public long getReplacedFrameCount() {
+        return previewCallback.getReplacedFrameCount();
+    }
+
+    /**
+     * 缓冲模式：预先分配好缓冲区交给相机，相机每一帧都回调，填充的是池里的缓冲区
+     *
+     * @return the pool, or null if the preview size is not known
+     */
+    private PreviewBufferPool startBufferedPreviewCallback(Camera theCamera, int bufferCount,
+                                                           Point cameraResolution) {
+        if (cameraResolution == null) {
+            return null;
         }
+        int bufferSize = cameraResolution.x * cameraResolution.y
+                * ImageFormat.getBitsPerPixel(ImageFormat.NV21) / 8;
+        PreviewBufferPool pool = new PreviewBufferPool(bufferCount,
+                new PreviewBufferPool.CallbackBufferQueue() {
+                    @Override
+                    public void addCallbackBuffer(byte[] buffer) {
+                        synchronized (CameraManager.this) {
+                            if (camera != null) {
+                                camera.addCallbackBuffer(buffer);
+                            }
+                        }
+                    }
+                });
+        previewCallback.setBufferPool(pool);
+        theCamera.setPreviewCallbackWithBuffer(previewCallback);
+        pool.start(bufferSize);
+        return pool;
     }
 
     /**
-     * Convenience method for
-     * {@link }
+     * Turns the torch on or off. The change is committed to the camera with
+     * the next UI frame, together with any zoom or focus change made before it.
      */
     public synchronized void setTorch(boolean newSetting) {
-        if (newSetting != configManager.getTorchState(camera)) {
-            if (camera != null) {
-                if (autoFocusManager != null) {
-                    autoFocusManager.stop();
+        if (parametersCache.setTorch(newSetting)) {
+            scheduleParametersCommit();
+        }
+    }
+
+    /**
+     * @return whether the torch is on, including a change not committed yet
+     */
+    public synchronized boolean isTorchOn() {
+        return parametersCache.isTorchOn();
+    }
+
+    /**
+     * Switches the focus mode, e.g. to {@link Camera.Parameters#FOCUS_MODE_MACRO}
+     * for codes held very close. Committed with the next UI frame.
+     *
+     * @param focusMode One of the Camera.Parameters FOCUS_MODE_ constants.
+     * @return false if the camera does not support the mode or already uses it
+     */
+    public synchronized boolean setFocusMode(String focusMode) {
+        if (parametersCache.setFocusMode(focusMode)) {
+            scheduleParametersCommit();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 同一帧内的多次修改只安排一次提交
+     */
+    private void scheduleParametersCommit() {
+        if (commitScheduled) {
+            return;
+        }
+        commitScheduled = true;
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN
+                && Looper.myLooper() == Looper.getMainLooper()) {
+            FrameCallbacks.postOnNextFrame(commitParameters);
+        } else {
+            MAIN_HANDLER.postDelayed(commitParameters, FRAME_INTERVAL_MS);
+        }
+    }
+
+    /**
+     * Sends everything changed since the last UI frame to the camera with a
+     * single {@code setParameters()}. Auto focus is paused around torch and
+     * focus mode changes, as some devices fail to focus otherwise. Like
+     * {@link #reducePreviewSize()}, the changes are taken under the lock and
+     * every camera call is made outside it, so decode threads returning
+     * frames are not blocked by the binder calls.
+     */
+    private void commitParameters() {
+        Camera theCamera;
+        Camera.Parameters parameters;
+        boolean stopZoom;
+        AutoFocusManager focusManager;
+        boolean focusModeChanged;
+        String focusMode;
+        synchronized (this) {
+            commitScheduled = false;
+            if (!parametersCache.hasPendingChanges() || previewChanging || committingParameters) {
+                // 正在设置预览尺寸时，修改留到设置完成之后再提交
+                return;
+            }
+            theCamera = camera;
+            focusModeChanged = parametersCache.isFocusModePending();
+            boolean pauseFocus = focusModeChanged || parametersCache.isTorchPending();
+            parameters = parametersCache.takePendingChanges();
+            if (theCamera == null || parameters == null) {
+                return;
+            }
+            committingParameters = true;
+            // 平滑缩放进行中不能再设置参数，先停下来，缓存里是停下时的缩放值
+            stopZoom = smoothZooming;
+            smoothZooming = false;
+            focusManager = pauseFocus ? autoFocusManager : null;
+            focusMode = parametersCache.getFocusMode();
+        }
+        boolean committed = false;
+        Camera.Parameters current = null;
+        AutoFocusManager newFocusManager = null;
+        try {
+            if (stopZoom) {
+                stopSmoothZoom(theCamera);
+            }
+            if (focusManager != null) {
+                focusManager.stop();
+            }
+            try {
+                theCamera.setParameters(parameters);
+                committed = true;
+            } catch (RuntimeException re) {
+                Log.w(TAG, "Camera rejected parameters", re);
+                try {
+                    current = theCamera.getParameters();
+                } catch (RuntimeException re2) {
+                    // 相机已经不可用，等待关闭
+                }
+            }
+            if (focusManager != null) {
+                if (committed && focusModeChanged) {
+                    // 是否需要循环调用autoFocus取决于对焦模式，换一个新的
+                    newFocusManager = new AutoFocusManager(context, theCamera, focusMode);
+                } else {
+                    focusManager.start();
+                }
+            }
+        } finally {
+            synchronized (this) {
+                committingParameters = false;
+                if (!committed) {
+                    parametersCache.reset(theCamera, current);
                 }
-                configManager.setTorch(camera, newSetting);
-                if (autoFocusManager != null) {
-                    autoFocusManager.start();
+                if (newFocusManager != null && autoFocusManager == focusManager) {
+                    autoFocusManager = newFocusManager;
                 }
+                if (parametersCache.hasPendingChanges()) {
+                    // 提交期间又有新的修改
+                    scheduleParametersCommit();
+                }
+                notifyAll();
             }
         }
     }
@@ -220,7 +892,9 @@ public final class CameraManager {
     /**
      * A single preview frame will be returned to the handler supplied. The data
      * will arrive as byte[] in the message.obj field, with width and height
-     * encoded as message.arg1 and message.arg2, respectively. <br/>
+     * encoded as message.arg1 and message.arg2, respectively. The receiver
+     * must hand it back through {@link #releasePreviewFrame(byte[])} when done.
+     * <br/>
      * <p/>
      * 两个绑定操作：<br/>
      * 1：将handler与回调函数绑定；<br/>
@@ -230,14 +904,25 @@ public final class CameraManager {
      * @param handler The handler to send the message to.
      * @param message The what field of the message to be sent.
      */
-    public synchronized void requestPreviewFrame(Handler handler, int message) {
-        Camera theCamera = camera;
-        if (theCamera != null && previewing) {
-            previewCallback.setHandler(handler, message);
+    public void requestPreviewFrame(Handler handler, int message) {
+        Message heldFrameMessage = null;
+        synchronized (this) {
+            Camera theCamera = camera;
+            if (theCamera != null && (previewing || previewChanging)) {
+                // 相机线程正在锁外重启预览时先记下请求，预览开始后的第一帧交给这个handler
+                heldFrameMessage = previewCallback.setHandler(handler, message);
 
-            // 绑定相机回调函数，当预览界面准备就绪后会回调Camera.PreviewCallback.onPreviewFrame
-            //取一帧的预览图像
-            theCamera.setOneShotPreviewCallback(previewCallback);
+                // 缓冲模式下回调已经一直挂在相机上，只需要绑定handler
+                if (previewing && previewBufferPool == null) {
+                    // 绑定相机回调函数，当预览界面准备就绪后会回调Camera.PreviewCallback.onPreviewFrame
+                    //取一帧的预览图像
+                    theCamera.setOneShotPreviewCallback(previewCallback);
+                }
+            }
+        }
+        if (heldFrameMessage != null) {
+            // 缓冲模式下已经有一帧在等着，在锁外交出去
+            heldFrameMessage.sendToTarget();
         }
     }
 
@@ -324,6 +1009,10 @@ public final class CameraManager {
 
     public synchronized Rect setFramingRectOnScreen(int left, int top, int right, int bottom) {
         if (framingRectOnScreen == null) {
+            if (!initialized) {
+                // 相机线程还在读取参数
+                return null;
+            }
             Rect rect = new Rect();
             Point cameraResolution = configManager.getCameraResolution();
             Point screenResolution = configManager.getScreenResolution();
@@ -386,78 +1075,206 @@ public final class CameraManager {
     /**
      * A factory method to build the appropriate LuminanceSource object based on
      * the format of the preview buffers, as described by Camera.Parameters.
+     * <p>
+     * 预览帧是横向的，这里不再先把整帧旋转过来，而是由
+     * {@link RotatedPlanarYUVLuminanceSource}直接在原始数据上按旋转后的坐标读取
      *
-     * @param data   A preview frame.
-     * @param width  The width of the image.
-     * @param height The height of the image.
-     * @return A PlanarYUVLuminanceSource instance.
+     * @param data          A preview frame, as delivered by the camera.
+     * @param width         The width of the unrotated preview frame.
+     * @param height        The height of the unrotated preview frame.
+     * @param rotationStage Reused buffer for the source's matrix, may be null.
+     * @return A RotatedPlanarYUVLuminanceSource instance.
      */
-    public PlanarYUVLuminanceSource buildLuminanceSource(byte[] data,
-                                                         int width, int height) {
+    public RotatedPlanarYUVLuminanceSource buildLuminanceSource(byte[] data,
+                                                                int width, int height,
+                                                                RotationStage rotationStage) {
         Rect rect = getFramingRectOnScreen();
         if (rect == null) {
             return null;
         }
+        if (rect.right > height || rect.bottom > width) {
+            // 预览尺寸刚刚变小，这一帧和扫描框属于不同的尺寸
+            return null;
+        }
         //为了最好的体验
         //得保证三个区域的统一，第一扫描框的区域、第二拿去识别的区域、第三识别后拿来展示的区域
 
-        Log.d(TAG, "获取到的源图像宽高是----" + width + "---" + height + "----要采集的区域是--" + rect.toString());
         // Go ahead and assume it's YUV rather than die.
-        //data 采集到的图像源数据是屏幕大小的例如720*1280，
-        // rect是要处理截取的图像区域，所以rect坐标系一定要转换到屏幕坐标系下
-        return new PlanarYUVLuminanceSource(data, width, height, rect.left,
-                rect.top, rect.width(), rect.height(), false);
+        //data 采集到的图像源数据是相机预览的横向数据，例如1280*720，
+        // rect是要处理截取的图像区域，是旋转后（竖屏）坐标系下的坐标
+        return new RotatedPlanarYUVLuminanceSource(data, width, height, rect.left,
+                rect.top, rect.width(), rect.height(), rotationStage);
     }
 
     /**
      * 焦点放小
      */
-    public void zoomOut() {
-        if (camera != null && camera.getParameters().isZoomSupported()) {
+    public synchronized void zoomOut() {
+        setCameraZoom(parametersCache.getZoom() - 1);
+    }
 
-            Camera.Parameters parameters = camera.getParameters();
-            if (parameters.getZoom() <= 0) {
-                return;
-            }
+    /**
+     * 焦点放大
+     */
+    public synchronized void zoomIn() {
+        setCameraZoom(parametersCache.getZoom() + 1);
+    }
 
-            parameters.setZoom(parameters.getZoom() - 1);
-            camera.setParameters(parameters);
+    /*
+     * 缩放，读取的是缓存的参数，连续调用时每帧只提交一次
+     *
+     * @param scale
+     */
+    public synchronized void setCameraZoom(int scale) {
+        zoomRatioTarget = 0f;
+        applyZoom(scale);
+    }
 
+    private void applyZoom(int zoom) {
+        if (parametersCache.setZoom(zoom)) {
+            scheduleParametersCommit();
         }
     }
 
     /**
-     * 焦点放大
+     * @return the current magnification, 1 when the camera cannot zoom
      */
-    public void zoomIn() {
-        if (camera != null && camera.getParameters().isZoomSupported()) {
+    public synchronized float getZoomRatio() {
+        return parametersCache.getZoomRatio(parametersCache.getZoom());
+    }
+
+    /**
+     * Continuous zoom: picks the zoom value closest to {@code ratio} and keeps
+     * the fractional target, so the next {@link #zoomBy(float)} continues
+     * from it instead of from the rounded value. Any number of calls within
+     * one UI frame results in a single camera update.
+     *
+     * @param ratio Magnification, 1 for no zoom; clamped to what the camera supports.
+     */
+    public synchronized void setZoomRatio(float ratio) {
+        if (!parametersCache.isZoomSupported()) {
+            return;
+        }
+        float max = parametersCache.getZoomRatio(parametersCache.getMaxZoom());
+        zoomRatioTarget = Math.max(1f, Math.min(ratio, max));
+        applyZoom(parametersCache.findZoomForRatio(zoomRatioTarget));
+    }
 
-            Camera.Parameters parameters = camera.getParameters();
-            if (parameters.getZoom() >= parameters.getMaxZoom()) {
+    /**
+     * Multiplies the magnification, meant to be fed with
+     * {@link android.view.ScaleGestureDetector#getScaleFactor()} on every
+     * step of a pinch gesture.
+     *
+     * @param scaleFactor Change of magnification since the last call.
+     */
+    public synchronized void zoomBy(float scaleFactor) {
+        float current = zoomRatioTarget > 0f ? zoomRatioTarget : getZoomRatio();
+        setZoomRatio(current * scaleFactor);
+    }
+
+    /**
+     * Zooms to {@code ratio} gradually with {@link Camera#startSmoothZoom(int)}
+     * when the camera supports it, otherwise like {@link #setZoomRatio(float)}.
+     * Used for zoom changes the user did not make, which would otherwise make
+     * the preview jump.
+     * <p/>
+     * May be called from any thread, e.g. by the decode threads for auto
+     * zoom: the zoom is started on the main thread like the zoom gestures,
+     * outside the lock. While the preview is stopped, restarting or a commit
+     * is running, the zoom is set with the next parameters commit instead.
+     *
+     * @param ratio Magnification, 1 for no zoom.
+     */
+    public void smoothZoomTo(final float ratio) {
+        if (Looper.myLooper() != Looper.getMainLooper()) {
+            MAIN_HANDLER.post(new java.lang.Runnable() {
+                @Override
+                public void run() {
+                    smoothZoomTo(ratio);
+                }
+            });
+            return;
+        }
+        Camera theCamera;
+        int zoom;
+        boolean stopZoom;
+        synchronized (this) {
+            if (!parametersCache.isSmoothZoomSupported() || parametersCache.hasPendingChanges()
+                    || !previewing || previewChanging || committingParameters) {
+                setZoomRatio(ratio);
                 return;
             }
+            zoom = parametersCache.findZoomForRatio(ratio);
+            if (zoom == parametersCache.getZoom()) {
+                return;
+            }
+            theCamera = camera;
+            zoomRatioTarget = 0f;
+            stopZoom = smoothZooming;
+            // 缩放的回调也在主线程，开始之前不会到来
+            smoothZooming = true;
+            // 和提交参数一样，相机线程要等这次调用结束才能停止预览
+            committingParameters = true;
+        }
+        boolean started = false;
+        try {
+            if (stopZoom) {
+                stopSmoothZoom(theCamera);
+            }
+            theCamera.setZoomChangeListener(zoomChangeListener);
+            theCamera.startSmoothZoom(zoom);
+            started = true;
+        } catch (RuntimeException re) {
+            Log.w(TAG, "Unable to start smooth zoom", re);
+        } finally {
+            synchronized (this) {
+                committingParameters = false;
+                if (!started) {
+                    smoothZooming = false;
+                    applyZoom(zoom);
+                }
+                notifyAll();
+            }
+        }
+    }
 
-            parameters.setZoom(parameters.getZoom() + 1);
-            camera.setParameters(parameters);
-
+    private static void stopSmoothZoom(Camera theCamera) {
+        try {
+            theCamera.stopSmoothZoom();
+        } catch (RuntimeException re) {
+            Log.w(TAG, "Unable to stop smooth zoom", re);
         }
     }
 
-    /*
-     * 缩放
-     *
-     * @param scale
+    /**
+     * @return the zoom the camera is set to, 0 if it cannot zoom
      */
-    public void setCameraZoom(int scale) {
-        if (camera != null && camera.getParameters().isZoomSupported()
-                && scale <= camera.getParameters().getMaxZoom() && scale >= 0) {
+    public synchronized int getZoom() {
+        return parametersCache.getZoom();
+    }
 
-            Camera.Parameters parameters = camera.getParameters();
+    /**
+     * @return the largest value accepted by {@link #setCameraZoom(int)}
+     */
+    public synchronized int getMaxZoom() {
+        return parametersCache.getMaxZoom();
+    }
 
-            parameters.setZoom(scale);
-            camera.setParameters(parameters);
+    /**
+     * Choreographer只在4.1以上存在，单独放在这里，4.0上不会加载这个类
+     */
+    @TargetApi(Build.VERSION_CODES.JELLY_BEAN)
+    private static final class FrameCallbacks {
 
+        static void postOnNextFrame(final java.lang.Runnable runnable) {
+            Choreographer.getInstance().postFrameCallback(new Choreographer.FrameCallback() {
+                @Override
+                public void doFrame(long frameTimeNanos) {
+                    runnable.run();
+                }
+            });
         }
+
     }
 
     /**
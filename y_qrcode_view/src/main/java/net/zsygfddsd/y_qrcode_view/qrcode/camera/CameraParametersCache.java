@@ -0,0 +1,259 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+import android.hardware.Camera;
+
+import java.util.List;
+
+/**
+ * Keeps the {@link Camera.Parameters} last applied to the camera, so reading
+ * the zoom, torch or focus state does not cost a {@code getParameters()}
+ * binder call that parses the whole flattened parameter string every time.
+ * Changes are only recorded here; {@link CameraManager} takes them together
+ * with {@link #takePendingChanges()} and sends them outside its lock, so
+ * several zoom steps and a torch change made within one UI frame end up in a
+ * single {@code setParameters()}.
+ * <p/>
+ * 缓存最后一次设置给相机的参数，读取时不再走getParameters；修改先记下来，
+ * 由CameraManager取出后在锁外一次性通过setParameters提交。
+ * <p/>
+ * Not thread safe; {@link CameraManager} only uses it while holding its own
+ * lock.
+ */
+final class CameraParametersCache {
+
+    private static final int NO_ZOOM = -1;
+
+    private final CameraConfigurationManager configManager;
+
+    private Camera camera;
+
+    private Camera.Parameters parameters;
+
+    private int pendingZoom = NO_ZOOM;
+
+    private boolean torchPending;
+
+    private boolean pendingTorch;
+
+    private String pendingFocusMode;
+
+    private int pendingPreviewWidth;
+
+    private int pendingPreviewHeight;
+
+    CameraParametersCache(CameraConfigurationManager configManager) {
+        this.configManager = configManager;
+    }
+
+    /**
+     * Starts caching for a newly configured camera, dropping any change not
+     * committed to the previous one.
+     *
+     * @param camera     The camera, or null once it is closed.
+     * @param parameters What the camera is currently set to, null with camera.
+     */
+    void reset(Camera camera, Camera.Parameters parameters) {
+        this.camera = camera;
+        this.parameters = parameters;
+        pendingZoom = NO_ZOOM;
+        torchPending = false;
+        pendingFocusMode = null;
+        pendingPreviewWidth = 0;
+    }
+
+    boolean isAvailable() {
+        return camera != null && parameters != null;
+    }
+
+    boolean isZoomSupported() {
+        return isAvailable() && parameters.isZoomSupported();
+    }
+
+    int getMaxZoom() {
+        return isZoomSupported() ? parameters.getMaxZoom() : 0;
+    }
+
+    /**
+     * @return the zoom the camera will have once pending changes are committed
+     */
+    int getZoom() {
+        if (pendingZoom != NO_ZOOM) {
+            return pendingZoom;
+        }
+        return isZoomSupported() ? parameters.getZoom() : 0;
+    }
+
+    /**
+     * @return true if this changed the zoom and a commit is needed
+     */
+    boolean setZoom(int zoom) {
+        if (!isZoomSupported() || zoom < 0 || zoom > parameters.getMaxZoom()
+                || zoom == getZoom()) {
+            return false;
+        }
+        pendingZoom = zoom;
+        return true;
+    }
+
+    boolean isSmoothZoomSupported() {
+        return isZoomSupported() && parameters.isSmoothZoomSupported();
+    }
+
+    /**
+     * @return the magnification of a zoom value, 1 when it cannot zoom
+     */
+    float getZoomRatio(int zoom) {
+        if (!isZoomSupported()) {
+            return 1f;
+        }
+        List<Integer> ratios = parameters.getZoomRatios();
+        if (ratios == null || zoom < 0 || zoom >= ratios.size()) {
+            return 1f;
+        }
+        // getZoomRatios的单位是1/100倍
+        return ratios.get(zoom) / 100f;
+    }
+
+    /**
+     * @return the zoom value whose magnification is closest to {@code ratio}
+     */
+    int findZoomForRatio(float ratio) {
+        if (!isZoomSupported()) {
+            return 0;
+        }
+        List<Integer> ratios = parameters.getZoomRatios();
+        if (ratios == null || ratios.isEmpty()) {
+            return 0;
+        }
+        int wanted = Math.round(ratio * 100f);
+        int best = 0;
+        int bestDistance = Integer.MAX_VALUE;
+        for (int i = 0; i < ratios.size(); i++) {
+            int distance = Math.abs(ratios.get(i) - wanted);
+            if (distance < bestDistance) {
+                best = i;
+                bestDistance = distance;
+            }
+        }
+        return Math.min(best, parameters.getMaxZoom());
+    }
+
+    /**
+     * The camera reached {@code zoom} on its own during a smooth zoom, the
+     * cached value only follows it and nothing needs to be committed.
+     */
+    void onZoomChanged(int zoom) {
+        if (isZoomSupported()) {
+            parameters.setZoom(zoom);
+        }
+    }
+
+    /**
+     * @return the torch state once pending changes are committed
+     */
+    boolean isTorchOn() {
+        if (torchPending) {
+            return pendingTorch;
+        }
+        return CameraConfigurationManager.isTorchOn(parameters);
+    }
+
+    /**
+     * @return true if this changed the torch and a commit is needed
+     */
+    boolean setTorch(boolean on) {
+        if (!isAvailable() || on == isTorchOn()) {
+            return false;
+        }
+        torchPending = true;
+        pendingTorch = on;
+        return true;
+    }
+
+    /**
+     * @return the focus mode once pending changes are committed, null if unknown
+     */
+    String getFocusMode() {
+        if (pendingFocusMode != null) {
+            return pendingFocusMode;
+        }
+        return isAvailable() ? parameters.getFocusMode() : null;
+    }
+
+    /**
+     * @return true if the mode is supported, differs from the current one and
+     * a commit is needed
+     */
+    boolean setFocusMode(String focusMode) {
+        if (!isAvailable() || focusMode == null) {
+            return false;
+        }
+        List<String> supported = parameters.getSupportedFocusModes();
+        if (supported == null || !supported.contains(focusMode)
+                || focusMode.equals(getFocusMode())) {
+            return false;
+        }
+        pendingFocusMode = focusMode;
+        return true;
+    }
+
+    /**
+     * @return the preview sizes the camera supports, null if unknown
+     */
+    List<Camera.Size> getSupportedPreviewSizes() {
+        return isAvailable() ? parameters.getSupportedPreviewSizes() : null;
+    }
+
+    /**
+     * Only valid while the preview is stopped; the caller commits right away.
+     */
+    void setPreviewSize(int width, int height) {
+        pendingPreviewWidth = width;
+        pendingPreviewHeight = height;
+    }
+
+    boolean hasPendingChanges() {
+        return pendingZoom != NO_ZOOM || torchPending || pendingFocusMode != null
+                || pendingPreviewWidth > 0;
+    }
+
+    boolean isTorchPending() {
+        return torchPending;
+    }
+
+    boolean isFocusModePending() {
+        return pendingFocusMode != null;
+    }
+
+    /**
+     * Writes the pending changes into the cached parameters for a caller
+     * which sends them to the camera itself, outside the lock. Until it has,
+     * the parameters must not be changed again; if the camera rejects them
+     * the caller resets the cache with what the camera reports.
+     *
+     * @return the parameters to set, or null if nothing changed
+     */
+    Camera.Parameters takePendingChanges() {
+        if (!isAvailable() || !hasPendingChanges()) {
+            return null;
+        }
+        if (pendingZoom != NO_ZOOM) {
+            parameters.setZoom(pendingZoom);
+        }
+        if (torchPending) {
+            configManager.setTorch(parameters, pendingTorch);
+        }
+        if (pendingFocusMode != null) {
+            parameters.setFocusMode(pendingFocusMode);
+        }
+        if (pendingPreviewWidth > 0) {
+            parameters.setPreviewSize(pendingPreviewWidth, pendingPreviewHeight);
+        }
+        pendingZoom = NO_ZOOM;
+        torchPending = false;
+        pendingFocusMode = null;
+        pendingPreviewWidth = 0;
+        return parameters;
+    }
+
+}
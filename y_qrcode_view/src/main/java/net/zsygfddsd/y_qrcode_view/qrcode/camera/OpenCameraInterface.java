@@ -34,11 +34,20 @@ public final class OpenCameraInterface {
 	 * or opens camera 0.
 	 */
 	public static Camera open() {
+		int cameraId = findCameraId();
+		return cameraId < 0 ? null : open(cameraId);
+	}
+
+	/**
+	 * @return the id of the first rear-facing camera, 0 if there is none, or
+	 * -1 if the device has no camera at all
+	 */
+	public static int findCameraId() {
 
 		int numCameras = Camera.getNumberOfCameras();
 		if (numCameras == 0) {
 			Log.w(TAG, "No cameras!");
-			return null;
+			return -1;
 		}
 
 		int index = 0;
@@ -52,16 +61,19 @@ public final class OpenCameraInterface {
 			index++;
 		}
 
-		Camera camera;
 		if (index < numCameras) {
-			Log.i(TAG, "Opening camera #" + index);
-			camera = Camera.open(index);
-		} else {
-			Log.i(TAG, "No camera facing back; returning camera #0");
-			camera = Camera.open(0);
+			return index;
 		}
+		Log.i(TAG, "No camera facing back; using camera #0");
+		return 0;
+	}
 
-		return camera;
+	/**
+	 * Opens the camera found by {@link #findCameraId()}.
+	 */
+	public static Camera open(int cameraId) {
+		Log.i(TAG, "Opening camera #" + cameraId);
+		return Camera.open(cameraId);
 	}
 
 }
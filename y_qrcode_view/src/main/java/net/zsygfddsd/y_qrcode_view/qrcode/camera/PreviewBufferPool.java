@@ -0,0 +1,134 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+/**
+ * A bounded ring of preallocated preview buffers which are handed to the
+ * camera through {@code Camera.addCallbackBuffer}. The camera fills one of
+ * them for every preview frame; once the decoder is done with a frame the
+ * buffer is given back to the camera, so a long scan session keeps reusing
+ * the same few arrays instead of having the HAL allocate one per frame.
+ * <p/>
+ * 预览缓冲池：预先分配N块NV21缓冲区交给相机循环使用，解码完成后归还，
+ * 避免长时间扫描时每一帧都分配新数组引起的GC卡顿。
+ */
+final class PreviewBufferPool {
+
+    /**
+     * Where free buffers go, normally {@code Camera.addCallbackBuffer}.
+     */
+    interface CallbackBufferQueue {
+
+        void addCallbackBuffer(byte[] buffer);
+
+    }
+
+    private final CallbackBufferQueue queue;
+
+    private final byte[][] buffers;
+
+    /**
+     * 缓冲区是否在相机手里（等待被填充）
+     */
+    private final boolean[] queued;
+
+    PreviewBufferPool(int capacity, CallbackBufferQueue queue) {
+        if (capacity <= 0) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        this.queue = queue;
+        this.buffers = new byte[capacity][];
+        this.queued = new boolean[capacity];
+    }
+
+    /**
+     * Makes sure every buffer holds at least {@code bufferSize} bytes and hands
+     * all of them to the camera. Called once per preview session, after
+     * {@link #clear()}.
+     */
+    void start(int bufferSize) {
+        byte[][] toQueue = new byte[buffers.length][];
+        synchronized (this) {
+            for (int i = 0; i < buffers.length; i++) {
+                if (buffers[i] == null || buffers[i].length < bufferSize) {
+                    buffers[i] = new byte[bufferSize];
+                }
+                queued[i] = true;
+                toQueue[i] = buffers[i];
+            }
+        }
+        for (byte[] buffer : toQueue) {
+            queue.addCallbackBuffer(buffer);
+        }
+    }
+
+    /**
+     * The camera has filled {@code data} and passed it to the preview callback.
+     *
+     * @return true if the buffer belongs to this pool.
+     */
+    synchronized boolean onFrameDelivered(byte[] data) {
+        int index = indexOf(data);
+        if (index < 0) {
+            return false;
+        }
+        queued[index] = false;
+        return true;
+    }
+
+    /**
+     * Gives a buffer back to the camera. Buffers that do not belong to the pool,
+     * for example frames of a one-shot callback or of a previous session, and
+     * buffers already queued are ignored.
+     *
+     * @return true if the buffer went back to the camera.
+     */
+    boolean release(byte[] data) {
+        synchronized (this) {
+            int index = indexOf(data);
+            if (index < 0 || queued[index]) {
+                return false;
+            }
+            queued[index] = true;
+        }
+        // 在锁外调用，避免与CameraManager的锁互相等待
+        queue.addCallbackBuffer(data);
+        return true;
+    }
+
+    /**
+     * Forgets the buffers, e.g. when the preview stops. Buffers still held by
+     * the decoder are not returned to the camera when they are released later.
+     */
+    synchronized void clear() {
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = null;
+            queued[i] = false;
+        }
+    }
+
+    synchronized int getQueuedCount() {
+        int count = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] != null && queued[i]) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    int getCapacity() {
+        return buffers.length;
+    }
+
+    private int indexOf(byte[] data) {
+        if (data == null) {
+            return -1;
+        }
+        for (int i = 0; i < buffers.length; i++) {
+            if (buffers[i] == data) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+}
@@ -20,10 +20,15 @@ import android.graphics.Point;
 import android.hardware.Camera;
 import android.os.Handler;
 import android.os.Message;
+import android.os.SystemClock;
 import android.util.Log;
 
 /**
  * 该类的作用是在预览界面加载好后向ui线程发消息
+ * <p/>
+ * 预览帧在主线程回调，但相机线程会在开始、停止预览时设置缓冲池和handler，所以状态的读写都加锁；
+ * 还缓冲区和发消息放在锁外，避免与CameraManager的锁互相等待。
+ * 消息都按当前时间发送，不插队；相机送来帧的时间通过{@link #getFrameTime(byte[])}另外取。
  */
 final class PreviewCallback implements Camera.PreviewCallback {
 
@@ -33,6 +38,44 @@ final class PreviewCallback implements Camera.PreviewCallback {
     private Handler previewHandler;
     private int previewMessage;
 
+    /**
+     * 缓冲模式下的预览缓冲池，为null时是一次性回调模式
+     */
+    private PreviewBufferPool bufferPool;
+
+    /**
+     * 请求预览帧的时间，以及最近一帧从请求到回调所用的时间
+     */
+    private long requestNanos;
+
+    private long lastDeliveryNanos = -1;
+
+    /**
+     * 缓冲模式下还没人要的最新一帧，新帧到来时旧的直接还给相机（只保留最新的）
+     */
+    private byte[] heldFrame;
+
+    private long heldFrameTime;
+
+    /**
+     * 最近交出去的一帧，以及相机送来它的时间（uptimeMillis）
+     */
+    private byte[] deliveredFrame;
+
+    private long deliveredFrameTime;
+
+    /**
+     * 缓冲模式下相机相邻两帧的平均间隔
+     */
+    private long lastFrameTime;
+
+    private long frameIntervalMs;
+
+    /**
+     * 被更新的帧顶替掉、没有交给解码的帧数
+     */
+    private long replacedFrames;
+
     PreviewCallback(CameraConfigurationManager configManager) {
         this.configManager = configManager;
     }
@@ -42,10 +85,73 @@ final class PreviewCallback implements Camera.PreviewCallback {
      *
      * @param previewHandler
      * @param previewMessage
+     * @return the message handing out a frame which was already waiting, to be
+     * sent by the caller once it holds no lock; null if there was none
+     */
+    Message setHandler(Handler previewHandler, int previewMessage) {
+        synchronized (this) {
+            this.previewHandler = previewHandler;
+            this.previewMessage = previewMessage;
+            if (previewHandler == null) {
+                return null;
+            }
+            requestNanos = System.nanoTime();
+            Point cameraResolution = configManager.getCameraResolution();
+            if (heldFrame == null || cameraResolution == null) {
+                return null;
+            }
+            // 已经有一帧在等着了，直接交出去，相机送来它的时间记在deliveredFrameTime
+            Message message = previewHandler.obtainMessage(previewMessage,
+                    cameraResolution.x, cameraResolution.y, heldFrame);
+            deliveredFrame = heldFrame;
+            deliveredFrameTime = heldFrameTime;
+            heldFrame = null;
+            lastDeliveryNanos = 0;
+            this.previewHandler = null;
+            return message;
+        }
+    }
+
+    /**
+     * @return how long the last dispatched frame took from request to callback
+     * in nanoseconds, -1 before the first frame.
+     */
+    synchronized long getLastDeliveryNanos() {
+        return lastDeliveryNanos;
+    }
+
+    /**
+     * @return the {@link SystemClock#uptimeMillis()} at which the camera
+     * delivered {@code frame}, -1 if it is not the last frame handed out
      */
-    void setHandler(Handler previewHandler, int previewMessage) {
-        this.previewHandler = previewHandler;
-        this.previewMessage = previewMessage;
+    synchronized long getFrameTime(byte[] frame) {
+        return frame != null && frame == deliveredFrame ? deliveredFrameTime : -1;
+    }
+
+    /**
+     * 设置缓冲模式下的预览缓冲池，没人要的帧会直接还给相机
+     *
+     * @param bufferPool
+     */
+    synchronized void setBufferPool(PreviewBufferPool bufferPool) {
+        this.bufferPool = bufferPool;
+        heldFrame = null;
+        lastFrameTime = 0;
+    }
+
+    /**
+     * @return the average time between two camera frames in milliseconds, 0
+     * if unknown (the one-shot mode only sees the frames it asked for)
+     */
+    synchronized long getFrameIntervalMs() {
+        return frameIntervalMs;
+    }
+
+    /**
+     * @return frames which were replaced by a newer frame before anybody asked for them
+     */
+    synchronized long getReplacedFrameCount() {
+        return replacedFrames;
     }
 
     /**
@@ -57,16 +163,51 @@ final class PreviewCallback implements Camera.PreviewCallback {
     @Override
     public void onPreviewFrame(byte[] data, Camera camera) {
         Point cameraResolution = configManager.getCameraResolution();//这里获取的即是预览层图像的宽高，px
-        Handler thePreviewHandler = previewHandler;
-        if (cameraResolution != null && thePreviewHandler != null) {
-            //终于在这里将Message发射出去了，在这里将每一帧图像的数据发射出去了，
-            //包括图像的宽，图像的高，以及图像的byte[]数据data，分别以int arg1, int arg2, Object obj的形式，发射出去了
-            //在{@link net.zsygfddsd.y_scan_qrcode_lib.qrcode.decode.DecodeHandler#handleMessage(Message message)}中接收解析
-            Message message = thePreviewHandler.obtainMessage(previewMessage, cameraResolution.x, cameraResolution.y, data);
+        long now = SystemClock.uptimeMillis();
+        PreviewBufferPool pool;
+        byte[] replaced = null;
+        Message message = null;
+        synchronized (this) {
+            Handler thePreviewHandler = previewHandler;
+            pool = bufferPool;
+            if (pool != null) {
+                pool.onFrameDelivered(data);
+                if (lastFrameTime != 0) {
+                    long interval = now - lastFrameTime;
+                    frameIntervalMs = frameIntervalMs == 0 ? interval
+                            : (frameIntervalMs * 3 + interval) / 4;
+                }
+                lastFrameTime = now;
+            }
+            if (heldFrame != null && pool != null) {
+                // 有了更新的帧，之前留着的那一帧不再需要
+                replaced = heldFrame;
+                heldFrame = null;
+                replacedFrames++;
+            }
+            if (cameraResolution != null && thePreviewHandler != null) {
+                lastDeliveryNanos = System.nanoTime() - requestNanos;
+                //终于在这里将Message发射出去了，在这里将每一帧图像的数据发射出去了，
+                //包括图像的宽，图像的高，以及图像的byte[]数据data，分别以int arg1, int arg2, Object obj的形式，发射出去了
+                //在{@link net.zsygfddsd.y_scan_qrcode_lib.qrcode.decode.DecodeHandler#handleMessage(Message message)}中接收解析
+                message = thePreviewHandler.obtainMessage(previewMessage, cameraResolution.x, cameraResolution.y, data);
+                deliveredFrame = data;
+                deliveredFrameTime = now;
+                previewHandler = null;
+            } else if (pool != null) {
+                // 缓冲模式下相机会一直回调，解码线程还没要下一帧时先留着最新的一帧，
+                // 下次请求时可以马上交出去
+                heldFrame = data;
+                heldFrameTime = now;
+            } else {
+                Log.d(TAG, "Got preview callback, but no handler or resolution available");
+            }
+        }
+        if (replaced != null) {
+            pool.release(replaced);
+        }
+        if (message != null) {
             message.sendToTarget();
-            previewHandler = null;
-        } else {
-            Log.d(TAG, "Got preview callback, but no handler or resolution available");
         }
     }
 
@@ -0,0 +1,160 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+import java.util.List;
+
+/**
+ * How the preview size is chosen among the sizes whose aspect ratio fits the
+ * screen.
+ * <ul>
+ * <li>{@link #largest()}: the largest one, or the one matching the screen
+ * exactly. This is the classic behaviour and decodes huge frames on
+ * devices with 4K sensors.</li>
+ * <li>{@link #decodeBudget(int, float, long)}: the smallest one which still
+ * resolves the expected codes. The framing rect has to show
+ * {@code codeModules} modules of at least {@code modulePixels} pixels each;
+ * anything larger only costs decode time. While scanning, a size one step
+ * smaller is chosen whenever the average decode time goes over the budget,
+ * down to 2 pixels per module.</li>
+ * </ul>
+ * <p/>
+ * 预览尺寸的选择策略：默认选最大的尺寸；按解码预算选择时，选能让扫描框里的码每个模块
+ * 至少有modulePixels个像素的最小尺寸，解码耗时超出预算时再降一档。
+ */
+public final class PreviewSizePolicy {
+
+    /**
+     * 版本10的二维码，边长57个模块
+     */
+    public static final int DEFAULT_CODE_MODULES = 57;
+
+    /**
+     * 每个模块的像素数，低于3个像素时模糊一点就解不出来
+     */
+    public static final float DEFAULT_MODULE_PIXELS = 3f;
+
+    /**
+     * 运行中降低分辨率的下限，每个模块至少2个像素
+     */
+    static final float MIN_MODULE_PIXELS = 2f;
+
+    public static final long DEFAULT_DECODE_BUDGET_MS = 120L;
+
+    private static final PreviewSizePolicy LARGEST = new PreviewSizePolicy(true, 0, 0f, 0L);
+
+    private final boolean largest;
+
+    private final int codeModules;
+
+    private final float modulePixels;
+
+    private final long decodeBudgetMillis;
+
+    private PreviewSizePolicy(boolean largest, int codeModules, float modulePixels,
+                              long decodeBudgetMillis) {
+        this.largest = largest;
+        this.codeModules = codeModules;
+        this.modulePixels = modulePixels;
+        this.decodeBudgetMillis = decodeBudgetMillis;
+    }
+
+    /**
+     * @return the policy picking the largest preview size, the default
+     */
+    public static PreviewSizePolicy largest() {
+        return LARGEST;
+    }
+
+    /**
+     * @return the decode budget policy with the default code density and budget
+     */
+    public static PreviewSizePolicy decodeBudget() {
+        return decodeBudget(DEFAULT_CODE_MODULES, DEFAULT_MODULE_PIXELS, DEFAULT_DECODE_BUDGET_MS);
+    }
+
+    /**
+     * @param codeModules        Modules across the densest code expected, e.g.
+     *                           21 for a QR code of version 1.
+     * @param modulePixels       Preview pixels wanted per module.
+     * @param decodeBudgetMillis Average decode time above which the preview
+     *                           size is reduced while scanning, 0 to never
+     *                           change it.
+     */
+    public static PreviewSizePolicy decodeBudget(int codeModules, float modulePixels,
+                                                 long decodeBudgetMillis) {
+        if (codeModules <= 0) {
+            throw new IllegalArgumentException("codeModules must be positive!");
+        }
+        if (modulePixels < MIN_MODULE_PIXELS) {
+            throw new IllegalArgumentException("modulePixels must be at least " + MIN_MODULE_PIXELS);
+        }
+        if (decodeBudgetMillis < 0) {
+            throw new IllegalArgumentException("decodeBudgetMillis must not be negative!");
+        }
+        return new PreviewSizePolicy(false, codeModules, modulePixels, decodeBudgetMillis);
+    }
+
+    public boolean isLargest() {
+        return largest;
+    }
+
+    /**
+     * @return the decode time above which the preview size is reduced, 0 for never
+     */
+    public long getDecodeBudgetMillis() {
+        return decodeBudgetMillis;
+    }
+
+    /**
+     * Distinguishes the configurations saved for different policies.
+     */
+    String getCacheTag() {
+        return largest ? "largest" : "budget-" + codeModules + "-" + modulePixels;
+    }
+
+    /**
+     * @param sizes           Candidate sizes as {width, height}, largest first.
+     * @param framingFraction Side of the framing rect relative to the shorter
+     *                        side of the preview.
+     * @return index of the size to use, 0 if none resolves the codes
+     */
+    int select(List<int[]> sizes, float framingFraction) {
+        if (largest) {
+            return 0;
+        }
+        float required = codeModules * modulePixels / framingFraction;
+        int best = 0;
+        for (int i = 0; i < sizes.size(); i++) {
+            if (shortSide(sizes.get(i)) >= required) {
+                best = i;
+            }
+        }
+        return best;
+    }
+
+    /**
+     * @param sizes           Candidate sizes as {width, height}, largest first.
+     * @param width           Width of the current preview size.
+     * @param height          Height of the current preview size.
+     * @param framingFraction Side of the framing rect relative to the shorter
+     *                        side of the preview.
+     * @return index of the next smaller size which still has
+     * {@value #MIN_MODULE_PIXELS} pixels per module, or -1
+     */
+    int findSmaller(List<int[]> sizes, int width, int height, float framingFraction) {
+        float minimum = (largest ? DEFAULT_CODE_MODULES : codeModules)
+                * MIN_MODULE_PIXELS / framingFraction;
+        long pixels = (long) width * height;
+        for (int i = 0; i < sizes.size(); i++) {
+            int[] size = sizes.get(i);
+            if ((long) size[0] * size[1] < pixels) {
+                return shortSide(size) >= minimum ? i : -1;
+            }
+        }
+        return -1;
+    }
+
+    private static int shortSide(int[] size) {
+        return Math.min(size[0], size[1]);
+    }
+
+}
@@ -0,0 +1,231 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.Reader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.aztec.AztecReader;
+import com.google.zxing.datamatrix.DataMatrixReader;
+import com.google.zxing.maxicode.MaxiCodeReader;
+import com.google.zxing.oned.MultiFormatOneDReader;
+import com.google.zxing.pdf417.PDF417Reader;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link com.google.zxing.MultiFormatReader} replacement which does not run
+ * every reader on every frame. Almost every preview frame fails while the user
+ * is still aiming, and MultiFormatReader pays for all configured readers on
+ * each of them.
+ * <p/>
+ * Per frame this reader tries, in order:
+ * <ol>
+ * <li>the QR reader, when QR codes are expected: its finder pattern search is
+ * the cheapest way to reject a frame;</li>
+ * <li>readers which found a code recently, most successful first;</li>
+ * <li>a budget of the remaining readers, taking turns from one frame to the
+ * next, so every configured format is still tried every few frames.</li>
+ * </ol>
+ * Only the formats of {@link DecodeHintType#POSSIBLE_FORMATS} get a reader;
+ * without formats all readers are used, as MultiFormatReader does.
+ * <p/>
+ * 按最近的命中率安排各个解码器的顺序，二维码优先，其余解码器每帧只轮流尝试几个，
+ * 降低大量失败帧的平均解码耗时。
+ * <p/>
+ * Not thread safe, each decode thread owns its own instance.
+ */
+final class AdaptiveFormatReader {
+
+    /**
+     * 每帧额外尝试的冷门解码器个数
+     */
+    static final int DEFAULT_COLD_READERS_PER_FRAME = 1;
+
+    /**
+     * 每次有解码器命中时，所有解码器的得分先乘以这个系数
+     */
+    private static final float HIT_DECAY = 0.8f;
+
+    /**
+     * 得分高于这个值的解码器每帧都会尝试，约等于最近10次命中里出现过
+     */
+    private static final float HOT_SCORE = 0.1f;
+
+    private final Map<DecodeHintType, ?> hints;
+
+    private final int coldReadersPerFrame;
+
+    /**
+     * 二维码解码器，没有配置二维码时为null
+     */
+    private final ReaderSlot qrSlot;
+
+    /**
+     * 其他解码器，按MultiFormatReader的默认顺序排列
+     */
+    private final ReaderSlot[] otherSlots;
+
+    private final ReaderSlot[] tryOrder;
+
+    private int tryCount;
+
+    private int coldCursor;
+
+    AdaptiveFormatReader(Map<DecodeHintType, ?> hints) {
+        this(hints, DEFAULT_COLD_READERS_PER_FRAME);
+    }
+
+    /**
+     * @param hints               Passed to every reader, {@code POSSIBLE_FORMATS}
+     *                            selects the readers.
+     * @param coldReadersPerFrame How many readers without recent hits are tried
+     *                            on each frame, at least 1.
+     */
+    AdaptiveFormatReader(Map<DecodeHintType, ?> hints, int coldReadersPerFrame) {
+        this.hints = hints;
+        this.coldReadersPerFrame = Math.max(1, coldReadersPerFrame);
+
+        @SuppressWarnings("unchecked")
+        Collection<BarcodeFormat> formats = hints == null ? null
+                : (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        boolean all = formats == null || formats.isEmpty();
+
+        qrSlot = all || formats.contains(BarcodeFormat.QR_CODE)
+                ? new ReaderSlot("QR", new QRCodeReader()) : null;
+        List<ReaderSlot> others = new ArrayList<ReaderSlot>();
+        if (all || containsAny(formats, DecodeFormatManager.ONE_D_FORMATS)) {
+            others.add(new ReaderSlot("1D", new MultiFormatOneDReader(hints)));
+        }
+        if (all || formats.contains(BarcodeFormat.DATA_MATRIX)) {
+            others.add(new ReaderSlot("DATA_MATRIX", new DataMatrixReader()));
+        }
+        if (all || formats.contains(BarcodeFormat.AZTEC)) {
+            others.add(new ReaderSlot("AZTEC", new AztecReader()));
+        }
+        if (all || formats.contains(BarcodeFormat.PDF_417)) {
+            others.add(new ReaderSlot("PDF_417", new PDF417Reader()));
+        }
+        if (all || formats.contains(BarcodeFormat.MAXICODE)) {
+            others.add(new ReaderSlot("MAXICODE", new MaxiCodeReader()));
+        }
+        otherSlots = others.toArray(new ReaderSlot[others.size()]);
+        tryOrder = new ReaderSlot[otherSlots.length + 1];
+    }
+
+    /**
+     * Decodes the frame with the readers scheduled for it.
+     *
+     * @throws NotFoundException if none of them found a code
+     */
+    Result decode(BinaryBitmap image) throws NotFoundException {
+        schedule();
+        for (int i = 0; i < tryCount; i++) {
+            ReaderSlot slot = tryOrder[i];
+            try {
+                Result result = slot.reader.decode(image, hints);
+                onHit(slot);
+                return result;
+            } catch (ReaderException re) {
+                // continue
+            }
+        }
+        throw NotFoundException.getNotFoundInstance();
+    }
+
+    void reset() {
+        if (qrSlot != null) {
+            qrSlot.reader.reset();
+        }
+        for (ReaderSlot slot : otherSlots) {
+            slot.reader.reset();
+        }
+    }
+
+    /**
+     * @return the names of the readers the last frame was scheduled for, in order
+     */
+    List<String> getLastTryOrder() {
+        List<String> names = new ArrayList<String>(tryCount);
+        for (int i = 0; i < tryCount; i++) {
+            names.add(tryOrder[i].name);
+        }
+        return names;
+    }
+
+    private void schedule() {
+        int count = 0;
+        if (qrSlot != null) {
+            tryOrder[count++] = qrSlot;
+        }
+        // 最近命中过的解码器，按得分从高到低插入
+        int hotStart = count;
+        for (ReaderSlot slot : otherSlots) {
+            if (slot.score > HOT_SCORE) {
+                int i = count++;
+                while (i > hotStart && tryOrder[i - 1].score < slot.score) {
+                    tryOrder[i] = tryOrder[i - 1];
+                    i--;
+                }
+                tryOrder[i] = slot;
+            }
+        }
+        // 其余的解码器轮流尝试
+        int cold = otherSlots.length - (count - hotStart);
+        int budget = Math.min(coldReadersPerFrame, cold);
+        for (int n = 0; n < otherSlots.length && budget > 0; n++) {
+            ReaderSlot slot = otherSlots[coldCursor];
+            coldCursor = (coldCursor + 1) % otherSlots.length;
+            if (slot.score <= HOT_SCORE) {
+                tryOrder[count++] = slot;
+                budget--;
+            }
+        }
+        tryCount = count;
+    }
+
+    private void onHit(ReaderSlot hit) {
+        if (qrSlot != null) {
+            qrSlot.score *= HIT_DECAY;
+        }
+        for (ReaderSlot slot : otherSlots) {
+            slot.score *= HIT_DECAY;
+        }
+        hit.score += 1f;
+    }
+
+    private static boolean containsAny(Collection<BarcodeFormat> formats,
+                                       Collection<BarcodeFormat> candidates) {
+        for (BarcodeFormat format : candidates) {
+            if (formats.contains(format)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static final class ReaderSlot {
+
+        final String name;
+
+        final Reader reader;
+
+        /**
+         * 按命中次数衰减累加的得分
+         */
+        float score;
+
+        ReaderSlot(String name, Reader reader) {
+            this.name = name;
+            this.reader = reader;
+        }
+
+    }
+
+}
@@ -0,0 +1,94 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Decides when to zoom in on its own: a code whose finder patterns are found
+ * but which stays too small in the framing rect to be decoded, typically
+ * because it is far away, gets magnified until it covers about
+ * {@value #TARGET_FRACTION} of the framing rect.
+ * <p/>
+ * 找到了定位点却连续几帧解不出来，并且码在扫描框里很小时，自动放大，远处的码更快解出来。
+ * <p/>
+ * Shared by all decode threads.
+ */
+final class AutoZoomPolicy {
+
+    /**
+     * 定位点的范围小于扫描框边长的这个比例时认为码太小
+     */
+    static final float SMALL_CODE_FRACTION = 0.25f;
+
+    /**
+     * 放大后码大约占扫描框边长的比例
+     */
+    static final float TARGET_FRACTION = 0.4f;
+
+    /**
+     * 一次最多放大的倍数，以免跳过头
+     */
+    static final float MAX_STEP = 2f;
+
+    /**
+     * 自动放大的上限，再大画面抖动太厉害
+     */
+    static final float MAX_RATIO = 4f;
+
+    /**
+     * 连续多少帧码都太小才放大
+     */
+    static final int SMALL_FRAMES_BEFORE_ZOOM = 3;
+
+    /**
+     * 两次放大之间至少间隔的时间，等相机缩放完成、重新对焦
+     */
+    static final long COOLDOWN_MS = 1000L;
+
+    /**
+     * 至少要有这么多个定位点才认为看到了一个码，二维码有三个定位点
+     */
+    static final int MIN_CANDIDATES = 3;
+
+    private int smallFrames;
+
+    private long lastZoomTime = -COOLDOWN_MS;
+
+    /**
+     * Called after a frame in which no code was decoded.
+     *
+     * @param extent       Spread of the frame's candidate points, see
+     *                     {@link RoiTracker#getCandidateExtent(int)}; negative
+     *                     when there were none.
+     * @param framingSize  Smaller side of the framing rect.
+     * @param currentRatio The camera's current magnification.
+     * @param now          Current time in milliseconds.
+     * @return the magnification to zoom to, or 0 to leave the zoom as it is
+     */
+    synchronized float onFrameFailed(float extent, int framingSize, float currentRatio, long now) {
+        if (extent < 0f || framingSize <= 0) {
+            smallFrames = 0;
+            return 0f;
+        }
+        float fraction = extent / framingSize;
+        if (fraction >= SMALL_CODE_FRACTION) {
+            smallFrames = 0;
+            return 0f;
+        }
+        smallFrames++;
+        if (smallFrames < SMALL_FRAMES_BEFORE_ZOOM || now - lastZoomTime < COOLDOWN_MS
+                || currentRatio >= MAX_RATIO) {
+            return 0f;
+        }
+        // 所有定位点挤在一起时范围接近0，按最大步长放大
+        float step = fraction > 0f ? Math.min(TARGET_FRACTION / fraction, MAX_STEP) : MAX_STEP;
+        smallFrames = 0;
+        lastZoomTime = now;
+        return Math.min(currentRatio * step, MAX_RATIO);
+    }
+
+    /**
+     * Starts counting from scratch, e.g. when a new scan starts.
+     */
+    synchronized void reset() {
+        smallFrames = 0;
+    }
+
+}
@@ -0,0 +1,363 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.LatencyHistogram;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Decodes many images, e.g. a folder of photos or screenshots, on a bounded
+ * pool of worker threads. Every worker keeps its own
+ * {@link MultiFormatReader}, and the workers take the images one by one
+ * from the submitted list, so a batch of thousands of images never queues
+ * thousands of tasks. Results are streamed to a {@link Listener} either in
+ * the order of the list or as soon as each image is done, and a
+ * {@link BatchReport} with the throughput ends every batch.
+ * <p/>
+ * How an item becomes pixels is up to the {@link SourceLoader}:
+ * {@link BitmapSources} reads {@link android.net.Uri}s and files on Android,
+ * tests can hand in {@link LuminanceSource}s directly.
+ * <p/>
+ * 批量解码图片：固定数量的解码线程，每个线程一个解码器，按提交顺序或者完成顺序回调结果，
+ * 可以取消，最后给出吞吐量统计。
+ *
+ * @param <T> Type of the items.
+ */
+public final class BatchDecoder<T> {
+
+    /**
+     * Reads one item into luminance values. Called from the worker threads,
+     * possibly concurrently.
+     */
+    public interface SourceLoader<T> {
+
+        /**
+         * @throws IOException if the item cannot be read as an image
+         */
+        LuminanceSource load(T item) throws IOException;
+
+    }
+
+    /**
+     * Receives the results of a batch. Called from the worker threads, but
+     * never concurrently; post to the main thread before touching views.
+     */
+    public interface Listener<T> {
+
+        void onItemDecoded(BatchItemResult<T> result);
+
+        /**
+         * Called once after the last result, also when the batch was cancelled.
+         */
+        void onBatchFinished(BatchReport report);
+
+    }
+
+    /**
+     * 空闲这么久之后解码线程退出
+     */
+    private static final long KEEP_ALIVE_SECONDS = 5L;
+
+    private final SourceLoader<T> loader;
+
+    private final Map<DecodeHintType, ?> hints;
+
+    private final int workerCount;
+
+    private final ThreadPoolExecutor executor;
+
+    /**
+     * 每个解码线程一个解码器，线程退出后随线程回收
+     */
+    private final ThreadLocal<MultiFormatReader> readers = new ThreadLocal<MultiFormatReader>() {
+        @Override
+        protected MultiFormatReader initialValue() {
+            MultiFormatReader reader = new MultiFormatReader();
+            reader.setHints(hints);
+            return reader;
+        }
+    };
+
+    /**
+     * Decodes with the hints of {@link BitmapDecoder}.
+     */
+    public BatchDecoder(SourceLoader<T> loader, int workerCount) {
+        this(loader, BitmapDecoder.buildHints(), workerCount);
+    }
+
+    /**
+     * @param loader      Reads the items.
+     * @param hints       Hints for the readers of the workers.
+     * @param workerCount Number of worker threads, at least 1.
+     */
+    public BatchDecoder(SourceLoader<T> loader, Map<DecodeHintType, ?> hints, int workerCount) {
+        if (loader == null) {
+            throw new IllegalArgumentException("loader must not be null!");
+        }
+        if (workerCount < 1) {
+            workerCount = 1;
+        }
+        this.loader = loader;
+        this.hints = hints;
+        this.workerCount = workerCount;
+        final AtomicInteger threadCount = new AtomicInteger();
+        executor = new ThreadPoolExecutor(workerCount, workerCount,
+                KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<Runnable>(),
+                new ThreadFactory() {
+                    @Override
+                    public Thread newThread(Runnable runnable) {
+                        return new Thread(runnable, "BatchDecodeThread-" + threadCount.getAndIncrement());
+                    }
+                });
+        executor.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * @return a worker count leaving one core to the UI thread, at most 4
+     */
+    public static int defaultWorkerCount() {
+        return Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors() - 1));
+    }
+
+    public int getWorkerCount() {
+        return workerCount;
+    }
+
+    /**
+     * Starts decoding {@code items} in the background.
+     *
+     * @param items    Items to decode; the list must not change until the
+     *                 batch is finished.
+     * @param inOrder  true to deliver the results in the order of
+     *                 {@code items}, false to deliver each as soon as it is
+     *                 done.
+     * @param listener Receives the results and the report.
+     * @return the batch, to cancel or wait for it
+     * @throws IllegalStateException if the decoder was shut down
+     */
+    public Batch<T> decode(List<? extends T> items, boolean inOrder, Listener<T> listener) {
+        Batch<T> batch = new Batch<T>(this, new ArrayList<T>(items), inOrder, listener);
+        int runners = Math.min(workerCount, batch.items.size());
+        if (runners == 0) {
+            batch.runners = 1;
+            batch.runnerFinished();
+            return batch;
+        }
+        batch.runners = runners;
+        for (int i = 0; i < runners; i++) {
+            try {
+                executor.execute(batch);
+            } catch (RejectedExecutionException e) {
+                batch.cancel();
+                // 没有启动的部分也要计数，保证onBatchFinished会被调用
+                for (int j = i; j < runners; j++) {
+                    batch.runnerFinished();
+                }
+                throw new IllegalStateException("BatchDecoder has been shut down", e);
+            }
+        }
+        return batch;
+    }
+
+    /**
+     * Lets the running batches finish and stops the workers afterwards. No
+     * new batches are accepted.
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    private BatchItemResult<T> decodeItem(int index, T item) {
+        long start = System.nanoTime();
+        LuminanceSource source = null;
+        Exception error = null;
+        try {
+            source = loader.load(item);
+            if (source == null) {
+                error = new IOException("No image in " + item);
+            }
+        } catch (Exception e) {
+            error = e;
+        }
+        long loaded = System.nanoTime();
+        Result result = null;
+        if (source != null) {
+            MultiFormatReader reader = readers.get();
+            try {
+                result = reader.decodeWithState(new BinaryBitmap(new HybridBinarizer(source)));
+            } catch (ReaderException re) {
+                // 没有找到码
+            } catch (RuntimeException e) {
+                error = e;
+            } finally {
+                reader.reset();
+            }
+        }
+        return new BatchItemResult<T>(index, item, result, error, loaded - start,
+                System.nanoTime() - loaded);
+    }
+
+    /**
+     * A running batch. Each worker runs it: it takes the next item of the
+     * list until the list is exhausted or the batch is cancelled.
+     */
+    public static final class Batch<T> implements Runnable {
+
+        private final BatchDecoder<T> decoder;
+
+        private final List<T> items;
+
+        private final boolean inOrder;
+
+        private final Listener<T> listener;
+
+        private final long startNanos = System.nanoTime();
+
+        private final AtomicInteger nextIndex = new AtomicInteger();
+
+        private final CountDownLatch finished = new CountDownLatch(1);
+
+        private final LatencyHistogram itemLatency = new LatencyHistogram();
+
+        /**
+         * 按顺序回调时，先完成但前面还没完成的结果暂存在这里
+         */
+        private final BatchItemResult<T>[] pending;
+
+        private volatile boolean cancelled;
+
+        // 以下字段在锁内访问
+        private int runners;
+
+        private int nextToDeliver;
+
+        private int processed;
+
+        private int decoded;
+
+        private int errors;
+
+        private long loadNanos;
+
+        private long decodeNanos;
+
+        private BatchReport report;
+
+        @SuppressWarnings("unchecked")
+        Batch(BatchDecoder<T> decoder, List<T> items, boolean inOrder, Listener<T> listener) {
+            this.decoder = decoder;
+            this.items = items;
+            this.inOrder = inOrder;
+            this.listener = listener;
+            pending = inOrder ? new BatchItemResult[items.size()] : null;
+        }
+
+        @Override
+        public void run() {
+            try {
+                int index;
+                while (!cancelled && (index = nextIndex.getAndIncrement()) < items.size()) {
+                    deliver(decoder.decodeItem(index, items.get(index)));
+                }
+            } finally {
+                runnerFinished();
+            }
+        }
+
+        private synchronized void deliver(BatchItemResult<T> result) {
+            if (cancelled) {
+                return;
+            }
+            if (!inOrder) {
+                publish(result);
+                return;
+            }
+            pending[result.getIndex()] = result;
+            while (!cancelled && nextToDeliver < pending.length && pending[nextToDeliver] != null) {
+                BatchItemResult<T> next = pending[nextToDeliver];
+                pending[nextToDeliver++] = null;
+                publish(next);
+            }
+        }
+
+        private void publish(BatchItemResult<T> result) {
+            processed++;
+            if (result.isDecoded()) {
+                decoded++;
+            }
+            if (result.getError() != null) {
+                errors++;
+            }
+            loadNanos += result.getLoadNanos();
+            decodeNanos += result.getDecodeNanos();
+            itemLatency.record(result.getTotalNanos());
+            listener.onItemDecoded(result);
+        }
+
+        private void runnerFinished() {
+            BatchReport theReport;
+            synchronized (this) {
+                if (--runners > 0) {
+                    return;
+                }
+                report = theReport = new BatchReport(items.size(), processed, decoded, errors,
+                        cancelled, System.nanoTime() - startNanos, loadNanos, decodeNanos,
+                        itemLatency);
+            }
+            try {
+                listener.onBatchFinished(theReport);
+            } finally {
+                finished.countDown();
+            }
+        }
+
+        /**
+         * Stops the batch: images being decoded right now are finished but
+         * not delivered, the others are skipped. The report still follows.
+         */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        public boolean isDone() {
+            return finished.getCount() == 0;
+        }
+
+        /**
+         * Waits until the report has been delivered.
+         *
+         * @return the report, or null if the time ran out
+         */
+        public BatchReport await(long timeout, TimeUnit unit) throws InterruptedException {
+            if (!finished.await(timeout, unit)) {
+                return null;
+            }
+            synchronized (this) {
+                return report;
+            }
+        }
+
+    }
+
+}
@@ -0,0 +1,86 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.Result;
+
+/**
+ * The outcome of one image of a batch: the decoded code, no code at all, or
+ * the error which kept the image from being read. Also tells how long loading
+ * and decoding took.
+ * <p/>
+ * 批量解码中一张图片的结果和耗时。
+ *
+ * @param <T> Type of the items, e.g. {@link android.net.Uri} or {@link java.io.File}.
+ */
+public final class BatchItemResult<T> {
+
+    private final int index;
+
+    private final T item;
+
+    private final Result result;
+
+    private final Exception error;
+
+    private final long loadNanos;
+
+    private final long decodeNanos;
+
+    BatchItemResult(int index, T item, Result result, Exception error,
+                    long loadNanos, long decodeNanos) {
+        this.index = index;
+        this.item = item;
+        this.result = result;
+        this.error = error;
+        this.loadNanos = loadNanos;
+        this.decodeNanos = decodeNanos;
+    }
+
+    /**
+     * @return position of the item in the submitted list
+     */
+    public int getIndex() {
+        return index;
+    }
+
+    public T getItem() {
+        return item;
+    }
+
+    /**
+     * @return the decoded code, or null if none was found or the image could
+     * not be read
+     */
+    public Result getResult() {
+        return result;
+    }
+
+    public boolean isDecoded() {
+        return result != null;
+    }
+
+    /**
+     * @return why the image could not be read or decoded, null otherwise
+     */
+    public Exception getError() {
+        return error;
+    }
+
+    /**
+     * @return time spent reading the image into a luminance source
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * @return time spent searching the image for a code
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    public long getTotalNanos() {
+        return loadNanos + decodeNanos;
+    }
+
+}
@@ -0,0 +1,129 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.LatencyHistogram;
+
+import java.util.Locale;
+
+/**
+ * Throughput of a finished batch: how many images were processed and
+ * decoded, how long it took and how the time per image was spread.
+ * <p/>
+ * 批量解码的统计：处理了多少张、解出多少个码、总耗时、每张的耗时分布和每秒处理的张数。
+ */
+public final class BatchReport {
+
+    private final int itemCount;
+
+    private final int processedCount;
+
+    private final int decodedCount;
+
+    private final int errorCount;
+
+    private final boolean cancelled;
+
+    private final long elapsedNanos;
+
+    private final long loadNanos;
+
+    private final long decodeNanos;
+
+    private final LatencyHistogram itemLatency;
+
+    BatchReport(int itemCount, int processedCount, int decodedCount, int errorCount,
+                boolean cancelled, long elapsedNanos, long loadNanos, long decodeNanos,
+                LatencyHistogram itemLatency) {
+        this.itemCount = itemCount;
+        this.processedCount = processedCount;
+        this.decodedCount = decodedCount;
+        this.errorCount = errorCount;
+        this.cancelled = cancelled;
+        this.elapsedNanos = elapsedNanos;
+        this.loadNanos = loadNanos;
+        this.decodeNanos = decodeNanos;
+        this.itemLatency = itemLatency;
+    }
+
+    /**
+     * @return number of submitted items
+     */
+    public int getItemCount() {
+        return itemCount;
+    }
+
+    /**
+     * @return number of items delivered to the listener, less than
+     * {@link #getItemCount()} if the batch was cancelled
+     */
+    public int getProcessedCount() {
+        return processedCount;
+    }
+
+    public int getDecodedCount() {
+        return decodedCount;
+    }
+
+    /**
+     * @return number of items which could not be read or decoded
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * @return number of readable items without a code
+     */
+    public int getNotFoundCount() {
+        return processedCount - decodedCount - errorCount;
+    }
+
+    public boolean isCancelled() {
+        return cancelled;
+    }
+
+    /**
+     * @return wall time from submitting the batch to its end
+     */
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * @return time spent loading images, summed over all workers
+     */
+    public long getLoadNanos() {
+        return loadNanos;
+    }
+
+    /**
+     * @return time spent decoding images, summed over all workers
+     */
+    public long getDecodeNanos() {
+        return decodeNanos;
+    }
+
+    /**
+     * @return load plus decode time per item
+     */
+    public LatencyHistogram getItemLatency() {
+        return itemLatency;
+    }
+
+    /**
+     * @return processed items per second of wall time
+     */
+    public float getItemsPerSecond() {
+        return elapsedNanos <= 0 ? 0f : processedCount * 1e9f / elapsedNanos;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.US,
+                "%d/%d items%s, %d decoded, %d errors in %d ms (%.1f/s), load %d ms, decode %d ms, item p50 %d us p95 %d us",
+                processedCount, itemCount, cancelled ? " (cancelled)" : "", decodedCount, errorCount,
+                elapsedNanos / 1000000L, getItemsPerSecond(), loadNanos / 1000000L,
+                decodeNanos / 1000000L, itemLatency.getPercentileMicros(50),
+                itemLatency.getPercentileMicros(95));
+    }
+
+}
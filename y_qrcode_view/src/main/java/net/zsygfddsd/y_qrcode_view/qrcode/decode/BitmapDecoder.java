@@ -28,6 +28,17 @@ public class BitmapDecoder {
 
 		multiFormatReader = new MultiFormatReader();
 
+		// 设置解析配置参数
+		multiFormatReader.setHints(buildHints());
+
+	}
+
+	/**
+	 * 从图片解码时使用的解码参数，{@link BatchDecoder}默认也使用这些参数
+	 *
+	 * @return
+	 */
+	static Hashtable<DecodeHintType, Object> buildHints() {
 		// 解码的参数
 		Hashtable<DecodeHintType, Object> hints = new Hashtable<DecodeHintType, Object>(
 				2);
@@ -45,10 +56,7 @@ public class BitmapDecoder {
 
 		// 设置继续的字符编码格式为UTF8
 		hints.put(DecodeHintType.CHARACTER_SET, "UTF8");
-
-		// 设置解析配置参数
-		multiFormatReader.setHints(hints);
-
+		return hints;
 	}
 
 	/**
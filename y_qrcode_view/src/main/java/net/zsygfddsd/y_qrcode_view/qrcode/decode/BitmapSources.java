@@ -0,0 +1,129 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import android.content.ContentResolver;
+import android.content.Context;
+import android.graphics.Bitmap;
+import android.graphics.BitmapFactory;
+import android.net.Uri;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * {@link BatchDecoder.SourceLoader}s reading images from content URIs and
+ * files. Large images are subsampled while decoding so their longer side
+ * stays within {@code maxSide}; a code filling a fair part of a photo or a
+ * screenshot is still found, and a few workers can run side by side without
+ * running out of memory.
+ * <p/>
+ * 从Uri或文件读取图片，读取时按2的幂缩小到长边不超过maxSide。
+ */
+public final class BitmapSources {
+
+    /**
+     * 长边的默认上限，4:3的照片缩小到1600x1200，ARGB的图约7M
+     */
+    public static final int DEFAULT_MAX_SIDE = 1600;
+
+    private BitmapSources() {
+    }
+
+    public static BatchDecoder.SourceLoader<Uri> forUris(Context context, int maxSide) {
+        final ContentResolver resolver = context.getContentResolver();
+        return new StreamLoader<Uri>(maxSide) {
+            @Override
+            InputStream open(Uri uri) throws IOException {
+                InputStream in = resolver.openInputStream(uri);
+                if (in == null) {
+                    throw new IOException("Cannot open " + uri);
+                }
+                return in;
+            }
+        };
+    }
+
+    public static BatchDecoder.SourceLoader<File> forFiles(int maxSide) {
+        return new StreamLoader<File>(maxSide) {
+            @Override
+            InputStream open(File file) throws IOException {
+                return new FileInputStream(file);
+            }
+        };
+    }
+
+    /**
+     * @return the smallest power of two sample size which brings the longer
+     * side within {@code maxSide}
+     */
+    static int computeSampleSize(int width, int height, int maxSide) {
+        int sampleSize = 1;
+        while (width / sampleSize > maxSide || height / sampleSize > maxSide) {
+            sampleSize *= 2;
+        }
+        return sampleSize;
+    }
+
+    private abstract static class StreamLoader<T> implements BatchDecoder.SourceLoader<T> {
+
+        private final int maxSide;
+
+        StreamLoader(int maxSide) {
+            if (maxSide <= 0) {
+                throw new IllegalArgumentException("maxSide must be positive!");
+            }
+            this.maxSide = maxSide;
+        }
+
+        abstract InputStream open(T item) throws IOException;
+
+        @Override
+        public LuminanceSource load(T item) throws IOException {
+            // 先只读尺寸，算出缩小的倍数再真正解码
+            BitmapFactory.Options options = new BitmapFactory.Options();
+            options.inJustDecodeBounds = true;
+            decode(item, options);
+            if (options.outWidth <= 0 || options.outHeight <= 0) {
+                throw new IOException("Not an image: " + item);
+            }
+            options.inJustDecodeBounds = false;
+            options.inSampleSize = computeSampleSize(options.outWidth, options.outHeight, maxSide);
+            options.inPreferredConfig = Bitmap.Config.ARGB_8888;
+            Bitmap bitmap;
+            try {
+                bitmap = decode(item, options);
+            } catch (OutOfMemoryError e) {
+                throw new IOException("Out of memory reading " + item);
+            }
+            if (bitmap == null) {
+                throw new IOException("Cannot decode " + item);
+            }
+            try {
+                int width = bitmap.getWidth();
+                int height = bitmap.getHeight();
+                int[] pixels = new int[width * height];
+                bitmap.getPixels(pixels, 0, width, 0, 0, width, height);
+                return new RGBLuminanceSource(width, height, pixels);
+            } catch (OutOfMemoryError e) {
+                throw new IOException("Out of memory reading " + item);
+            } finally {
+                bitmap.recycle();
+            }
+        }
+
+        private Bitmap decode(T item, BitmapFactory.Options options) throws IOException {
+            InputStream in = open(item);
+            try {
+                return BitmapFactory.decodeStream(in, null, options);
+            } finally {
+                in.close();
+            }
+        }
+
+    }
+
+}
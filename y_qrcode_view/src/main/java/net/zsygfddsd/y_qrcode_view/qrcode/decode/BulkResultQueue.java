@@ -0,0 +1,110 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import android.util.Log;
+
+import com.google.zxing.Result;
+
+import net.zsygfddsd.y_qrcode_view.captureview.Y_CaptureView;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.ThroughputMeter;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hands the codes found in bulk mode to the delegate on a thread of its own,
+ * so neither the decode threads nor the UI thread wait for the application
+ * to store a result. The queue is bounded: when the consumer falls behind
+ * the decode threads drop the code instead of blocking, and it is reported
+ * again the next time it is seen.
+ * <p/>
+ * 连续扫描模式下的结果队列，由单独的线程回调，不占用解码线程和界面线程；
+ * 队列满时丢掉新的结果，这个码下一帧还在画面里时会再次上报。
+ */
+final class BulkResultQueue extends Thread {
+
+    private static final String TAG = BulkResultQueue.class.getSimpleName();
+
+    /**
+     * 队列中最多等待回调的结果个数
+     */
+    static final int DEFAULT_CAPACITY = 64;
+
+    /**
+     * 队列为空时多久检查一次是否退出
+     */
+    private static final long POLL_TIMEOUT_MS = 100L;
+
+    private final Y_CaptureView activity;
+
+    private final BlockingQueue<Result> queue;
+
+    private final ThroughputMeter throughput = new ThroughputMeter();
+
+    private volatile boolean running = true;
+
+    BulkResultQueue(Y_CaptureView activity, int capacity) {
+        super("BulkResultThread");
+        this.activity = activity;
+        this.queue = new ArrayBlockingQueue<Result>(capacity);
+    }
+
+    /**
+     * Called from the decode threads.
+     *
+     * @return false if the queue is full and the result was dropped
+     */
+    boolean offer(Result result) {
+        return running && queue.offer(result);
+    }
+
+    /**
+     * @return codes handed to the delegate in the last minute
+     */
+    float getCodesPerMinute() {
+        return throughput.getPerMinute(System.currentTimeMillis());
+    }
+
+    /**
+     * @return codes handed to the delegate since the queue started
+     */
+    long getCodeCount() {
+        return throughput.getTotal();
+    }
+
+    @Override
+    public void run() {
+        throughput.start(System.currentTimeMillis());
+        // 退出前把已经解出来的码都交出去，不能丢；不用interrupt，以免打断应用自己的回调
+        try {
+            while (running || !queue.isEmpty()) {
+                Result result = queue.poll(POLL_TIMEOUT_MS, TimeUnit.MILLISECONDS);
+                if (result != null) {
+                    deliver(result);
+                }
+            }
+        } catch (InterruptedException e) {
+            // quit
+        }
+        Log.i(TAG, getCodeCount() + " codes, " + getCodesPerMinute() + " per minute");
+    }
+
+    /**
+     * Stops taking new results, delivers the queued ones and waits at most
+     * {@code timeoutMs} for that.
+     */
+    void quit(long timeoutMs) {
+        running = false;
+        try {
+            join(timeoutMs);
+        } catch (InterruptedException e) {
+            // continue
+        }
+    }
+
+    private void deliver(Result result) {
+        activity.handleBulkResult(result);
+        throughput.record(System.currentTimeMillis());
+    }
+
+}
@@ -21,10 +21,7 @@ import android.content.ActivityNotFoundException;
 import android.content.Intent;
 import android.content.pm.PackageManager;
 import android.content.pm.ResolveInfo;
-import android.graphics.Bitmap;
-import android.graphics.BitmapFactory;
 import android.net.Uri;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.Message;
 import android.provider.Browser;
@@ -36,9 +33,12 @@ import com.google.zxing.Result;
 import net.zsygfddsd.y_qrcode_view.R;
 import net.zsygfddsd.y_qrcode_view.captureview.Y_CaptureView;
 import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.DecodeMetrics;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.FrameTimings;
 import net.zsygfddsd.y_qrcode_view.qrcode.view.ViewfinderResultPointCallback;
 
 import java.util.Collection;
+import java.util.List;
 import java.util.Map;
 
 
@@ -56,9 +56,9 @@ public final class CaptureViewHandler extends Handler {
     private final Y_CaptureView y_CaptureView;
 
     /**
-     * 真正负责扫描任务的核心线程
+     * 真正负责扫描任务的核心线程池
      */
-    private final DecodeThread decodeThread;
+    private final DecodeEngine decodeEngine;
 
     private State state;
 
@@ -85,20 +85,22 @@ public final class CaptureViewHandler extends Handler {
     public CaptureViewHandler(Y_CaptureView y_CaptureView,
                               Collection<BarcodeFormat> decodeFormats,
                               Map<DecodeHintType, ?> baseHints, String characterSet,
-                              CameraManager cameraManager) {
+                              CameraManager cameraManager,
+                              int decodeWorkerCount, int maxFramesInFlight) {
         this.y_CaptureView = y_CaptureView;
 
         // 启动扫描线程
-        decodeThread = new DecodeThread(y_CaptureView, decodeFormats, baseHints,
-                characterSet, new ViewfinderResultPointCallback(y_CaptureView.getViewfinderView()));
-        decodeThread.start();
+        decodeEngine = new DecodeEngine(y_CaptureView, decodeFormats, baseHints,
+                characterSet, new ViewfinderResultPointCallback(y_CaptureView.getViewfinderView()),
+                decodeWorkerCount, maxFramesInFlight);
+        decodeEngine.start();
 
         state = State.SUCCESS;
 
         // Start ourselves capturing previews and decoding.
         this.cameraManager = cameraManager;
 
-        // 开启相机预览界面
+        // 开启相机预览界面，相机线程已经开始预览时什么也不做
         cameraManager.startPreview();
 
         restartPreviewAndDecode();
@@ -106,6 +108,11 @@ public final class CaptureViewHandler extends Handler {
 
     @Override
     public void handleMessage(Message message) {
+        if (message.what == R.id.decode_succeeded || message.what == R.id.decode_failed
+                || message.what == R.id.decode_streamed) {
+            // 启动耗时统计到第一帧解码完成
+            y_CaptureView.onFrameDecoded();
+        }
         if (message.what == R.id.restart_preview) {
             Log.d(TAG, "Got restart preview message");
             restartPreviewAndDecode();
@@ -113,31 +120,43 @@ public final class CaptureViewHandler extends Handler {
         } else if (message.what == R.id.decode_succeeded) {
             Log.d(TAG, "Got decode succeeded message");
             state = State.SUCCESS;
-            Bundle bundle = message.getData();
-            Bitmap barcode = null;
-            float scaleFactor = 1.0f;
-            if (bundle != null) {
-                byte[] compressedBitmap = bundle
-                        .getByteArray(DecodeThread.BARCODE_BITMAP);
-                if (compressedBitmap != null) {
-                    barcode = BitmapFactory.decodeByteArray(
-                            compressedBitmap, 0, compressedBitmap.length,
-                            null);
-                    // Mutable copy:
-                    barcode = barcode.copy(Bitmap.Config.ARGB_8888, true);
-                }
-                scaleFactor = bundle
-                        .getFloat(DecodeThread.BARCODE_SCALED_FACTOR);
+            DecodeResult decodeResult = (DecodeResult) message.obj;
+            DecodeMetrics metrics = y_CaptureView.getDecodeMetrics();
+            FrameTimings timings = decodeResult.getFrameTimings();
+            long dispatched = System.nanoTime();
+            if (metrics != null && timings != null) {
+                metrics.record(timings, DecodeMetrics.Stage.RESULT_DISPATCH,
+                        dispatched - decodeResult.getSentNanos());
+            }
+            //解析成功回调，缩略图在需要时才生成
+            y_CaptureView.handleDecode(decodeResult);
+            if (metrics != null && timings != null) {
+                metrics.record(timings, DecodeMetrics.Stage.UI, System.nanoTime() - dispatched);
+                metrics.onFrameFinished(timings, true);
             }
-            //解析成功回调
-            y_CaptureView.handleDecode((Result) message.obj, barcode,
-                    scaleFactor);
 
         } else if (message.what == R.id.decode_failed) {// We're decoding as fast as possible, so when one decode fails,
             // start another.
-            state = State.PREVIEW;
-            cameraManager.requestPreviewFrame(decodeThread.getHandler(),
-                    R.id.decode);
+            // 多个线程同时在解码，别的线程已经成功后到达的失败消息不能再开始新的一轮
+            if (state == State.PREVIEW) {
+                decodeEngine.requestFrame();
+            }
+
+        } else if (message.what == R.id.decode_streamed) {
+            // 多码模式：新出现的码逐个回调，扫描不停止
+            if (state == State.PREVIEW) {
+                @SuppressWarnings("unchecked")
+                List<Result> results = (List<Result>) message.obj;
+                y_CaptureView.handleStreamedResults(results);
+                decodeEngine.requestFrame();
+            }
+
+        } else if (message.what == R.id.decode_over_budget) {
+            // 解码跟不上，在相机线程里把预览尺寸降一档，正在等待的取帧请求仍然有效
+            if (state != State.DONE) {
+                Log.i(TAG, "Decoding over budget, reducing preview size");
+                cameraManager.reducePreviewSizeAsync();
+            }
 
         } else if (message.what == R.id.return_scan_result) {
             Log.d(TAG, "Got return scan result message");
@@ -186,20 +205,41 @@ public final class CaptureViewHandler extends Handler {
     public void quitSynchronously() {
         state = State.DONE;
         cameraManager.stopPreview();
-        Message quit = Message.obtain(decodeThread.getHandler(), R.id.quit);
-        quit.sendToTarget();
-
-        try {
-            // Wait at most half a second; should be enough time, and onPause()
-            // will timeout quickly
-            decodeThread.join(500L);
-        } catch (InterruptedException e) {
-            // continue
-        }
+        decodeEngine.quitSynchronously();
 
         // Be absolutely sure we don't send any queued up messages
         removeMessages(R.id.decode_succeeded);
         removeMessages(R.id.decode_failed);
+        removeMessages(R.id.decode_streamed);
+        removeMessages(R.id.decode_over_budget);
+    }
+
+    /**
+     * @return frames the decode workers finished per second, successful or not
+     */
+    public float getFramesDecodedPerSecond() {
+        return decodeEngine.getFramesDecodedPerSecond();
+    }
+
+    /**
+     * @return codes delivered in bulk mode during the last minute
+     */
+    public float getCodesPerMinute() {
+        return decodeEngine.getCodesPerMinute();
+    }
+
+    /**
+     * @return preview frames which were dropped instead of decoded
+     */
+    public long getDroppedFrameCount() {
+        return decodeEngine.getDroppedFrameCount();
+    }
+
+    /**
+     * @return the default number of decode threads for this device
+     */
+    public static int getDefaultDecodeWorkerCount() {
+        return DecodeEngine.getDefaultWorkerCount();
     }
 
     /**
@@ -208,10 +248,14 @@ public final class CaptureViewHandler extends Handler {
     private void restartPreviewAndDecode() {
         if (state == State.SUCCESS) {
             state = State.PREVIEW;
+            decodeEngine.newGeneration();
+            DecodeMetrics metrics = y_CaptureView.getDecodeMetrics();
+            if (metrics != null) {
+                metrics.onScanStarted();
+            }
 
-            // 向decodeThread绑定的handler（DecodeHandler)发送解码消息
-            cameraManager.requestPreviewFrame(decodeThread.getHandler(),
-                    R.id.decode);
+            // 向相机要一帧，由decodeEngine分发给空闲的解码线程
+            decodeEngine.requestFrame();
             y_CaptureView.drawViewfinder();
         }
     }
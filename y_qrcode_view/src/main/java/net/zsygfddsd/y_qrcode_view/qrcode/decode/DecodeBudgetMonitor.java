@@ -0,0 +1,57 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Watches the decode time of the workers and tells when its average stays
+ * above the budget of the preview size policy, so the preview can be switched
+ * to a smaller size. After each signal it starts measuring from scratch and
+ * waits at least {@value #COOLDOWN_MS} ms, giving the smaller size time to show
+ * its effect.
+ * <p/>
+ * 解码耗时的平均值超出预算时发出信号，降低预览尺寸后重新开始统计。
+ * <p/>
+ * Called from the decode threads.
+ */
+final class DecodeBudgetMonitor {
+
+    /**
+     * 至少统计这么多帧才下结论，刚开始对焦时的几帧不算数
+     */
+    static final int MIN_FRAMES = 15;
+
+    static final long COOLDOWN_MS = 3000L;
+
+    /**
+     * 解码耗时的指数平滑系数
+     */
+    private static final float SMOOTHING = 0.2f;
+
+    private final long budgetMs;
+
+    private float averageMs;
+
+    private int frames;
+
+    private long lastSignalTime = Long.MIN_VALUE;
+
+    DecodeBudgetMonitor(long budgetMs) {
+        this.budgetMs = budgetMs;
+    }
+
+    /**
+     * @param decodeMs How long the worker spent on the frame.
+     * @param now      Current time in milliseconds.
+     * @return true if the preview size should be reduced now
+     */
+    synchronized boolean onFrameDecoded(long decodeMs, long now) {
+        averageMs = frames == 0 ? decodeMs : averageMs + (decodeMs - averageMs) * SMOOTHING;
+        frames++;
+        if (frames < MIN_FRAMES || averageMs <= budgetMs
+                || (lastSignalTime != Long.MIN_VALUE && now - lastSignalTime < COOLDOWN_MS)) {
+            return false;
+        }
+        lastSignalTime = now;
+        frames = 0;
+        return true;
+    }
+
+}
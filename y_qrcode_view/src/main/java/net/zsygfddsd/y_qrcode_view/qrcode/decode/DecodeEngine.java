@@ -0,0 +1,485 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import android.content.SharedPreferences;
+import android.os.Handler;
+import android.os.Looper;
+import android.os.Message;
+import android.os.SystemClock;
+import android.preference.PreferenceManager;
+import android.util.Log;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.ResultPointCallback;
+
+import net.zsygfddsd.y_qrcode_view.R;
+import net.zsygfddsd.y_qrcode_view.captureview.Y_CaptureView;
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.PreviewSizePolicy;
+import net.zsygfddsd.y_qrcode_view.qrcode.config.Config;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+
+/**
+ * Runs the decoding on a pool of {@link DecodeThread} workers, each with its
+ * own reader, and keeps at most a fixed number of preview frames in flight.
+ * Frames from the camera arrive at {@link #getHandler()} and go to an idle
+ * worker; frames arriving while every slot is busy are handed straight back
+ * to the camera. {@link FrameBackpressure} drops frames which waited too long
+ * and spaces the frame requests out when decoding cannot keep up.
+ * <p/>
+ * Every restart of the scan starts a new generation. Only the first success
+ * of the current generation reaches {@link CaptureViewHandler}, results of
+ * older generations or later successes are dropped.
+ * <p/>
+ * 多线程解码：每个工作线程有自己的解码器，同时最多处理K帧，
+ * 同一轮扫描只把第一个成功的结果交给界面。
+ */
+final class DecodeEngine {
+
+    private static final String TAG = DecodeEngine.class.getSimpleName();
+
+    /**
+     * 计算解码帧率时参考最近多少帧
+     */
+    private static final int RATE_WINDOW = 32;
+
+    /**
+     * 超过这个时间没有新的帧解码完成，帧率按0算
+     */
+    private static final long RATE_TIMEOUT_MS = 2000L;
+
+    private final Y_CaptureView activity;
+
+    private final DecodeThread[] workers;
+
+    private final int maxFramesInFlight;
+
+    private final ConcurrentLinkedQueue<DecodeHandler> idleWorkers = new ConcurrentLinkedQueue<DecodeHandler>();
+
+    private final AtomicInteger framesInFlight = new AtomicInteger();
+
+    private final FrameDispatcher dispatcher;
+
+    private final FrameBackpressure backpressure;
+
+    /**
+     * 手机移动中的帧直接跳过，为null时不判断
+     */
+    private final MotionEstimator motionEstimator;
+
+    /**
+     * 所有工作线程共用，记录最近找到定位点的区域
+     */
+    private final RoiTracker roiTracker = new RoiTracker();
+
+    /**
+     * 码太小时自动放大，为null时不自动缩放
+     */
+    private final AutoZoomPolicy autoZoomPolicy;
+
+    /**
+     * 解码耗时超出预览尺寸策略的预算时通知界面线程降低预览尺寸，为null时不降低
+     */
+    private final DecodeBudgetMonitor budgetMonitor;
+
+    /**
+     * 多码模式和连续扫描模式下所有工作线程共用的去重窗口
+     */
+    private final ResultDeduplicator resultDeduplicator;
+
+    /**
+     * 连续扫描模式下的结果队列，为null时解出一个码就结束这一轮扫描
+     */
+    private final BulkResultQueue bulkResults;
+
+    private volatile int generation;
+
+    private boolean delivered;
+
+    private volatile boolean running;
+
+    private final long[] completionTimes = new long[RATE_WINDOW];
+
+    private int completionCount;
+
+    /**
+     * @param workerCount       Number of decode threads, at least 1.
+     * @param maxFramesInFlight Upper bound of frames being decoded at the same
+     *                          time, clamped to {@code workerCount}.
+     */
+    DecodeEngine(Y_CaptureView activity,
+                 Collection<BarcodeFormat> decodeFormats,
+                 Map<DecodeHintType, ?> baseHints, String characterSet,
+                 ResultPointCallback resultPointCallback,
+                 int workerCount, int maxFramesInFlight) {
+        this.activity = activity;
+        if (workerCount < 1) {
+            workerCount = 1;
+        }
+        if (maxFramesInFlight < 1 || maxFramesInFlight > workerCount) {
+            maxFramesInFlight = workerCount;
+        }
+        this.maxFramesInFlight = maxFramesInFlight;
+        this.backpressure = new FrameBackpressure(maxFramesInFlight);
+        this.autoZoomPolicy = activity.isAutoZoomEnabled() ? new AutoZoomPolicy() : null;
+        PreviewSizePolicy sizePolicy = activity.getPreviewSizePolicy();
+        this.budgetMonitor = sizePolicy != null && sizePolicy.getDecodeBudgetMillis() > 0
+                ? new DecodeBudgetMonitor(sizePolicy.getDecodeBudgetMillis()) : null;
+        if (activity.isMotionSkipEnabled()) {
+            float threshold = activity.getMotionThreshold();
+            motionEstimator = new MotionEstimator(threshold > 0
+                    ? threshold : MotionEstimator.DEFAULT_THRESHOLD);
+        } else {
+            motionEstimator = null;
+        }
+
+        // 连续扫描也可以在设置里打开；不记录重复时，同一个码在这次扫描中只上报一次
+        SharedPreferences prefs = PreferenceManager
+                .getDefaultSharedPreferences(activity.getContext());
+        boolean bulkMode = activity.isBulkModeEnabled()
+                || prefs.getBoolean(Config.KEY_BULK_MODE, false);
+        boolean rememberDuplicates = activity.isRememberDuplicates()
+                || prefs.getBoolean(Config.KEY_REMEMBER_DUPLICATES, false);
+        long duplicateWindow = activity.getDuplicateWindowMillis();
+        if (duplicateWindow <= 0) {
+            duplicateWindow = ResultDeduplicator.DEFAULT_WINDOW_MS;
+        }
+        if (bulkMode && !rememberDuplicates) {
+            duplicateWindow = Long.MAX_VALUE;
+        }
+        resultDeduplicator = new ResultDeduplicator(duplicateWindow,
+                ResultDeduplicator.DEFAULT_MAX_ENTRIES);
+        bulkResults = bulkMode
+                ? new BulkResultQueue(activity, BulkResultQueue.DEFAULT_CAPACITY) : null;
+
+        Map<DecodeHintType, Object> hints = buildHints(activity, decodeFormats,
+                baseHints, characterSet, resultPointCallback);
+        workers = new DecodeThread[workerCount];
+        for (int i = 0; i < workerCount; i++) {
+            workers[i] = new DecodeThread(this, activity, hints);
+            workers[i].setName("DecodeThread-" + i);
+        }
+        dispatcher = new FrameDispatcher(Looper.getMainLooper());
+        Log.i(TAG, "Decoding with " + workerCount + " workers, at most "
+                + maxFramesInFlight + " frames in flight");
+    }
+
+    /**
+     * The default number of workers for this device: one per core, keeping
+     * one core free for the UI and the camera, and no more than 4.
+     */
+    static int getDefaultWorkerCount() {
+        int cores = Runtime.getRuntime().availableProcessors();
+        return Math.max(1, Math.min(cores - 1, 4));
+    }
+
+    void start() {
+        running = true;
+        if (bulkResults != null) {
+            bulkResults.start();
+        }
+        for (DecodeThread worker : workers) {
+            worker.start();
+        }
+        for (DecodeThread worker : workers) {
+            idleWorkers.add(worker.getHandler());
+        }
+    }
+
+    /**
+     * Preview frames should be requested with this handler, see
+     * {@link CameraManager#requestPreviewFrame(Handler, int)}.
+     */
+    Handler getHandler() {
+        return dispatcher;
+    }
+
+    /**
+     * Starts a new scan: results of frames already in flight become stale.
+     */
+    synchronized void newGeneration() {
+        generation++;
+        delivered = false;
+        backpressure.reset();
+        roiTracker.reset();
+        resultDeduplicator.reset();
+        if (autoZoomPolicy != null) {
+            autoZoomPolicy.reset();
+        }
+    }
+
+    RoiTracker getRoiTracker() {
+        return roiTracker;
+    }
+
+    /**
+     * @return the auto zoom policy, or null when auto zoom is off
+     */
+    AutoZoomPolicy getAutoZoomPolicy() {
+        return autoZoomPolicy;
+    }
+
+    ResultDeduplicator getResultDeduplicator() {
+        return resultDeduplicator;
+    }
+
+    /**
+     * @return the bulk mode result queue, or null outside bulk mode
+     */
+    BulkResultQueue getBulkResults() {
+        return bulkResults;
+    }
+
+    /**
+     * @return codes delivered in bulk mode during the last minute
+     */
+    float getCodesPerMinute() {
+        return bulkResults == null ? 0f : bulkResults.getCodesPerMinute();
+    }
+
+    /**
+     * Asks the camera for the next frame, later if decoding cannot keep up
+     * with the camera. Must be called on the main thread.
+     */
+    void requestFrame() {
+        dispatcher.requestFrame();
+    }
+
+    /**
+     * @return preview frames the camera delivered which were never decoded:
+     * replaced by a newer frame, stale on arrival, taken while the phone was
+     * moving or arriving while every worker was busy
+     */
+    long getDroppedFrameCount() {
+        return activity.getCameraManager().getReplacedFrameCount()
+                + backpressure.getStaleFrameCount() + backpressure.getBusyFrameCount()
+                + getMotionSkippedFrameCount();
+    }
+
+    private long getMotionSkippedFrameCount() {
+        return motionEstimator == null ? 0 : motionEstimator.getSkippedFrameCount();
+    }
+
+    int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * A worker found a barcode in a frame dispatched during {@code frameGeneration}.
+     *
+     * @return true if this is the first success of the current scan and should
+     * be delivered.
+     */
+    synchronized boolean claimSuccess(int frameGeneration) {
+        if (frameGeneration != generation || delivered) {
+            return false;
+        }
+        delivered = true;
+        return true;
+    }
+
+    private synchronized boolean isDelivered() {
+        return delivered;
+    }
+
+    /**
+     * Called by a worker when it is done with a frame, whatever the outcome.
+     *
+     * @param decodeMs how long the worker spent on the frame
+     */
+    void onFrameFinished(DecodeHandler worker, long decodeMs) {
+        backpressure.onFrameDecoded(decodeMs);
+        long now = SystemClock.elapsedRealtime();
+        recordCompletion(now);
+        if (budgetMonitor != null && budgetMonitor.onFrameDecoded(decodeMs, now)) {
+            Handler handler = activity.getHandler();
+            if (handler != null) {
+                Message.obtain(handler, R.id.decode_over_budget).sendToTarget();
+            }
+        }
+        framesInFlight.decrementAndGet();
+        if (running) {
+            idleWorkers.add(worker);
+        }
+    }
+
+    /**
+     * @return frames finished per second over the last {@value #RATE_WINDOW}
+     * frames, 0 when decoding has stalled.
+     */
+    synchronized float getFramesDecodedPerSecond() {
+        int count = Math.min(completionCount, RATE_WINDOW);
+        if (count < 2) {
+            return 0f;
+        }
+        long newest = completionTimes[(completionCount - 1) % RATE_WINDOW];
+        long oldest = completionTimes[(completionCount - count) % RATE_WINDOW];
+        if (SystemClock.elapsedRealtime() - newest > RATE_TIMEOUT_MS || newest == oldest) {
+            return 0f;
+        }
+        return (count - 1) * 1000f / (newest - oldest);
+    }
+
+    private synchronized void recordCompletion(long now) {
+        completionTimes[completionCount % RATE_WINDOW] = now;
+        completionCount++;
+    }
+
+    void quitSynchronously() {
+        running = false;
+        dispatcher.removeMessages(R.id.decode);
+        dispatcher.removeMessages(R.id.request_frame);
+        Log.i(TAG, "Dropped frames: replaced " + activity.getCameraManager().getReplacedFrameCount()
+                + ", stale " + backpressure.getStaleFrameCount()
+                + ", moving " + getMotionSkippedFrameCount()
+                + ", busy " + backpressure.getBusyFrameCount());
+        for (DecodeThread worker : workers) {
+            Message quit = Message.obtain(worker.getHandler(), R.id.quit);
+            quit.sendToTarget();
+        }
+        // Wait at most half a second in total; should be enough time, and
+        // onPause() will timeout quickly
+        long deadline = SystemClock.elapsedRealtime() + 500L;
+        for (DecodeThread worker : workers) {
+            long remaining = deadline - SystemClock.elapsedRealtime();
+            if (remaining <= 0) {
+                break;
+            }
+            try {
+                worker.join(remaining);
+            } catch (InterruptedException e) {
+                // continue
+            }
+        }
+        idleWorkers.clear();
+        if (bulkResults != null) {
+            bulkResults.quit(500L);
+        }
+    }
+
+    /**
+     * 解码参数，所有工作线程共用同一份（只读）
+     */
+    private static Map<DecodeHintType, Object> buildHints(Y_CaptureView activity,
+                                                          Collection<BarcodeFormat> decodeFormats,
+                                                          Map<DecodeHintType, ?> baseHints,
+                                                          String characterSet,
+                                                          ResultPointCallback resultPointCallback) {
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        if (baseHints != null) {
+            hints.putAll(baseHints);
+        }
+
+        // The prefs can't change while the thread is running, so pick them up
+        // once here.
+        if (decodeFormats == null || decodeFormats.isEmpty()) {
+            SharedPreferences prefs = PreferenceManager
+                    .getDefaultSharedPreferences(activity.getContext());
+            decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
+            if (prefs.getBoolean(Config.KEY_DECODE_1D, false)) {
+                decodeFormats.addAll(DecodeFormatManager.ONE_D_FORMATS);
+            }
+            if (prefs.getBoolean(Config.KEY_DECODE_QR, false)) {
+                decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
+            }
+            if (prefs.getBoolean(Config.KEY_DECODE_DATA_MATRIX,
+                    false)) {
+                decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
+            }
+        }
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
+
+        if (characterSet != null) {
+            hints.put(DecodeHintType.CHARACTER_SET, characterSet);
+        }
+        hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK,
+                resultPointCallback);
+        Log.i(TAG, "Hints: " + hints);
+        return hints;
+    }
+
+    /**
+     * 接收相机的预览帧，分发给空闲的工作线程
+     */
+    private final class FrameDispatcher extends Handler {
+
+        FrameDispatcher(Looper looper) {
+            super(looper);
+        }
+
+        @Override
+        public void handleMessage(Message message) {
+            if (message.what == R.id.request_frame) {
+                requestFrame();
+                return;
+            }
+            if (message.what != R.id.decode) {
+                return;
+            }
+            CameraManager cameraManager = activity.getCameraManager();
+            byte[] data = (byte[]) message.obj;
+            if (!running || isDelivered()) {
+                cameraManager.releasePreviewFrame(data);
+                return;
+            }
+            long frameTime = cameraManager.getPreviewFrameTime(data);
+            long ageMs = frameTime < 0 ? 0 : SystemClock.uptimeMillis() - frameTime;
+            backpressure.setFrameInterval(cameraManager.getFrameIntervalMillis());
+            if (backpressure.dropIfStale(ageMs)) {
+                // 在队列里等太久了，丢掉这一帧换一个新的
+                cameraManager.releasePreviewFrame(data);
+                requestFrame();
+                return;
+            }
+            if (motionEstimator != null
+                    && !motionEstimator.shouldDecode(data, message.arg1, message.arg2)) {
+                // 手机还在移动，画面多半是模糊的，等画面稳定下来再解码
+                cameraManager.releasePreviewFrame(data);
+                requestFrame();
+                return;
+            }
+            DecodeHandler worker = idleWorkers.poll();
+            if (worker == null) {
+                // 没有空闲的工作线程，这一帧直接还给相机
+                backpressure.onFrameBusy();
+                cameraManager.releasePreviewFrame(data);
+                return;
+            }
+            int inFlight = framesInFlight.incrementAndGet();
+            worker.beginFrame(cameraManager.getLastFrameDeliveryNanos(), generation);
+            Message.obtain(worker, R.id.decode, message.arg1, message.arg2, data)
+                    .sendToTarget();
+            if (inFlight < maxFramesInFlight) {
+                // 还有空位，再要下一帧
+                requestFrame();
+            }
+        }
+
+        void requestFrame() {
+            if (!running) {
+                return;
+            }
+            long now = SystemClock.uptimeMillis();
+            long delay = backpressure.getRequestDelay(now);
+            if (delay > 0) {
+                // 解码跟不上相机，隔一段时间再要下一帧
+                if (!hasMessages(R.id.request_frame)) {
+                    sendEmptyMessageDelayed(R.id.request_frame, delay);
+                }
+                return;
+            }
+            removeMessages(R.id.request_frame);
+            backpressure.onFrameRequested(now);
+            activity.getCameraManager().requestPreviewFrame(this, R.id.decode);
+        }
+
+    }
+
+}
@@ -16,8 +16,6 @@
 
 package net.zsygfddsd.y_qrcode_view.qrcode.decode;
 
-import android.graphics.Bitmap;
-import android.os.Bundle;
 import android.os.Handler;
 import android.os.Looper;
 import android.os.Message;
@@ -25,16 +23,24 @@ import android.util.Log;
 
 import com.google.zxing.BinaryBitmap;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.MultiFormatReader;
-import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.NotFoundException;
 import com.google.zxing.ReaderException;
 import com.google.zxing.Result;
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
 import com.google.zxing.common.HybridBinarizer;
 
 import net.zsygfddsd.y_qrcode_view.captureview.Y_CaptureView;
 import net.zsygfddsd.y_qrcode_view.R;
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.DecodeMetrics;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.FrameTimings;
 
-import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.List;
 import java.util.Map;
 
 
@@ -42,16 +48,106 @@ final class DecodeHandler extends Handler {
 
     private static final String TAG = DecodeHandler.class.getSimpleName();
 
+    private final DecodeEngine engine;
+
     private final Y_CaptureView activity;
 
-    private final MultiFormatReader multiFormatReader;
+    /**
+     * 按命中率调度各个格式的解码器，代替每帧跑全部解码器的MultiFormatReader
+     */
+    private final AdaptiveFormatReader formatReader;
+
+    /**
+     * 亮度矩阵的旋转缓冲区，在帧与帧之间复用
+     */
+    private final RotationStage rotationStage = new RotationStage();
+
+    /**
+     * 本线程的定位点回调，解码局部区域时把定位点换算回扫描框坐标
+     */
+    private final RoiResultPointCallback pointCallback;
+
+    /**
+     * 上一次找到定位点的区域：left, top, width, height
+     */
+    private final int[] region = new int[4];
+
+    /**
+     * 金字塔解码时缩小一半的图像缓冲区，为null时直接解码原始分辨率
+     */
+    private final PyramidStage pyramidStage;
+
+    /**
+     * 多码模式下找出一帧里所有的码，为null时找到第一个码就结束扫描
+     */
+    private final MultiCodeReader multiReader;
+
+    /**
+     * 缩小的图像解不出来时，这一帧改为解码扫描框中间一半的区域，否则解码原始分辨率，每帧轮换
+     */
+    private boolean escalateToCenter;
+
+    /**
+     * 解码成功时的缩略图，在需要时才由界面线程生成
+     */
+    private final ThumbnailRenderer thumbnailRenderer = new ThumbnailRenderer();
+
+    /**
+     * 解码前的快速过滤，为null时每一帧都完整解码
+     */
+    private final FramePreFilter preFilter;
+
+    /**
+     * 各阶段耗时统计，为null时不计时
+     */
+    private final DecodeMetrics metrics;
+
+    private FrameTimings timings;
+
+    /**
+     * 当前这一帧交给本线程的时间，在界面线程写入，随消息一起可见
+     */
+    private long dispatchNanos;
+
+    /**
+     * 当前这一帧分发时所属的那一轮扫描，在界面线程写入，随消息一起可见
+     */
+    private int frameGeneration;
 
     private boolean running = true;
 
-    DecodeHandler(Y_CaptureView activity, Map<DecodeHintType, Object> hints) {
-        multiFormatReader = new MultiFormatReader();
-        multiFormatReader.setHints(hints);
+    DecodeHandler(DecodeEngine engine, Y_CaptureView activity,
+                  Map<DecodeHintType, Object> hints) {
+        Map<DecodeHintType, Object> workerHints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        workerHints.putAll(hints);
+        pointCallback = new RoiResultPointCallback(engine.getRoiTracker(),
+                (ResultPointCallback) hints.get(DecodeHintType.NEED_RESULT_POINT_CALLBACK));
+        workerHints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK, pointCallback);
+        formatReader = new AdaptiveFormatReader(workerHints);
+        multiReader = activity.isMultiCodeEnabled() ? new MultiCodeReader(workerHints) : null;
+        this.engine = engine;
         this.activity = activity;
+        this.metrics = activity.getDecodeMetrics();
+        this.preFilter = activity.isPreFilterEnabled() ? new FramePreFilter() : null;
+        this.pyramidStage = activity.isPyramidDecodeEnabled() ? new PyramidStage() : null;
+        this.timings = metrics == null ? null : new FrameTimings();
+    }
+
+    /**
+     * Called on the UI thread right before a frame is sent to this worker.
+     *
+     * @param deliveryNanos how long the camera took to deliver the frame
+     * @param generation    the scan the frame was dispatched in; a frame
+     *                      queued before a restart stays part of the old scan
+     */
+    void beginFrame(long deliveryNanos, int generation) {
+        frameGeneration = generation;
+        if (metrics != null) {
+            if (deliveryNanos >= 0) {
+                metrics.record(timings, DecodeMetrics.Stage.CAMERA_DELIVERY, deliveryNanos);
+            }
+            dispatchNanos = System.nanoTime();
+        }
     }
 
     @Override
@@ -88,65 +184,286 @@ final class DecodeHandler extends Handler {
      */
     private void decode(byte[] data, int width, int height) {
         long start = System.currentTimeMillis();
+        long stageStart = System.nanoTime();
+        if (metrics != null) {
+            metrics.record(timings, DecodeMetrics.Stage.QUEUE_WAIT, stageStart - dispatchNanos);
+        }
+        int generation = frameGeneration;
         Result rawResult = null;
 
-        byte[] rotatedData = new byte[data.length];
-        for (int y = 0; y < height; y++) {
-            for (int x = 0; x < width; x++)
-                rotatedData[x * height + height - y - 1] = data[x + y * width];
-        }
-        int tmp = width;
-        width = height;
-        height = tmp;
-
-        PlanarYUVLuminanceSource source = activity.getCameraManager()
-                .buildLuminanceSource(rotatedData, width, height);
-        if (source != null) {
-            BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
-            try {
-                // 预览界面最终取到的扫描框里的bitmap，然后对其进行解码
-                rawResult = multiFormatReader.decodeWithState(bitmap);
-            } catch (ReaderException re) {
-                // continue
-            } finally {
-                multiFormatReader.reset();
+        // 预览帧是横向的，由LuminanceSource按旋转后的坐标直接读取，不再拷贝旋转
+        RotatedPlanarYUVLuminanceSource source = activity.getCameraManager()
+                .buildLuminanceSource(data, width, height, rotationStage);
+        boolean rejected = false;
+        if (source != null && preFilter != null) {
+            // 没有对比度或者画面模糊，这一帧不可能解出来，跳过识别
+            rejected = !preFilter.accept(source);
+            if (metrics != null) {
+                long filtered = System.nanoTime();
+                metrics.record(timings, DecodeMetrics.Stage.PRE_FILTER, filtered - stageStart);
+                stageStart = filtered;
+            }
+        }
+        List<Result> newResults = null;
+        if (source != null && !rejected) {
+            if (multiReader != null) {
+                newResults = readMultiple(source, stageStart, generation);
+            } else {
+                rawResult = read(source, stageStart);
+                if (rawResult == null) {
+                    maybeAutoZoom(source.getWidth(), source.getHeight());
+                } else if (engine.getBulkResults() != null) {
+                    // 连续扫描时找到码也不结束这一轮扫描
+                    newResults = filterNew(Collections.singletonList(rawResult), generation);
+                    rawResult = null;
+                }
             }
         }
 
         Handler handler = activity.getHandler();
+        CameraManager cameraManager = activity.getCameraManager();
+        Message message = null;
+        // 成功时预览缓冲区交给DecodeResult，等结果不再需要缩略图时再还给相机
+        boolean frameHandedOver = false;
         if (rawResult != null) {
-            // Don't log the barcode contents for security.
-            long end = System.currentTimeMillis();
-            Log.d(TAG, "Found barcode in " + (end - start) + " ms");
-            if (handler != null) {
-                Message message = Message.obtain(handler,
-                        R.id.decode_succeeded, rawResult);
-                Bundle bundle = new Bundle();
-                bundleThumbnail(source, bundle);
-                message.setData(bundle);
-                message.sendToTarget();
+            // 其他线程已经先解出来了，或者这一帧属于上一轮扫描，结果直接丢掉
+            if (engine.claimSuccess(generation)) {
+                // Don't log the barcode contents for security.
+                long end = System.currentTimeMillis();
+                Log.d(TAG, "Found barcode in " + (end - start) + " ms");
+                if (handler != null) {
+                    DecodeResult decodeResult = new DecodeResult(rawResult, source, data,
+                            cameraManager, thumbnailRenderer);
+                    if (metrics != null) {
+                        // 剩下的阶段在界面线程里计时，本线程换一个新的给下一帧用
+                        decodeResult.setFrameTimings(timings, System.nanoTime());
+                        timings = new FrameTimings();
+                    }
+                    message = Message.obtain(handler, R.id.decode_succeeded, decodeResult);
+                    frameHandedOver = true;
+                }
+            }
+        } else if (newResults != null) {
+            BulkResultQueue bulkResults = engine.getBulkResults();
+            if (bulkResults != null) {
+                // 连续扫描：结果放进队列由单独的线程回调，这一帧按失败处理，继续解码下一帧
+                ResultDeduplicator deduplicator = engine.getResultDeduplicator();
+                for (Result result : newResults) {
+                    if (!bulkResults.offer(result)) {
+                        deduplicator.forget(result);
+                    }
+                }
+            } else if (handler != null) {
+                // 多码模式下不结束扫描，新出现的码交给界面线程后继续解码下一帧
+                message = Message.obtain(handler, R.id.decode_streamed, newResults);
+            }
+        }
+        if (!frameHandedOver && metrics != null) {
+            if (rejected) {
+                metrics.onFrameRejected();
             }
-        } else {
-            if (handler != null) {
-                Message message = Message.obtain(handler, R.id.decode_failed);
-                message.sendToTarget();
+            metrics.onFrameFinished(timings, newResults != null);
+        }
+        if (message == null && handler != null) {
+            // 包括被丢掉的成功结果：下一帧要靠这条消息来请求，不发的话扫描会停下来
+            message = Message.obtain(handler, R.id.decode_failed);
+        }
+
+        // 把预览缓冲区还给相机，并在请求下一帧之前标记为空闲
+        if (!frameHandedOver) {
+            cameraManager.releasePreviewFrame(data);
+        }
+        engine.onFrameFinished(this, System.currentTimeMillis() - start);
+        if (message != null) {
+            message.sendToTarget();
+        }
+    }
+
+    /**
+     * Zooms in when the frame showed finder patterns of a code too small to
+     * be decoded; the camera zooms gradually where it can. The zoom itself
+     * is started on the main thread, the decode thread does not wait for it.
+     */
+    private void maybeAutoZoom(int width, int height) {
+        AutoZoomPolicy autoZoom = engine.getAutoZoomPolicy();
+        if (autoZoom == null) {
+            return;
+        }
+        CameraManager cameraManager = activity.getCameraManager();
+        float extent = engine.getRoiTracker().getCandidateExtent(AutoZoomPolicy.MIN_CANDIDATES);
+        float ratio = autoZoom.onFrameFailed(extent, Math.min(width, height),
+                cameraManager.getZoomRatio(), System.currentTimeMillis());
+        if (ratio > 0f) {
+            Log.d(TAG, "Code too small, zooming to " + ratio + "x");
+            cameraManager.smoothZoomTo(ratio);
+        }
+    }
+
+    /**
+     * Decodes every code of the whole framing rect, for the multi-code mode.
+     *
+     * @return the codes not reported within the duplicate window, or null
+     */
+    private List<Result> readMultiple(RotatedPlanarYUVLuminanceSource source, long stageStart,
+                                      int generation) {
+        BinaryBitmap bitmap = metrics == null
+                ? new BinaryBitmap(new HybridBinarizer(source))
+                : prepareTimedBitmap(source, stageStart);
+        long readerStart = metrics == null ? 0L : System.nanoTime();
+        pointCallback.setTransform(0, 0, 1);
+        List<Result> found = multiReader.decode(bitmap);
+        if (metrics != null) {
+            metrics.record(timings, DecodeMetrics.Stage.READER, System.nanoTime() - readerStart);
+        }
+        return filterNew(found, generation);
+    }
+
+    /**
+     * @return the codes not reported within the duplicate window, or null
+     */
+    private List<Result> filterNew(List<Result> found, int generation) {
+        if (found.isEmpty() || generation != engine.getGeneration()) {
+            return null;
+        }
+        ResultDeduplicator deduplicator = engine.getResultDeduplicator();
+        long now = System.currentTimeMillis();
+        List<Result> newResults = null;
+        for (Result result : found) {
+            if (deduplicator.isNew(result, now)) {
+                if (newResults == null) {
+                    newResults = new ArrayList<Result>(found.size());
+                }
+                newResults.add(result);
+            }
+        }
+        return newResults;
+    }
+
+    /**
+     * Picks the images to decode for one frame: the region around the last
+     * candidate points when there is one, otherwise the whole framing rect,
+     * in pyramid mode first at half resolution and then, only if that fails,
+     * at full resolution or its center half, alternating from frame to frame.
+     * When the region shows neither a code nor a candidate, the code has
+     * moved and the same frame is decoded from the whole framing rect.
+     *
+     * @return the result in framing rect coordinates, or null
+     */
+    private Result read(RotatedPlanarYUVLuminanceSource source, long stageStart) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        LuminanceSource first = source;
+        int offsetX = 0;
+        int offsetY = 0;
+        int scale = 1;
+        boolean escalate = false;
+        RoiTracker roiTracker = engine.getRoiTracker();
+        boolean inRegion = roiTracker.nextRegion(width, height, region);
+        if (inRegion) {
+            // 上几帧在某处找到过定位点时，只解码那附近的区域
+            first = source.crop(region[0], region[1], region[2], region[3]);
+            offsetX = region[0];
+            offsetY = region[1];
+        } else if (pyramidStage != null) {
+            // 先解码缩小一半的图像，大部分码在这一层就能解出来
+            first = source.downsample(pyramidStage);
+            scale = PyramidStage.SCALE;
+            escalate = true;
+        }
+        BinaryBitmap bitmap = metrics == null
+                ? new BinaryBitmap(new HybridBinarizer(first))
+                : prepareTimedBitmap(first, stageStart);
+        long readerStart = metrics == null ? 0L : System.nanoTime();
+        // 预览界面最终取到的扫描框里的bitmap，然后对其进行解码
+        Result result = decodeLevel(bitmap, offsetX, offsetY, scale);
+        if (result == null && inRegion && roiTracker.onRegionMissed()) {
+            // 码已经不在这个区域里了，同一帧接着解码整个扫描框，不用等下一帧
+            if (pyramidStage != null) {
+                result = decodeLevel(new BinaryBitmap(new HybridBinarizer(
+                                source.downsample(pyramidStage))),
+                        0, 0, PyramidStage.SCALE);
+                escalate = true;
+            } else {
+                result = decodeLevel(new BinaryBitmap(new HybridBinarizer(source)), 0, 0, 1);
             }
         }
+        if (result == null && escalate) {
+            // 太小或太远的码缩小后解不出来，轮流尝试原始分辨率和中间一半的区域
+            escalateToCenter = !escalateToCenter;
+            if (escalateToCenter) {
+                result = decodeLevel(new BinaryBitmap(new HybridBinarizer(
+                                source.crop(width / 4, height / 4, width / 2, height / 2))),
+                        width / 4, height / 4, 1);
+            } else {
+                result = decodeLevel(new BinaryBitmap(new HybridBinarizer(source)), 0, 0, 1);
+            }
+        }
+        if (metrics != null) {
+            metrics.record(timings, DecodeMetrics.Stage.READER, System.nanoTime() - readerStart);
+        }
+        return result;
     }
 
-    // TODO: 2017/5/8  
-    private static void bundleThumbnail(PlanarYUVLuminanceSource source,
-                                        Bundle bundle) {
-        int[] pixels = source.renderThumbnail();
-        int width = source.getThumbnailWidth();
-        int height = source.getThumbnailHeight();
-        Bitmap bitmap = Bitmap.createBitmap(pixels, 0, width, width, height,
-                Bitmap.Config.ARGB_8888);
-        ByteArrayOutputStream out = new ByteArrayOutputStream();
-        bitmap.compress(Bitmap.CompressFormat.JPEG, 80, out);
-        bundle.putByteArray(DecodeThread.BARCODE_BITMAP, out.toByteArray());
-        bundle.putFloat(DecodeThread.BARCODE_SCALED_FACTOR, (float) width
-                / source.getWidth());
+    /**
+     * @param offsetX left edge of the decoded image in the framing rect
+     * @param offsetY top edge of the decoded image in the framing rect
+     * @param scale   framing rect pixels per pixel of the decoded image
+     * @return the result in framing rect coordinates, or null
+     */
+    private Result decodeLevel(BinaryBitmap bitmap, int offsetX, int offsetY, int scale) {
+        pointCallback.setTransform(offsetX, offsetY, scale);
+        try {
+            Result result = formatReader.decode(bitmap);
+            if (offsetX != 0 || offsetY != 0 || scale != 1) {
+                result = transform(result, offsetX, offsetY, scale);
+            }
+            return result;
+        } catch (ReaderException re) {
+            return null;
+        } finally {
+            formatReader.reset();
+        }
+    }
+
+    /**
+     * Moves the result points of a result decoded from a region or a
+     * downsampled level back into framing rect coordinates.
+     */
+    private static Result transform(Result result, int offsetX, int offsetY, int scale) {
+        ResultPoint[] points = result.getResultPoints();
+        if (points == null) {
+            return result;
+        }
+        ResultPoint[] translated = new ResultPoint[points.length];
+        for (int i = 0; i < points.length; i++) {
+            ResultPoint point = points[i];
+            translated[i] = point == null ? null
+                    : new ResultPoint(point.getX() * scale + offsetX, point.getY() * scale + offsetY);
+        }
+        Result moved = new Result(result.getText(), result.getRawBytes(),
+                result.getNumBits(), translated, result.getBarcodeFormat(), result.getTimestamp());
+        moved.putAllMetadata(result.getResultMetadata());
+        return moved;
+    }
+
+    /**
+     * 计时模式下先把二值化做完并计时，解码器随后直接使用BinaryBitmap里缓存的矩阵。
+     * 二值化的就是要解码的那个source，旋转是在二值化读取亮度时顺带完成的，算在BINARIZE里；
+     * ROTATE只包括准备source（裁剪区域、缩小一半）的时间
+     */
+    private BinaryBitmap prepareTimedBitmap(LuminanceSource source,
+                                            long stageStart) {
+        long prepared = System.nanoTime();
+        metrics.record(timings, DecodeMetrics.Stage.ROTATE, prepared - stageStart);
+
+        BinaryBitmap bitmap = new BinaryBitmap(new HybridBinarizer(source));
+        try {
+            bitmap.getBlackMatrix();
+        } catch (NotFoundException e) {
+            // the reader will fail on its own
+        }
+        metrics.record(timings, DecodeMetrics.Stage.BINARIZE, System.nanoTime() - prepared);
+        return bitmap;
     }
 
 }
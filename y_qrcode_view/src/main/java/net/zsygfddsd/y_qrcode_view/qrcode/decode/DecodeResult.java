@@ -0,0 +1,111 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import android.graphics.Bitmap;
+
+import com.google.zxing.Result;
+
+import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
+import net.zsygfddsd.y_qrcode_view.qrcode.metrics.FrameTimings;
+
+/**
+ * A decoded barcode together with a lazy handle on the frame it was found
+ * in. The thumbnail is only rendered when someone asks for it, so the
+ * delegate gets the result without paying for it. Until {@link #release()}
+ * is called the preview buffer and the crop region stay valid, and the
+ * buffer is not given back to the camera.
+ * <p/>
+ * 解码结果，缩略图延迟生成：只有在需要时才从预览帧中画出来，
+ * 在release之前预览缓冲区一直有效，不会还给相机。
+ */
+public final class DecodeResult {
+
+    private final Result rawResult;
+
+    private final RotatedPlanarYUVLuminanceSource source;
+
+    private final byte[] frame;
+
+    private final CameraManager cameraManager;
+
+    private final ThumbnailRenderer renderer;
+
+    private Bitmap thumbnail;
+
+    /**
+     * 计时模式下这一帧的耗时，以及结果发往界面线程的时间
+     */
+    private FrameTimings frameTimings;
+
+    private long sentNanos;
+
+    private boolean released;
+
+    /**
+     * A result without a frame, e.g. one restored after the activity was
+     * recreated.
+     */
+    public DecodeResult(Result rawResult) {
+        this(rawResult, null, null, null, null);
+    }
+
+    DecodeResult(Result rawResult, RotatedPlanarYUVLuminanceSource source,
+                 byte[] frame, CameraManager cameraManager, ThumbnailRenderer renderer) {
+        this.rawResult = rawResult;
+        this.source = source;
+        this.frame = frame;
+        this.cameraManager = cameraManager;
+        this.renderer = renderer;
+        this.released = source == null;
+    }
+
+    public Result getRawResult() {
+        return rawResult;
+    }
+
+    /**
+     * Renders the decoded region on first call.
+     *
+     * @return A greyscale bitmap of the camera data which was decoded, or null
+     * if it was not rendered before {@link #release()}.
+     */
+    public synchronized Bitmap getThumbnail() {
+        if (thumbnail == null && !released) {
+            thumbnail = renderer.render(source);
+        }
+        return thumbnail;
+    }
+
+    /**
+     * @return amount by which the thumbnail is scaled down from the decoded region
+     */
+    public float getScaleFactor() {
+        if (source == null) {
+            return 1.0f;
+        }
+        return (float) source.getThumbnailWidth() / source.getWidth();
+    }
+
+    void setFrameTimings(FrameTimings frameTimings, long sentNanos) {
+        this.frameTimings = frameTimings;
+        this.sentNanos = sentNanos;
+    }
+
+    FrameTimings getFrameTimings() {
+        return frameTimings;
+    }
+
+    long getSentNanos() {
+        return sentNanos;
+    }
+
+    /**
+     * Gives the preview buffer back to the camera. Safe to call more than once.
+     */
+    public synchronized void release() {
+        if (!released) {
+            released = true;
+            cameraManager.releasePreviewFrame(frame);
+        }
+    }
+
+}
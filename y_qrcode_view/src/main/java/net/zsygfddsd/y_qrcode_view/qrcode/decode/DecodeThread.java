@@ -16,86 +16,44 @@
 
 package net.zsygfddsd.y_qrcode_view.qrcode.decode;
 
-import android.content.SharedPreferences;
-import android.os.Handler;
 import android.os.Looper;
-import android.preference.PreferenceManager;
-import android.util.Log;
 
-import com.google.zxing.BarcodeFormat;
 import com.google.zxing.DecodeHintType;
-import com.google.zxing.ResultPointCallback;
 
 import net.zsygfddsd.y_qrcode_view.captureview.Y_CaptureView;
-import net.zsygfddsd.y_qrcode_view.qrcode.config.Config;
 
-import java.util.Collection;
-import java.util.EnumMap;
-import java.util.EnumSet;
 import java.util.Map;
 import java.util.concurrent.CountDownLatch;
 
 
 /**
- * This thread does all the heavy lifting of decoding the images.
+ * This thread does all the heavy lifting of decoding the images. It is one
+ * worker of a {@link DecodeEngine}, with its own reader.
  * 
  * @author dswitkin@google.com (Daniel Switkin)
  */
 final class DecodeThread extends Thread {
 
-	public static final String BARCODE_BITMAP = "barcode_bitmap";
-
-	public static final String BARCODE_SCALED_FACTOR = "barcode_scaled_factor";
+	private final DecodeEngine engine;
 
 	private final Y_CaptureView activity;
 
 	private final Map<DecodeHintType, Object> hints;
 
-	private Handler handler;
+	private DecodeHandler handler;
 
 	private final CountDownLatch handlerInitLatch;
 
-	DecodeThread(Y_CaptureView activity,
-                 Collection<BarcodeFormat> decodeFormats,
-                 Map<DecodeHintType, ?> baseHints, String characterSet,
-                 ResultPointCallback resultPointCallback) {
+	DecodeThread(DecodeEngine engine, Y_CaptureView activity,
+                 Map<DecodeHintType, Object> hints) {
 
+		this.engine = engine;
 		this.activity = activity;
+		this.hints = hints;
 		handlerInitLatch = new CountDownLatch(1);
-
-		hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
-		if (baseHints != null) {
-			hints.putAll(baseHints);
-		}
-
-		// The prefs can't change while the thread is running, so pick them up
-		// once here.
-		if (decodeFormats == null || decodeFormats.isEmpty()) {
-			SharedPreferences prefs = PreferenceManager
-					.getDefaultSharedPreferences(activity.getContext());
-			decodeFormats = EnumSet.noneOf(BarcodeFormat.class);
-			if (prefs.getBoolean(Config.KEY_DECODE_1D, false)) {
-				decodeFormats.addAll(DecodeFormatManager.ONE_D_FORMATS);
-			}
-			if (prefs.getBoolean(Config.KEY_DECODE_QR, false)) {
-				decodeFormats.addAll(DecodeFormatManager.QR_CODE_FORMATS);
-			}
-			if (prefs.getBoolean(Config.KEY_DECODE_DATA_MATRIX,
-					false)) {
-				decodeFormats.addAll(DecodeFormatManager.DATA_MATRIX_FORMATS);
-			}
-		}
-		hints.put(DecodeHintType.POSSIBLE_FORMATS, decodeFormats);
-
-		if (characterSet != null) {
-			hints.put(DecodeHintType.CHARACTER_SET, characterSet);
-		}
-		hints.put(DecodeHintType.NEED_RESULT_POINT_CALLBACK,
-				resultPointCallback);
-		Log.i("DecodeThread", "Hints: " + hints);
 	}
 
-	Handler getHandler() {
+	DecodeHandler getHandler() {
 		try {
 			handlerInitLatch.await();
 		}
@@ -108,7 +66,7 @@ final class DecodeThread extends Thread {
 	@Override
 	public void run() {
 		Looper.prepare();
-		handler = new DecodeHandler(activity,hints);
+		handler = new DecodeHandler(engine, activity, hints);
 		handlerInitLatch.countDown();
 		Looper.loop();
 	}
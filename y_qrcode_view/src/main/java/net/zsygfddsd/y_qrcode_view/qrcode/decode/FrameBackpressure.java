@@ -0,0 +1,144 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Decides which preview frames are still worth decoding and how fast new
+ * frames are requested, so the scan latency stays bounded on devices where
+ * a decode takes longer than a camera frame.
+ * <ul>
+ * <li>Frames older than two frame intervals when they reach the dispatcher
+ * are stale: a newer frame is on its way, so they are dropped.</li>
+ * <li>While the average decode time is above the frame interval the decoder
+ * cannot keep up anyway. Frame requests are then spaced by the decode time
+ * divided by the frames in flight, so the workers start their frames evenly
+ * spread out instead of all at once on the same old frame.</li>
+ * </ul>
+ * Times are in milliseconds of the same clock the caller uses, normally
+ * {@code SystemClock.uptimeMillis()}.
+ * <p/>
+ * 预览帧的背压控制：丢掉等待太久的旧帧，解码跟不上相机帧率时降低取帧的频率，
+ * 并统计被丢掉的帧数。
+ */
+final class FrameBackpressure {
+
+    /**
+     * 不知道相机帧率时按30帧每秒计算
+     */
+    static final long DEFAULT_FRAME_INTERVAL_MS = 33L;
+
+    /**
+     * 帧的年龄超过这么多个帧间隔就算过期
+     */
+    private static final int STALE_FRAME_INTERVALS = 2;
+
+    /**
+     * 解码耗时的指数平滑系数
+     */
+    private static final float DECODE_TIME_SMOOTHING = 0.2f;
+
+    private final int maxFramesInFlight;
+
+    private long frameIntervalMs = DEFAULT_FRAME_INTERVAL_MS;
+
+    private float averageDecodeMs;
+
+    private long lastRequestMs = Long.MIN_VALUE;
+
+    private long staleFrames;
+
+    private long busyFrames;
+
+    FrameBackpressure(int maxFramesInFlight) {
+        this.maxFramesInFlight = Math.max(1, maxFramesInFlight);
+    }
+
+    /**
+     * @param frameIntervalMs the time between two camera frames, 0 if unknown
+     */
+    synchronized void setFrameInterval(long frameIntervalMs) {
+        this.frameIntervalMs = frameIntervalMs > 0 ? frameIntervalMs : DEFAULT_FRAME_INTERVAL_MS;
+    }
+
+    /**
+     * A worker finished a frame, with or without a result. Called from the
+     * decode threads.
+     */
+    synchronized void onFrameDecoded(long decodeMs) {
+        if (averageDecodeMs == 0f) {
+            averageDecodeMs = decodeMs;
+        } else {
+            averageDecodeMs += (decodeMs - averageDecodeMs) * DECODE_TIME_SMOOTHING;
+        }
+    }
+
+    /**
+     * @param ageMs how long ago the camera delivered the frame
+     * @return true if the frame should be dropped, it is counted as dropped
+     */
+    synchronized boolean dropIfStale(long ageMs) {
+        if (ageMs > STALE_FRAME_INTERVALS * frameIntervalMs) {
+            staleFrames++;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * A frame arrived while every worker was busy and was dropped.
+     */
+    synchronized void onFrameBusy() {
+        busyFrames++;
+    }
+
+    /**
+     * @return how long to wait before the next frame may be requested, 0 to
+     * request it right away
+     */
+    synchronized long getRequestDelay(long nowMs) {
+        long spacing = getRequestSpacing();
+        if (spacing == 0 || lastRequestMs == Long.MIN_VALUE) {
+            return 0;
+        }
+        return Math.max(0, lastRequestMs + spacing - nowMs);
+    }
+
+    synchronized void onFrameRequested(long nowMs) {
+        lastRequestMs = nowMs;
+    }
+
+    /**
+     * Starts over, e.g. for a new scan: the next request is not delayed.
+     */
+    synchronized void reset() {
+        lastRequestMs = Long.MIN_VALUE;
+    }
+
+    /**
+     * @return the minimum time between two frame requests, 0 while decoding
+     * keeps up with the camera
+     */
+    synchronized long getRequestSpacing() {
+        if (averageDecodeMs <= frameIntervalMs) {
+            return 0;
+        }
+        return (long) (averageDecodeMs / maxFramesInFlight);
+    }
+
+    synchronized float getAverageDecodeMs() {
+        return averageDecodeMs;
+    }
+
+    /**
+     * @return frames dropped because they were stale when they arrived
+     */
+    synchronized long getStaleFrameCount() {
+        return staleFrames;
+    }
+
+    /**
+     * @return frames dropped because no worker was free
+     */
+    synchronized long getBusyFrameCount() {
+        return busyFrames;
+    }
+
+}
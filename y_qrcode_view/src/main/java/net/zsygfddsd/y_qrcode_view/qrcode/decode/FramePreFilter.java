@@ -0,0 +1,172 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import java.util.Arrays;
+
+/**
+ * A cheap check whether a frame can hold a readable barcode at all, run
+ * before the binarizer and the readers. It scans every
+ * {@value #LINE_SPACING}th row and column of the framing rect in 2x2 pixel
+ * blocks, splits the rect into {@value #TILES}x{@value #TILES} tiles and
+ * rejects the frame when
+ * <ul>
+ * <li>no tile has any contrast (a blank wall, the lens covered): the highest
+ * standard deviation of the luminance of a tile is measured, so a small code
+ * in a large rect still counts, or</li>
+ * <li>there are no steep edges in the tiles with contrast: the steepest step
+ * between neighbouring blocks, relative to the contrast of the tile, is low
+ * while the lens is far out of focus.</li>
+ * </ul>
+ * Both thresholds were calibrated against MultiFormatReader on synthetic
+ * frames: QR codes from a fifth of the rect to the whole rect, under the
+ * lighting of the tests, with box blur and sensor noise. Every frame the
+ * reader decoded passed. A code with large modules stays readable under a
+ * lot of blur, so without knowing the module size only frames far out of
+ * focus can be rejected; noise makes edges look steeper, so noisy frames are
+ * left to the reader.
+ * <p/>
+ * 解码前的快速过滤：扫描框里分块统计对比度和边缘的陡峭程度，没有对比度或者严重失焦的帧
+ * 直接跳过；阈值按解码器实际能解出的帧校准过，能解出来的帧不会被过滤掉。
+ * <p/>
+ * Not thread safe, each decode thread owns its own instance.
+ */
+final class FramePreFilter {
+
+    /**
+     * 对比度最高的块的亮度标准差低于这个值认为画面里什么都没有；
+     * 校准时能解出的帧最低约为8，±12噪声的空白画面最高约为4
+     */
+    static final float DEFAULT_MIN_CONTRAST = 6f;
+
+    /**
+     * 最陡的一步亮度变化与块内对比度（两倍标准差）之比低于这个值认为严重失焦；
+     * 校准时能解出的帧最低约为0.3（大模块的码加上很强的模糊）
+     */
+    static final float DEFAULT_MIN_SHARPNESS = 0.2f;
+
+    /**
+     * 每边的块数
+     */
+    private static final int TILES = 6;
+
+    /**
+     * 每隔这么多行、列扫描一行、一列
+     */
+    private static final int LINE_SPACING = 16;
+
+    private final float minContrast;
+
+    private final float minSharpness;
+
+    private final long[] tileCount = new long[TILES * TILES];
+
+    private final long[] tileSum = new long[TILES * TILES];
+
+    private final long[] tileSumSquares = new long[TILES * TILES];
+
+    private final int[] tileMaxStep = new int[TILES * TILES];
+
+    private final float[] deviations = new float[TILES * TILES];
+
+    private float lastContrast;
+
+    private float lastSharpness;
+
+    FramePreFilter() {
+        this(DEFAULT_MIN_CONTRAST, DEFAULT_MIN_SHARPNESS);
+    }
+
+    FramePreFilter(float minContrast, float minSharpness) {
+        this.minContrast = minContrast;
+        this.minSharpness = minSharpness;
+    }
+
+    /**
+     * @return false if the frame cannot hold a readable code and should be skipped
+     */
+    boolean accept(RotatedPlanarYUVLuminanceSource source) {
+        int width = source.getWidth();
+        int height = source.getHeight();
+        if (width < 2 * TILES || height < 2 * TILES) {
+            return true;
+        }
+        Arrays.fill(tileCount, 0L);
+        Arrays.fill(tileSum, 0L);
+        Arrays.fill(tileSumSquares, 0L);
+        Arrays.fill(tileMaxStep, 0);
+        int tileWidth = (width + TILES - 1) / TILES;
+        int tileHeight = (height + TILES - 1) / TILES;
+
+        // 2x2的块相加，降低噪声；行和列都扫描，横竖的边缘都能看到
+        for (int y = LINE_SPACING / 2; y + 1 < height; y += LINE_SPACING) {
+            int previous = -1;
+            int tileRow = (y / tileHeight) * TILES;
+            for (int x = 0; x + 1 < width; x += 2) {
+                previous = addBlock(blockSum(source, x, y), previous, tileRow + x / tileWidth);
+            }
+        }
+        for (int x = LINE_SPACING / 2; x + 1 < width; x += LINE_SPACING) {
+            int previous = -1;
+            int tileColumn = x / tileWidth;
+            for (int y = 0; y + 1 < height; y += 2) {
+                previous = addBlock(blockSum(source, x, y), previous,
+                        (y / tileHeight) * TILES + tileColumn);
+            }
+        }
+
+        // 块的值是4个像素之和，换算回亮度
+        float contrast = 0f;
+        for (int i = 0; i < deviations.length; i++) {
+            deviations[i] = 0f;
+            if (tileCount[i] > 0) {
+                float mean = (float) tileSum[i] / tileCount[i];
+                float variance = (float) tileSumSquares[i] / tileCount[i] - mean * mean;
+                deviations[i] = (float) Math.sqrt(Math.max(0f, variance)) / 4f;
+                contrast = Math.max(contrast, deviations[i]);
+            }
+        }
+        float sharpness = 0f;
+        for (int i = 0; i < deviations.length; i++) {
+            if (deviations[i] > 0f && deviations[i] >= contrast / 2) {
+                sharpness = Math.max(sharpness, tileMaxStep[i] / 4f / (2 * deviations[i]));
+            }
+        }
+        lastContrast = contrast;
+        lastSharpness = sharpness;
+        return contrast >= minContrast && sharpness >= minSharpness;
+    }
+
+    /**
+     * @return {@code value}, to be passed as {@code previous} for the next block of the line
+     */
+    private int addBlock(int value, int previous, int tile) {
+        tileCount[tile]++;
+        tileSum[tile] += value;
+        tileSumSquares[tile] += value * value;
+        if (previous >= 0) {
+            tileMaxStep[tile] = Math.max(tileMaxStep[tile], Math.abs(value - previous));
+        }
+        return value;
+    }
+
+    private static int blockSum(RotatedPlanarYUVLuminanceSource source, int x, int y) {
+        return source.getLuminance(x, y) + source.getLuminance(x + 1, y)
+                + source.getLuminance(x, y + 1) + source.getLuminance(x + 1, y + 1);
+    }
+
+    /**
+     * @return the highest standard deviation of the luminance of a tile of
+     * the last frame
+     */
+    float getLastContrast() {
+        return lastContrast;
+    }
+
+    /**
+     * @return the steepest step between neighbouring blocks of the last frame
+     * relative to the contrast of its tile
+     */
+    float getLastSharpness() {
+        return lastSharpness;
+    }
+
+}
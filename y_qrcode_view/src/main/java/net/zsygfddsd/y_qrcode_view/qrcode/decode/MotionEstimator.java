@@ -0,0 +1,162 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Tells whether the phone is still moving by comparing a tiny luminance
+ * signature of each preview frame with the one of the previous frame. The
+ * signature is the mean luminance of a 16x16 grid of cells, averaged over
+ * every other pixel of every other row of the cell. Averaging whole cells
+ * acts as a low-pass filter: a shift of a pixel or two, as from the hand
+ * holding the phone, hardly changes the means even over the fine pattern of
+ * a code, while single samples would land on different modules.
+ * <p/>
+ * The difference is the mean absolute difference of the two signatures after
+ * removing their means, so a change of exposure alone does not count as
+ * motion. Frames with more motion than the threshold are skipped; the first
+ * frame after the image settles is decoded again. To not starve the decoder
+ * under constant shaking, one frame is let through after
+ * {@value #MAX_CONSECUTIVE_SKIPS} skipped frames.
+ * <p/>
+ * 根据相邻两帧的亮度缩略特征判断手机是否还在移动，移动中的帧大多是模糊的，直接跳过。
+ * <p/>
+ * Not thread safe, used on the thread that dispatches the frames.
+ */
+final class MotionEstimator {
+
+    /**
+     * 默认的运动阈值，单位是亮度级；整格平均后手抖一两个像素约为1，每帧平移10像素约为4.5
+     */
+    static final float DEFAULT_THRESHOLD = 4f;
+
+    /**
+     * 连续跳过这么多帧后放一帧过去
+     */
+    static final int MAX_CONSECUTIVE_SKIPS = 8;
+
+    /**
+     * 每边的格子数
+     */
+    private static final int GRID_SIZE = 16;
+
+    /**
+     * 格子内隔几个像素取一个求平均，四分之一的像素就足够平滑
+     */
+    private static final int SAMPLE_STEP = 2;
+
+    /**
+     * 特征值是平均亮度乘以这个数，保留小数部分
+     */
+    private static final int SCALE = 16;
+
+    private final float threshold;
+
+    private int[] signature = new int[GRID_SIZE * GRID_SIZE];
+
+    private int[] previousSignature = new int[GRID_SIZE * GRID_SIZE];
+
+    private int previousWidth;
+
+    private int previousHeight;
+
+    private float lastMotion = -1f;
+
+    private int consecutiveSkips;
+
+    private long skippedFrames;
+
+    MotionEstimator() {
+        this(DEFAULT_THRESHOLD);
+    }
+
+    MotionEstimator(float threshold) {
+        this.threshold = threshold;
+    }
+
+    /**
+     * Takes the next frame into account.
+     *
+     * @param data   The YUV preview frame, Y plane first.
+     * @param width  The width of the preview frame.
+     * @param height The height of the preview frame.
+     * @return false if the frame should be skipped because the image is moving
+     */
+    boolean shouldDecode(byte[] data, int width, int height) {
+        float motion = estimate(data, width, height);
+        if (motion <= threshold || consecutiveSkips >= MAX_CONSECUTIVE_SKIPS) {
+            consecutiveSkips = 0;
+            return true;
+        }
+        consecutiveSkips++;
+        skippedFrames++;
+        return false;
+    }
+
+    /**
+     * @return the motion between this frame and the previous one in luminance
+     * levels, -1 for the first frame or after the size changed
+     */
+    float estimate(byte[] data, int width, int height) {
+        computeSignature(data, width, height, signature);
+        if (width != previousWidth || height != previousHeight) {
+            lastMotion = -1f;
+        } else {
+            lastMotion = difference(signature, previousSignature);
+        }
+        int[] swap = previousSignature;
+        previousSignature = signature;
+        signature = swap;
+        previousWidth = width;
+        previousHeight = height;
+        return lastMotion;
+    }
+
+    float getLastMotion() {
+        return lastMotion;
+    }
+
+    /**
+     * @return frames skipped because of motion
+     */
+    long getSkippedFrameCount() {
+        return skippedFrames;
+    }
+
+    private static void computeSignature(byte[] data, int width, int height, int[] out) {
+        int cellWidth = Math.max(1, width / GRID_SIZE);
+        int cellHeight = Math.max(1, height / GRID_SIZE);
+        for (int gy = 0; gy < GRID_SIZE; gy++) {
+            int top = Math.min(height - 1, gy * cellHeight);
+            int bottom = Math.min(height, top + cellHeight);
+            for (int gx = 0; gx < GRID_SIZE; gx++) {
+                int left = Math.min(width - 1, gx * cellWidth);
+                int right = Math.min(width, left + cellWidth);
+                int sum = 0;
+                int count = 0;
+                for (int y = top; y < bottom; y += SAMPLE_STEP) {
+                    int rowOffset = y * width;
+                    for (int x = left; x < right; x += SAMPLE_STEP) {
+                        sum += data[rowOffset + x] & 0xff;
+                        count++;
+                    }
+                }
+                out[gy * GRID_SIZE + gx] = sum * SCALE / count;
+            }
+        }
+    }
+
+    private static float difference(int[] a, int[] b) {
+        long sumA = 0;
+        long sumB = 0;
+        for (int i = 0; i < a.length; i++) {
+            sumA += a[i];
+            sumB += b[i];
+        }
+        // 去掉整体亮度的变化（自动曝光），只看结构的变化
+        float offset = (float) (sumA - sumB) / a.length;
+        float total = 0f;
+        for (int i = 0; i < a.length; i++) {
+            total += Math.abs(a[i] - b[i] - offset);
+        }
+        return total / a.length / SCALE;
+    }
+
+}
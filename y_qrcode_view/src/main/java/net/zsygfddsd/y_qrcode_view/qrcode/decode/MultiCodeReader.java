@@ -0,0 +1,109 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.Result;
+import com.google.zxing.multi.GenericMultipleBarcodeReader;
+import com.google.zxing.multi.qrcode.QRCodeMultiReader;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Finds every code in a frame instead of stopping at the first one, for the
+ * multi-code mode. QR codes go through {@link QRCodeMultiReader}, which looks
+ * for several sets of finder patterns in one pass; the other formats through
+ * a {@link GenericMultipleBarcodeReader}, which decodes one code and then
+ * searches the parts of the image around it.
+ * <p/>
+ * 一帧里有多个码时全部解出来，二维码用QRCodeMultiReader，其他格式用GenericMultipleBarcodeReader。
+ * <p/>
+ * Not thread safe, each decode thread owns its own instance.
+ */
+final class MultiCodeReader {
+
+    private final Map<DecodeHintType, ?> hints;
+
+    /**
+     * 没有配置二维码时为null
+     */
+    private final QRCodeMultiReader qrReader;
+
+    /**
+     * 除二维码以外的格式，只配置了二维码时为null
+     */
+    private final GenericMultipleBarcodeReader otherReader;
+
+    private final Map<DecodeHintType, Object> otherHints;
+
+    MultiCodeReader(Map<DecodeHintType, ?> hints) {
+        this.hints = hints;
+
+        @SuppressWarnings("unchecked")
+        Collection<BarcodeFormat> formats = hints == null ? null
+                : (Collection<BarcodeFormat>) hints.get(DecodeHintType.POSSIBLE_FORMATS);
+        boolean all = formats == null || formats.isEmpty();
+
+        qrReader = all || formats.contains(BarcodeFormat.QR_CODE) ? new QRCodeMultiReader() : null;
+        Collection<BarcodeFormat> others = all
+                ? EnumSet.allOf(BarcodeFormat.class) : EnumSet.copyOf(formats);
+        others.remove(BarcodeFormat.QR_CODE);
+        if (others.isEmpty()) {
+            otherHints = null;
+            otherReader = null;
+        } else {
+            otherHints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+            if (hints != null) {
+                otherHints.putAll(hints);
+            }
+            otherHints.put(DecodeHintType.POSSIBLE_FORMATS, others);
+            MultiFormatReader delegate = new MultiFormatReader();
+            delegate.setHints(otherHints);
+            otherReader = new GenericMultipleBarcodeReader(delegate);
+        }
+    }
+
+    /**
+     * @return every code found in the image, possibly none
+     */
+    List<Result> decode(BinaryBitmap image) {
+        List<Result> results = null;
+        if (qrReader != null) {
+            try {
+                results = addAll(results, qrReader.decodeMultiple(image, hints));
+            } catch (ReaderException re) {
+                // continue
+            } finally {
+                qrReader.reset();
+            }
+        }
+        if (otherReader != null) {
+            try {
+                results = addAll(results, otherReader.decodeMultiple(image, otherHints));
+            } catch (ReaderException re) {
+                // continue
+            }
+        }
+        return results == null ? Collections.<Result>emptyList() : results;
+    }
+
+    private static List<Result> addAll(List<Result> results, Result[] found) {
+        if (found.length == 0) {
+            return results;
+        }
+        if (results == null) {
+            results = new ArrayList<Result>(found.length);
+        }
+        Collections.addAll(results, found);
+        return results;
+    }
+
+}
@@ -0,0 +1,81 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Builds the half resolution level of the decode pyramid: the crop rectangle
+ * of a landscape preview frame, rotated 90 degrees clockwise like
+ * {@link RotationStage} and shrunk by 2 in both directions, every output
+ * pixel being the mean of a 2x2 block. The output buffer is kept and reused
+ * from one frame to the next.
+ * <p/>
+ * 把扫描框内的亮度数据旋转并缩小一半，每个输出像素取2x2像素的平均值；
+ * 输出缓冲区在帧与帧之间复用，不在每帧里分配内存。
+ * <p/>
+ * Not thread safe, each decode thread owns its own instance.
+ */
+public final class PyramidStage {
+
+    /**
+     * 每一层缩小的倍数
+     */
+    public static final int SCALE = 2;
+
+    /**
+     * 按小块处理时每个小块的输出边长
+     */
+    private static final int TILE_SIZE = 32;
+
+    private byte[] buffer;
+
+    /**
+     * Downsamples the crop rectangle of a frame. The rectangle is given in the
+     * coordinates of the rotated (portrait) frame; an odd last row or column
+     * is dropped.
+     *
+     * @param data       The YUV preview frame, Y plane first.
+     * @param dataWidth  The width of the unrotated preview frame.
+     * @param dataHeight The height of the unrotated preview frame.
+     * @param left       Left edge of the crop in the rotated frame.
+     * @param top        Top edge of the crop in the rotated frame.
+     * @param width      Width of the crop in the rotated frame.
+     * @param height     Height of the crop in the rotated frame.
+     * @return A buffer holding {@code (width / 2) * (height / 2)} row major
+     * luminance bytes. It may be longer than that and is overwritten by the
+     * next call.
+     */
+    public byte[] downsample(byte[] data, int dataWidth, int dataHeight,
+                             int left, int top, int width, int height) {
+        if (left < 0 || top < 0 || width < SCALE || height < SCALE
+                || left + width > dataHeight || top + height > dataWidth) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+
+        int outWidth = width / SCALE;
+        int outHeight = height / SCALE;
+        int area = outWidth * outHeight;
+        byte[] output = buffer;
+        if (output == null || output.length < area) {
+            output = new byte[area];
+            buffer = output;
+        }
+
+        // 旋转后的(x, y)对应原图中的(y, dataHeight - 1 - x)，输出的(x, y)对应旋转后的(2x, 2y)
+        for (int x0 = 0; x0 < outWidth; x0 += TILE_SIZE) {
+            int xEnd = Math.min(x0 + TILE_SIZE, outWidth);
+            for (int y0 = 0; y0 < outHeight; y0 += TILE_SIZE) {
+                int yEnd = Math.min(y0 + TILE_SIZE, outHeight);
+                for (int x = x0; x < xEnd; x++) {
+                    int row0 = (dataHeight - 1 - left - SCALE * x) * dataWidth + top;
+                    int row1 = row0 - dataWidth;
+                    for (int y = y0; y < yEnd; y++) {
+                        int column = SCALE * y;
+                        int sum = (data[row0 + column] & 0xff) + (data[row0 + column + 1] & 0xff)
+                                + (data[row1 + column] & 0xff) + (data[row1 + column + 1] & 0xff);
+                        output[y * outWidth + x] = (byte) ((sum + 2) >> 2);
+                    }
+                }
+            }
+        }
+        return output;
+    }
+
+}
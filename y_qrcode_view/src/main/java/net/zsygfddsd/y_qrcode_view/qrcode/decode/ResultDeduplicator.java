@@ -0,0 +1,108 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.Result;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Remembers the codes reported in multi-code and bulk mode, so a code which
+ * stays in view is reported once rather than on every frame. A code counts as
+ * new again only after it has not been seen for the whole window, or after it
+ * dropped out of the most recently seen {@code maxEntries} codes.
+ * <p/>
+ * 多码模式和连续扫描模式下的去重：同一个码在时间窗口内只上报一次，一直在画面里的码每帧都会刷新时间；
+ * 最多记住maxEntries个码，超出时忘掉最久没见过的（LRU）。
+ * <p/>
+ * Shared by all decode threads.
+ */
+final class ResultDeduplicator {
+
+    /**
+     * 默认的去重时间窗口
+     */
+    static final long DEFAULT_WINDOW_MS = 3000L;
+
+    /**
+     * 默认最多记住的码的个数
+     */
+    static final int DEFAULT_MAX_ENTRIES = 1024;
+
+    private final long windowMs;
+
+    private final int maxEntries;
+
+    /**
+     * 格式+内容 → 最后一次看到的时间，按时间先后排列
+     */
+    private final LinkedHashMap<String, Long> lastSeen = new LinkedHashMap<String, Long>();
+
+    ResultDeduplicator(long windowMs) {
+        this(windowMs, DEFAULT_MAX_ENTRIES);
+    }
+
+    /**
+     * @param windowMs   how long a code must be out of view to be new again,
+     *                   {@link Long#MAX_VALUE} to remember codes until they
+     *                   are evicted
+     * @param maxEntries how many codes are remembered at most
+     */
+    ResultDeduplicator(long windowMs, int maxEntries) {
+        this.windowMs = windowMs;
+        this.maxEntries = Math.max(1, maxEntries);
+    }
+
+    /**
+     * @param now current time in milliseconds, not going backwards
+     * @return true if the code was not seen within the window and should be
+     * reported
+     */
+    synchronized boolean isNew(Result result, long now) {
+        expire(now);
+        String key = keyOf(result);
+        // 先删再放，保持按时间排序
+        boolean seen = lastSeen.remove(key) != null;
+        lastSeen.put(key, now);
+        if (lastSeen.size() > maxEntries) {
+            Iterator<String> eldest = lastSeen.keySet().iterator();
+            eldest.next();
+            eldest.remove();
+        }
+        return !seen;
+    }
+
+    /**
+     * Forgets one code, so it is reported again the next time it is seen,
+     * e.g. when it could not be delivered.
+     */
+    synchronized void forget(Result result) {
+        lastSeen.remove(keyOf(result));
+    }
+
+    /**
+     * Forgets every code, e.g. when a new scan starts.
+     */
+    synchronized void reset() {
+        lastSeen.clear();
+    }
+
+    synchronized int size() {
+        return lastSeen.size();
+    }
+
+    private static String keyOf(Result result) {
+        return result.getBarcodeFormat() + ":" + result.getText();
+    }
+
+    private void expire(long now) {
+        Iterator<Map.Entry<String, Long>> it = lastSeen.entrySet().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().getValue() <= windowMs) {
+                break;
+            }
+            it.remove();
+        }
+    }
+
+}
@@ -0,0 +1,53 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+
+/**
+ * Feeds the candidate points of one decode thread to the {@link RoiTracker}
+ * and on to the viewfinder. While a region or a downsampled level is decoded
+ * the readers report points relative to that image; they are moved back into
+ * framing rect coordinates first.
+ * <p/>
+ * 每个解码线程一个，把定位点转换到扫描框坐标后交给RoiTracker和扫描框界面。
+ */
+final class RoiResultPointCallback implements ResultPointCallback {
+
+    private final RoiTracker tracker;
+
+    private final ResultPointCallback downstream;
+
+    private int offsetX;
+
+    private int offsetY;
+
+    private int scale = 1;
+
+    RoiResultPointCallback(RoiTracker tracker, ResultPointCallback downstream) {
+        this.tracker = tracker;
+        this.downstream = downstream;
+    }
+
+    /**
+     * @param offsetX left edge of the decoded region in the framing rect
+     * @param offsetY top edge of the decoded region in the framing rect
+     * @param scale   framing rect pixels per pixel of the decoded image
+     */
+    void setTransform(int offsetX, int offsetY, int scale) {
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+        this.scale = scale;
+    }
+
+    @Override
+    public void foundPossibleResultPoint(ResultPoint point) {
+        if (offsetX != 0 || offsetY != 0 || scale != 1) {
+            point = new ResultPoint(point.getX() * scale + offsetX, point.getY() * scale + offsetY);
+        }
+        tracker.onCandidate(point.getX(), point.getY());
+        if (downstream != null) {
+            downstream.foundPossibleResultPoint(point);
+        }
+    }
+
+}
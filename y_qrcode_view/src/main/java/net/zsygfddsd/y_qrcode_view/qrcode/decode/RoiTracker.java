@@ -0,0 +1,169 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Remembers where in the framing rect the readers last saw candidate result
+ * points (finder patterns, 1D guard patterns), so the following frames can be
+ * decoded from a tight crop around them instead of the whole framing rect.
+ * <p/>
+ * The region is the bounding box of the candidates of the latest frame that
+ * had any, grown by a margin. It expires {@value #MAX_ROI_FRAMES} frames after
+ * the last candidate, and every {@value #FULL_FRAME_INTERVAL}th frame is
+ * decoded in full anyway, so a code elsewhere in the framing rect is still
+ * found. When a frame decoded from the region shows no candidate at all, the
+ * code has left the region: the region is dropped at once and the same frame
+ * is decoded in full.
+ * <p/>
+ * 根据最近一次找到的定位点，只对定位点附近的区域解码，减少二值化的数据量。
+ * <p/>
+ * Shared by all decode threads.
+ */
+final class RoiTracker {
+
+    /**
+     * 多少帧没有新的定位点后放弃这个区域
+     */
+    static final int MAX_ROI_FRAMES = 6;
+
+    /**
+     * 每隔几帧无论如何解码一次整个扫描框
+     */
+    static final int FULL_FRAME_INTERVAL = 4;
+
+    /**
+     * 区域每边留出的余量，相对于定位点外接矩形的边长
+     */
+    private static final float MARGIN_FRACTION = 0.5f;
+
+    /**
+     * 区域每边的最小余量，相对于扫描框的边长
+     */
+    private static final float MIN_MARGIN_FRACTION = 1f / 6;
+
+    /**
+     * 区域超过扫描框面积的这个比例时，直接解码整个扫描框
+     */
+    private static final float MAX_AREA_FRACTION = 0.6f;
+
+    private float minX;
+
+    private float minY;
+
+    private float maxX;
+
+    private float maxY;
+
+    private boolean hasCandidates;
+
+    /**
+     * 最近一帧里找到的定位点个数
+     */
+    private int candidateCount;
+
+    /**
+     * 最后一个定位点之后开始解码的帧数
+     */
+    private int framesSinceCandidate;
+
+    private int frameCount;
+
+    /**
+     * A reader found a candidate point, in framing rect coordinates.
+     */
+    synchronized void onCandidate(float x, float y) {
+        if (!hasCandidates || framesSinceCandidate > 0) {
+            // 新的一帧里的第一个点，之前的区域作废
+            minX = maxX = x;
+            minY = maxY = y;
+            hasCandidates = true;
+            framesSinceCandidate = 0;
+            candidateCount = 1;
+        } else {
+            candidateCount++;
+            minX = Math.min(minX, x);
+            maxX = Math.max(maxX, x);
+            minY = Math.min(minY, y);
+            maxY = Math.max(maxY, y);
+        }
+    }
+
+    /**
+     * Called once per frame, before decoding it.
+     *
+     * @param width  Width of the framing rect.
+     * @param height Height of the framing rect.
+     * @param region Receives left, top, width and height of the region.
+     * @return true if the frame should be decoded from {@code region}, false
+     * for the whole framing rect
+     */
+    synchronized boolean nextRegion(int width, int height, int[] region) {
+        frameCount++;
+        if (!hasCandidates) {
+            return false;
+        }
+        framesSinceCandidate++;
+        if (framesSinceCandidate > MAX_ROI_FRAMES) {
+            hasCandidates = false;
+            return false;
+        }
+        if (frameCount % FULL_FRAME_INTERVAL == 0) {
+            return false;
+        }
+
+        float minMargin = Math.min(width, height) * MIN_MARGIN_FRACTION;
+        float marginX = Math.max((maxX - minX) * MARGIN_FRACTION, minMargin);
+        float marginY = Math.max((maxY - minY) * MARGIN_FRACTION, minMargin);
+        int left = Math.max(0, (int) (minX - marginX));
+        int top = Math.max(0, (int) (minY - marginY));
+        int right = Math.min(width, (int) Math.ceil(maxX + marginX));
+        int bottom = Math.min(height, (int) Math.ceil(maxY + marginY));
+        if (right <= left || bottom <= top
+                || (float) (right - left) * (bottom - top) > MAX_AREA_FRACTION * width * height) {
+            return false;
+        }
+        region[0] = left;
+        region[1] = top;
+        region[2] = right - left;
+        region[3] = bottom - top;
+        return true;
+    }
+
+    /**
+     * Called when decoding a frame from the region found no code.
+     *
+     * @return true if the region showed no candidate either: the region is
+     * dropped and the frame should be decoded from the whole framing rect.
+     * false if candidates were seen, the code is still there but could not be
+     * read in this frame.
+     */
+    synchronized boolean onRegionMissed() {
+        if (hasCandidates && framesSinceCandidate == 0) {
+            return false;
+        }
+        // 区域里一个定位点都没有，码已经移走了，不再等MAX_ROI_FRAMES帧
+        hasCandidates = false;
+        return true;
+    }
+
+    /**
+     * How large the candidates of the frame just decoded spread, as a rough
+     * measure of the code's size in the framing rect.
+     *
+     * @return the larger side of their bounding box, or -1 if the last frame
+     * had fewer than {@code minCandidates}
+     */
+    synchronized float getCandidateExtent(int minCandidates) {
+        if (!hasCandidates || framesSinceCandidate > 0 || candidateCount < minCandidates) {
+            return -1f;
+        }
+        return Math.max(maxX - minX, maxY - minY);
+    }
+
+    /**
+     * Forgets the region, e.g. when a new scan starts.
+     */
+    synchronized void reset() {
+        hasCandidates = false;
+        frameCount = 0;
+    }
+
+}
@@ -0,0 +1,178 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.PlanarYUVLuminanceSource;
+
+/**
+ * A {@link com.google.zxing.PlanarYUVLuminanceSource} equivalent which reads
+ * straight from the unrotated (landscape) camera buffer and applies the 90
+ * degree clockwise rotation through index mapping, so the preview frame never
+ * has to be physically rotated before decoding.
+ * <p/>
+ * 直接从相机原始的横向数据中读取亮度，通过下标换算完成顺时针90度旋转，
+ * 省掉每次解码前对整帧数据的旋转拷贝。
+ * <p/>
+ * The crop rectangle is given in the coordinates of the rotated frame, the
+ * same coordinates as {@code CameraManager.getFramingRectOnScreen()}.
+ */
+public final class RotatedPlanarYUVLuminanceSource extends LuminanceSource {
+
+    private static final int THUMBNAIL_SCALE_FACTOR = 2;
+
+    private final byte[] yuvData;
+
+    private final int dataWidth;
+
+    private final int dataHeight;
+
+    private final int left;
+
+    private final int top;
+
+    private final RotationStage rotationStage;
+
+    /**
+     * @param yuvData       The YUV preview frame, Y plane first.
+     * @param dataWidth     The width of the unrotated preview frame.
+     * @param dataHeight    The height of the unrotated preview frame.
+     * @param left          Left edge of the crop in the rotated frame.
+     * @param top           Top edge of the crop in the rotated frame.
+     * @param width         Width of the crop in the rotated frame.
+     * @param height        Height of the crop in the rotated frame.
+     * @param rotationStage Supplies the reused buffer for {@link #getMatrix()},
+     *                      or null to allocate a new one on every call.
+     */
+    public RotatedPlanarYUVLuminanceSource(byte[] yuvData, int dataWidth, int dataHeight,
+                                           int left, int top, int width, int height,
+                                           RotationStage rotationStage) {
+        super(width, height);
+
+        // 旋转后的图像宽为dataHeight，高为dataWidth
+        if (left < 0 || top < 0 || left + width > dataHeight || top + height > dataWidth) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+
+        this.yuvData = yuvData;
+        this.dataWidth = dataWidth;
+        this.dataHeight = dataHeight;
+        this.left = left;
+        this.top = top;
+        this.rotationStage = rotationStage;
+    }
+
+    @Override
+    public byte[] getRow(int y, byte[] row) {
+        if (y < 0 || y >= getHeight()) {
+            throw new IllegalArgumentException("Requested row is outside the image: " + y);
+        }
+        int width = getWidth();
+        if (row == null || row.length < width) {
+            row = new byte[width];
+        }
+        // 旋转后的一行对应原图中的一列，从下往上读
+        int inputOffset = (dataHeight - 1 - left) * dataWidth + top + y;
+        for (int x = 0; x < width; x++) {
+            row[x] = yuvData[inputOffset];
+            inputOffset -= dataWidth;
+        }
+        return row;
+    }
+
+    /**
+     * The returned matrix is row major with a stride of {@link #getWidth()}.
+     * When a {@link RotationStage} was supplied it is that stage's buffer,
+     * which may be longer than {@code getWidth() * getHeight()} and is
+     * overwritten by the next source that uses the same stage.
+     */
+    @Override
+    public byte[] getMatrix() {
+        RotationStage stage = rotationStage;
+        if (stage == null) {
+            stage = new RotationStage();
+        }
+        return stage.rotate(yuvData, dataWidth, dataHeight, left, top,
+                getWidth(), getHeight());
+    }
+
+    /**
+     * @return the luminance of pixel (x, y) of the crop, 0 to 255
+     */
+    int getLuminance(int x, int y) {
+        return yuvData[(dataHeight - 1 - left - x) * dataWidth + top + y] & 0xff;
+    }
+
+    @Override
+    public boolean isCropSupported() {
+        return true;
+    }
+
+    @Override
+    public RotatedPlanarYUVLuminanceSource crop(int left, int top, int width, int height) {
+        return new RotatedPlanarYUVLuminanceSource(yuvData, dataWidth, dataHeight,
+                this.left + left, this.top + top, width, height, rotationStage);
+    }
+
+    /**
+     * The crop at half resolution, for the first level of a pyramid decode.
+     *
+     * @param pyramidStage Supplies the reused buffer the returned source reads
+     *                     from; it is overwritten by the next downsample.
+     * @return a source of {@code getWidth() / 2} by {@code getHeight() / 2}
+     */
+    public LuminanceSource downsample(PyramidStage pyramidStage) {
+        int width = getWidth() / PyramidStage.SCALE;
+        int height = getHeight() / PyramidStage.SCALE;
+        byte[] half = pyramidStage.downsample(yuvData, dataWidth, dataHeight, left, top,
+                getWidth(), getHeight());
+        return new PlanarYUVLuminanceSource(half, width, height, 0, 0, width, height, false);
+    }
+
+    /**
+     * Same output as {@link com.google.zxing.PlanarYUVLuminanceSource#renderThumbnail()}.
+     */
+    public int[] renderThumbnail() {
+        return renderThumbnail(null);
+    }
+
+    /**
+     * Renders the thumbnail into {@code pixels} when it is large enough, so the
+     * caller can reuse the same array from one result to the next.
+     *
+     * @param pixels ARGB output of at least thumbnail width * height, or null.
+     * @return the array holding the thumbnail, row major with a stride of
+     * {@link #getThumbnailWidth()}.
+     */
+    public int[] renderThumbnail(int[] pixels) {
+        int width = getThumbnailWidth();
+        int height = getThumbnailHeight();
+        if (pixels == null || pixels.length < width * height) {
+            pixels = new int[width * height];
+        }
+        for (int y = 0; y < height; y++) {
+            int outputOffset = y * width;
+            int inputOffset = (dataHeight - 1 - left) * dataWidth + top
+                    + y * THUMBNAIL_SCALE_FACTOR;
+            for (int x = 0; x < width; x++) {
+                int grey = yuvData[inputOffset] & 0xff;
+                pixels[outputOffset + x] = 0xFF000000 | (grey * 0x00010101);
+                inputOffset -= THUMBNAIL_SCALE_FACTOR * dataWidth;
+            }
+        }
+        return pixels;
+    }
+
+    /**
+     * @return width of image from {@link #renderThumbnail()}
+     */
+    public int getThumbnailWidth() {
+        return getWidth() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+    /**
+     * @return height of image from {@link #renderThumbnail()}
+     */
+    public int getThumbnailHeight() {
+        return getHeight() / THUMBNAIL_SCALE_FACTOR;
+    }
+
+}
@@ -0,0 +1,71 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * Rotates the luminance (Y) plane of a landscape preview frame 90 degrees
+ * clockwise, but only the part of it that falls inside the crop rectangle.
+ * The output buffer is kept and reused from one frame to the next, and the
+ * transpose walks the crop in small square tiles so that both the reads and
+ * the writes stay inside the cache.
+ * <p/>
+ * 只旋转扫描框内的亮度数据，而不是整帧旋转；输出缓冲区在帧与帧之间复用，
+ * 并按小块进行转置，避免按列写入整帧时的缓存抖动。
+ * <p/>
+ * Not thread safe, each decode thread owns its own instance.
+ */
+public final class RotationStage {
+
+    /**
+     * 转置时每个小块的边长，32*32字节的块读写都能留在L1缓存里
+     */
+    private static final int TILE_SIZE = 32;
+
+    private byte[] buffer;
+
+    /**
+     * Rotates the crop rectangle of a frame. The rectangle is given in the
+     * coordinates of the rotated (portrait) frame, i.e. the same coordinates
+     * as {@code CameraManager.getFramingRectOnScreen()}.
+     *
+     * @param data       The YUV preview frame, Y plane first.
+     * @param dataWidth  The width of the unrotated preview frame.
+     * @param dataHeight The height of the unrotated preview frame.
+     * @param left       Left edge of the crop in the rotated frame.
+     * @param top        Top edge of the crop in the rotated frame.
+     * @param width      Width of the crop in the rotated frame.
+     * @param height     Height of the crop in the rotated frame.
+     * @return A buffer holding the rotated crop as {@code width * height} row
+     * major luminance bytes. It may be longer than that and is overwritten by
+     * the next call.
+     */
+    public byte[] rotate(byte[] data, int dataWidth, int dataHeight,
+                         int left, int top, int width, int height) {
+        // 旋转后的图像宽为dataHeight，高为dataWidth
+        if (left < 0 || top < 0 || width <= 0 || height <= 0
+                || left + width > dataHeight || top + height > dataWidth) {
+            throw new IllegalArgumentException("Crop rectangle does not fit within image data.");
+        }
+
+        int area = width * height;
+        byte[] rotated = buffer;
+        if (rotated == null || rotated.length < area) {
+            rotated = new byte[area];
+            buffer = rotated;
+        }
+
+        // 旋转后的(x, y)对应原图中的(y, dataHeight - 1 - x)
+        for (int x0 = 0; x0 < width; x0 += TILE_SIZE) {
+            int xEnd = Math.min(x0 + TILE_SIZE, width);
+            for (int y0 = 0; y0 < height; y0 += TILE_SIZE) {
+                int yEnd = Math.min(y0 + TILE_SIZE, height);
+                for (int x = x0; x < xEnd; x++) {
+                    int inputOffset = (dataHeight - 1 - left - x) * dataWidth + top;
+                    for (int y = y0; y < yEnd; y++) {
+                        rotated[y * width + x] = data[inputOffset + y];
+                    }
+                }
+            }
+        }
+        return rotated;
+    }
+
+}
@@ -0,0 +1,33 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import android.graphics.Bitmap;
+
+/**
+ * Renders result thumbnails into a pixel array and a mutable Bitmap that are
+ * reused from one scan to the next. Each decode worker owns one; the Bitmap
+ * it returns stays valid until the next thumbnail of the same worker is
+ * rendered, which only happens after the scan was restarted.
+ * <p/>
+ * 解码成功时的缩略图，像素数组和Bitmap都在多次扫描之间复用。
+ */
+final class ThumbnailRenderer {
+
+    private int[] pixels;
+
+    private Bitmap bitmap;
+
+    synchronized Bitmap render(RotatedPlanarYUVLuminanceSource source) {
+        int width = source.getThumbnailWidth();
+        int height = source.getThumbnailHeight();
+        pixels = source.renderThumbnail(pixels);
+        Bitmap theBitmap = bitmap;
+        if (theBitmap == null || theBitmap.isRecycled()
+                || theBitmap.getWidth() != width || theBitmap.getHeight() != height) {
+            theBitmap = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            bitmap = theBitmap;
+        }
+        theBitmap.setPixels(pixels, 0, width, 0, 0, width, height);
+        return theBitmap;
+    }
+
+}
@@ -0,0 +1,200 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Where the scan latency goes: a histogram per stage of the decode pipeline,
+ * frames attempted and decoded, and the time from the start of a scan to its
+ * first result. Register an instance with
+ * {@code Y_CaptureViewBuilder.setDecodeMetrics()}; the decoder then times every
+ * frame and, if a {@link Listener} is set, reports each frame's timings.
+ * <p/>
+ * 解码流水线各阶段的耗时统计，用于定位扫描延迟。记录是无锁的，可以在任意线程读取。
+ */
+public final class DecodeMetrics {
+
+    /**
+     * The stages a preview frame goes through, in order.
+     */
+    public enum Stage {
+        /**
+         * 从请求预览帧到相机回调
+         */
+        CAMERA_DELIVERY,
+        /**
+         * 交给解码线程后在消息队列里等待
+         */
+        QUEUE_WAIT,
+        /**
+         * 解码前的快速过滤
+         */
+        PRE_FILTER,
+        /**
+         * 准备要解码的亮度数据：扫描框内的区域裁剪、缩小一半；
+         * 旋转不拷贝数据，在二值化读取时完成
+         */
+        ROTATE,
+        /**
+         * 二值化，包括按旋转后的坐标读取亮度
+         */
+        BINARIZE,
+        /**
+         * 条码识别
+         */
+        READER,
+        /**
+         * 解码成功后把结果发到界面线程
+         */
+        RESULT_DISPATCH,
+        /**
+         * 界面线程处理结果，包括回调和绘制缩略图
+         */
+        UI
+    }
+
+    /**
+     * Receives the timings of every frame. Frames without a result are reported
+     * on the decode thread that handled them, decoded frames on the UI thread
+     * once the result has been delivered. Keep the implementation cheap.
+     */
+    public interface Listener {
+
+        void onFrameTimed(FrameTimings timings);
+
+    }
+
+    private final LatencyHistogram[] histograms = new LatencyHistogram[Stage.values().length];
+
+    private final LatencyHistogram timeToFirstDecode = new LatencyHistogram();
+
+    private final AtomicLong framesAttempted = new AtomicLong();
+
+    private final AtomicLong framesDecoded = new AtomicLong();
+
+    private final AtomicLong framesRejected = new AtomicLong();
+
+    /**
+     * 本轮扫描开始的时间，出结果后清0
+     */
+    private final AtomicLong scanStartNanos = new AtomicLong();
+
+    private volatile Listener listener;
+
+    public DecodeMetrics() {
+        this(null);
+    }
+
+    public DecodeMetrics(Listener listener) {
+        for (int i = 0; i < histograms.length; i++) {
+            histograms[i] = new LatencyHistogram();
+        }
+        this.listener = listener;
+    }
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public LatencyHistogram getHistogram(Stage stage) {
+        return histograms[stage.ordinal()];
+    }
+
+    /**
+     * @return the time from the start of a scan until its result reached the app
+     */
+    public LatencyHistogram getTimeToFirstDecode() {
+        return timeToFirstDecode;
+    }
+
+    /**
+     * @return frames handed to a decode thread
+     */
+    public long getFramesAttempted() {
+        return framesAttempted.get();
+    }
+
+    /**
+     * @return frames in which a barcode was found and delivered
+     */
+    public long getFramesDecoded() {
+        return framesDecoded.get();
+    }
+
+    /**
+     * @return frames the pre-filter skipped without running the readers
+     */
+    public long getFramesRejected() {
+        return framesRejected.get();
+    }
+
+    public void reset() {
+        for (LatencyHistogram histogram : histograms) {
+            histogram.reset();
+        }
+        timeToFirstDecode.reset();
+        framesAttempted.set(0);
+        framesDecoded.set(0);
+        framesRejected.set(0);
+    }
+
+    /**
+     * A new scan starts, e.g. after the previous result was handled.
+     */
+    public void onScanStarted() {
+        scanStartNanos.set(System.nanoTime());
+    }
+
+    /**
+     * Records the time {@code timings}' frame spent in {@code stage}.
+     */
+    public void record(FrameTimings timings, Stage stage, long nanos) {
+        timings.set(stage, nanos);
+        histograms[stage.ordinal()].record(nanos);
+    }
+
+    /**
+     * The pre-filter skipped the frame, call before {@link #onFrameFinished}.
+     */
+    public void onFrameRejected() {
+        framesRejected.incrementAndGet();
+    }
+
+    /**
+     * The frame is done: counts it and reports it to the listener. The timings
+     * are cleared afterwards so the caller can reuse them for its next frame.
+     */
+    public void onFrameFinished(FrameTimings timings, boolean decoded) {
+        framesAttempted.incrementAndGet();
+        timings.setDecoded(decoded);
+        if (decoded) {
+            framesDecoded.incrementAndGet();
+            long start = scanStartNanos.getAndSet(0);
+            if (start != 0) {
+                timeToFirstDecode.record(System.nanoTime() - start);
+            }
+        }
+        Listener theListener = listener;
+        if (theListener != null) {
+            theListener.onFrameTimed(timings);
+        }
+        timings.clear();
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder();
+        result.append("frames ").append(framesDecoded.get()).append('/')
+                .append(framesAttempted.get()).append(", rejected ")
+                .append(framesRejected.get());
+        for (Stage stage : Stage.values()) {
+            LatencyHistogram histogram = histograms[stage.ordinal()];
+            result.append(", ").append(stage).append(" p50=")
+                    .append(histogram.getPercentileMicros(50)).append("us p95=")
+                    .append(histogram.getPercentileMicros(95)).append("us");
+        }
+        result.append(", TTFD p50=").append(timeToFirstDecode.getPercentileMicros(50))
+                .append("us");
+        return result.toString();
+    }
+
+}
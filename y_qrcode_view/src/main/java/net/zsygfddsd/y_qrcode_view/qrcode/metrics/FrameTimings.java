@@ -0,0 +1,83 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+/**
+ * The stage timings of one preview frame. The instance passed to
+ * {@link DecodeMetrics.Listener#onFrameTimed(FrameTimings)} is reused for the
+ * next frame of the same decode thread, use {@link #copy()} to keep it.
+ * <p/>
+ * 一帧在各个阶段的耗时，没有经过的阶段为-1。
+ */
+public final class FrameTimings {
+
+    private final long[] nanos = new long[DecodeMetrics.Stage.values().length];
+
+    private boolean decoded;
+
+    public FrameTimings() {
+        clear();
+    }
+
+    /**
+     * @return the time spent in {@code stage} in nanoseconds, -1 if the frame
+     * did not go through it or it was not measured.
+     */
+    public long getNanos(DecodeMetrics.Stage stage) {
+        return nanos[stage.ordinal()];
+    }
+
+    /**
+     * @return the sum of all measured stages in nanoseconds
+     */
+    public long getTotalNanos() {
+        long total = 0;
+        for (long value : nanos) {
+            if (value > 0) {
+                total += value;
+            }
+        }
+        return total;
+    }
+
+    /**
+     * @return whether a barcode was found in this frame
+     */
+    public boolean isDecoded() {
+        return decoded;
+    }
+
+    public FrameTimings copy() {
+        FrameTimings copy = new FrameTimings();
+        System.arraycopy(nanos, 0, copy.nanos, 0, nanos.length);
+        copy.decoded = decoded;
+        return copy;
+    }
+
+    void set(DecodeMetrics.Stage stage, long value) {
+        nanos[stage.ordinal()] = value;
+    }
+
+    void setDecoded(boolean decoded) {
+        this.decoded = decoded;
+    }
+
+    void clear() {
+        for (int i = 0; i < nanos.length; i++) {
+            nanos[i] = -1;
+        }
+        decoded = false;
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder result = new StringBuilder(decoded ? "decoded" : "not decoded");
+        for (DecodeMetrics.Stage stage : DecodeMetrics.Stage.values()) {
+            long value = nanos[stage.ordinal()];
+            if (value >= 0) {
+                result.append(' ').append(stage).append('=')
+                        .append(value / 1000L).append("us");
+            }
+        }
+        return result.toString();
+    }
+
+}
@@ -0,0 +1,75 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+/**
+ * How long the scanner took to come up, measured from the moment the camera
+ * was asked to open: until the camera was open and configured, until the
+ * preview was running, and until the first preview frame had been through
+ * the decoder. All times are in milliseconds, -1 while not reached yet.
+ * <p/>
+ * 扫描界面的启动耗时：打开相机、开始预览、第一帧解码完成，都从请求打开相机开始计时。
+ * <p/>
+ * Used on the main thread only.
+ */
+public final class StartupTimings {
+
+    private long requestedAt = -1;
+
+    private long timeToOpen = -1;
+
+    private long timeToFirstPreview = -1;
+
+    private long timeToFirstDecode = -1;
+
+    /**
+     * The camera was asked to open, forgets the previous startup.
+     *
+     * @param now e.g. {@code SystemClock.elapsedRealtime()}
+     */
+    public void onOpenRequested(long now) {
+        requestedAt = now;
+        timeToOpen = -1;
+        timeToFirstPreview = -1;
+        timeToFirstDecode = -1;
+    }
+
+    public void onCameraOpened(long now) {
+        if (requestedAt >= 0) {
+            timeToOpen = now - requestedAt;
+        }
+    }
+
+    public void onPreviewStarted(long now) {
+        if (requestedAt >= 0) {
+            timeToFirstPreview = now - requestedAt;
+        }
+    }
+
+    /**
+     * A frame went through the decoder, successful or not; only the first
+     * one after {@link #onOpenRequested(long)} counts.
+     */
+    public void onFrameDecoded(long now) {
+        if (requestedAt >= 0 && timeToFirstDecode < 0) {
+            timeToFirstDecode = now - requestedAt;
+        }
+    }
+
+    public long getTimeToOpenMillis() {
+        return timeToOpen;
+    }
+
+    public long getTimeToFirstPreviewMillis() {
+        return timeToFirstPreview;
+    }
+
+    public long getTimeToFirstDecodeMillis() {
+        return timeToFirstDecode;
+    }
+
+    @Override
+    public String toString() {
+        return "open " + timeToOpen + " ms, first preview " + timeToFirstPreview
+                + " ms, first decode " + timeToFirstDecode + " ms";
+    }
+
+}
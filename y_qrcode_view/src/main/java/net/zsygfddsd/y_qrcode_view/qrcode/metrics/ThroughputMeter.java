@@ -0,0 +1,85 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+/**
+ * Counts events, such as codes delivered in bulk mode, over the last minute
+ * in one second buckets. Before a full minute has passed the rate is
+ * extrapolated from the time since {@link #start(long)}.
+ * <p/>
+ * 按秒分桶统计最近一分钟内的事件数，用来衡量连续扫描每分钟能扫多少个码。
+ * <p/>
+ * Thread safe.
+ */
+public final class ThroughputMeter {
+
+    private static final long WINDOW_MS = 60000L;
+
+    private static final long BUCKET_MS = 1000L;
+
+    private static final int BUCKET_COUNT = (int) (WINDOW_MS / BUCKET_MS);
+
+    private final long[] buckets = new long[BUCKET_COUNT];
+
+    /**
+     * 每个桶当前对应的秒，用来判断桶里的计数是否已经过期
+     */
+    private final long[] bucketSeconds = new long[BUCKET_COUNT];
+
+    private long startMs;
+
+    private long total;
+
+    public ThroughputMeter() {
+        start(0L);
+    }
+
+    /**
+     * Forgets all events and starts measuring at {@code nowMs}.
+     */
+    public synchronized void start(long nowMs) {
+        startMs = nowMs;
+        total = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            buckets[i] = 0;
+            bucketSeconds[i] = -1;
+        }
+    }
+
+    public synchronized void record(long nowMs) {
+        long second = nowMs / BUCKET_MS;
+        int index = (int) (second % BUCKET_COUNT);
+        if (bucketSeconds[index] != second) {
+            bucketSeconds[index] = second;
+            buckets[index] = 0;
+        }
+        buckets[index]++;
+        total++;
+    }
+
+    /**
+     * @return events in the last minute, or the rate extrapolated to a minute
+     * when measuring started less than a minute ago
+     */
+    public synchronized float getPerMinute(long nowMs) {
+        long second = nowMs / BUCKET_MS;
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            if (bucketSeconds[i] >= 0 && second - bucketSeconds[i] < BUCKET_COUNT) {
+                count += buckets[i];
+            }
+        }
+        long elapsed = nowMs - startMs;
+        if (elapsed >= WINDOW_MS) {
+            return count;
+        }
+        // 不到一分钟时按已经过去的时间折算，至少按一秒算，避免刚开始时数值过大
+        return count * (float) WINDOW_MS / Math.max(elapsed, BUCKET_MS);
+    }
+
+    /**
+     * @return events since {@link #start(long)}
+     */
+    public synchronized long getTotal() {
+        return total;
+    }
+
+}
@@ -0,0 +1,99 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.view;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Hands the possible result points found by the decode threads over to the
+ * viewfinder without locks. The points live in a ring of primitive
+ * coordinates: the decode side writes at the tail and publishes it, the UI
+ * thread reads up to the published tail and frees the slots by moving the
+ * head. Neither side ever waits for the other and no objects are created per
+ * point.
+ * <p/>
+ * The ring has a single writer at a time. With several decode workers, a
+ * worker that finds another one writing drops its point instead of waiting,
+ * as it does when the ring is full; the points only decorate the overlay.
+ * <p/>
+ * 解码线程和UI线程之间无锁传递可能结果点的环形缓冲区：写满或者有别的解码线程正在写时，
+ * 直接丢掉这个点，两边都不会等待。
+ */
+final class ResultPointBuffer {
+
+    private final int capacity;
+
+    /**
+     * x, y交替存放
+     */
+    private final float[] points;
+
+    /**
+     * 下一个要读的位置，只由UI线程修改
+     */
+    private volatile long head;
+
+    /**
+     * 下一个要写的位置，只由正在写的解码线程修改
+     */
+    private volatile long tail;
+
+    private final AtomicBoolean writing = new AtomicBoolean();
+
+    /**
+     * @param capacity Most points kept between two frames.
+     */
+    ResultPointBuffer(int capacity) {
+        this.capacity = capacity;
+        points = new float[capacity * 2];
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Called from the decode threads.
+     *
+     * @return false if the point was dropped
+     */
+    boolean add(float x, float y) {
+        if (!writing.compareAndSet(false, true)) {
+            return false;
+        }
+        try {
+            long t = tail;
+            if (t - head >= capacity) {
+                return false;
+            }
+            int index = (int) (t % capacity) * 2;
+            points[index] = x;
+            points[index + 1] = y;
+            // 写volatile的tail之后，UI线程才能看到这个点
+            tail = t + 1;
+            return true;
+        } finally {
+            writing.set(false);
+        }
+    }
+
+    /**
+     * Moves all published points to {@code out} as x, y pairs, oldest first.
+     * Called from the UI thread.
+     *
+     * @param out Receives the points, at least {@code 2 * capacity} long.
+     * @return the number of points moved
+     */
+    int drainTo(float[] out) {
+        long h = head;
+        long t = tail;
+        int count = (int) (t - h);
+        for (int i = 0; i < count; i++) {
+            int index = (int) ((h + i) % capacity) * 2;
+            out[i * 2] = points[index];
+            out[i * 2 + 1] = points[index + 1];
+        }
+        // 读完之后才把位置还给解码线程
+        head = t;
+        return count;
+    }
+
+}
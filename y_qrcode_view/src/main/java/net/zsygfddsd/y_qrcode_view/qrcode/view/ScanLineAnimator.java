@@ -0,0 +1,56 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.view;
+
+/**
+ * Moves the laser line of the viewfinder down the framing rect at a constant
+ * speed and wraps it back to the top. The position follows the frame time
+ * instead of the number of frames, so the line moves equally fast whatever the
+ * refresh rate of the display is.
+ * <p/>
+ * 按帧时间计算扫描线的位置，刷新率不同的屏幕上扫描线的速度一样。
+ * <p/>
+ * Called from the UI thread only.
+ */
+final class ScanLineAnimator {
+
+    /**
+     * 每毫秒移动的像素数，与原来60帧的屏幕上每帧移动10个像素一样快
+     */
+    static final float SPEED = 0.6f;
+
+    /**
+     * 两帧的间隔超出这个值时（例如界面被暂停过），只按这么长计算，扫描线不会跳过一大段
+     */
+    static final long MAX_FRAME_INTERVAL_MS = 50L;
+
+    private float offset;
+
+    private long lastFrameTime = -1L;
+
+    /**
+     * @param top       Top of the framing rect.
+     * @param bottom    Bottom of the framing rect.
+     * @param frameTime Drawing time of the frame in milliseconds.
+     * @return top of the laser line in this frame
+     */
+    int nextPosition(int top, int bottom, long frameTime) {
+        if (lastFrameTime >= 0) {
+            long elapsed = Math.min(Math.max(frameTime - lastFrameTime, 0L), MAX_FRAME_INTERVAL_MS);
+            offset += elapsed * SPEED;
+        }
+        lastFrameTime = frameTime;
+        int range = bottom - top;
+        if (offset >= range) {
+            offset = 0f;
+        }
+        return top + (int) offset;
+    }
+
+    /**
+     * Starts again from the top with the next frame.
+     */
+    void reset() {
+        offset = 0f;
+        lastFrameTime = -1L;
+    }
+
+}
@@ -9,8 +9,8 @@ import android.graphics.Color;
 import android.graphics.Paint;
 import android.graphics.Rect;
 import android.graphics.drawable.BitmapDrawable;
+import android.support.v4.view.ViewCompat;
 import android.util.AttributeSet;
-import android.util.Log;
 import android.view.View;
 
 import com.google.zxing.ResultPoint;
@@ -18,10 +18,6 @@ import com.google.zxing.ResultPoint;
 import net.zsygfddsd.y_qrcode_view.R;
 import net.zsygfddsd.y_qrcode_view.qrcode.camera.CameraManager;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
-
 
 /**
  * This view is overlaid on top of the camera preview. It adds the viewfinder
@@ -32,15 +28,16 @@ import java.util.List;
  * <br/>
  * 该视图是覆盖在相机的预览视图之上的一层视图。扫描区构成原理，其实是在预览视图上画四块遮罩层，
  * 中间留下的部分保持透明，并画上一条激光线，实际上该线条就是展示而已，与扫描功能没有任何关系。
+ * <p/>
+ * 扫描时每一帧都会重绘，onDraw里不创建任何对象：图片和画笔在构造时准备好，
+ * 重绘跟随屏幕的垂直同步信号，而不是固定的时间间隔。
+ * 软件绘制时遮罩层和四个角每帧都一样，只在尺寸或扫描框变化时画到一张缓存的图上，
+ * 每帧只重画扫描线和结果点；硬件加速时直接画，原因见drawStaticLayer。
  *
  * @author dswitkin@google.com (Daniel Switkin)
  */
 public final class ViewfinderView extends View {
 
-    /**
-     * 刷新界面的时间
-     */
-    private static final long ANIMATION_DELAY = 10L;
     private static final int OPAQUE = 0xFF;
 
     private int CORNER_PADDING;
@@ -55,27 +52,57 @@ public final class ViewfinderView extends View {
      */
     private static int MIDDLE_LINE_PADDING;
 
+    private static final int MAX_RESULT_POINTS = 20;
+
     /**
-     * 中间那条线每次刷新移动的距离
+     * 遮掩层的画笔
      */
-    private static final int SPEEN_DISTANCE = 10;
+    private final Paint maskPaint;
+
+    /**
+     * 画结果图、四个角和扫描线的画笔
+     */
+    private final Paint bitmapPaint;
+
+    private final Paint resultPointPaint;
+
+    private final Paint lastResultPointPaint;
+
+    private final Bitmap laserBitmap;
+
+    private final Bitmap cornerTopLeft;
+
+    private final Bitmap cornerTopRight;
+
+    private final Bitmap cornerBottomLeft;
+
+    private final Bitmap cornerBottomRight;
 
     /**
-     * 画笔对象的引用
+     * 扫描线的位置，每帧复用
      */
-    private Paint paint;
+    private final Rect lineRect = new Rect();
+
+    private final int[] locationOnScreen = new int[2];
+
+    private final ScanLineAnimator scanLine = new ScanLineAnimator();
 
     /**
-     * 中间滑动线的最顶端位置
+     * 遮罩层和四个角画好后缓存的图，尺寸和视图一样，只在软件绘制时使用
      */
-    private int slideTop;
+    private Bitmap staticLayer;
 
     /**
-     * 中间滑动线的最底端位置
+     * 当前尺寸下创建缓存图时内存不够，尺寸变化之前不再尝试，一直直接画
      */
-    private int slideBottom;
+    private boolean staticLayerFailed;
 
-    private static final int MAX_RESULT_POINTS = 20;
+    private final Canvas staticLayerCanvas = new Canvas();
+
+    /**
+     * 缓存图对应的扫描框
+     */
+    private final Rect staticLayerFrame = new Rect();
 
     private Bitmap resultBitmap;
 
@@ -86,14 +113,20 @@ public final class ViewfinderView extends View {
     private final int resultColor;
 
     private final int resultPointColor;
-    private List<ResultPoint> possibleResultPoints;
 
-    private List<ResultPoint> lastPossibleResultPoints;
+    private final ResultPointBuffer possibleResultPoints = new ResultPointBuffer(MAX_RESULT_POINTS);
+
+    /**
+     * 本帧取到的结果点，x, y交替存放
+     */
+    private float[] currentPoints = new float[MAX_RESULT_POINTS * 2];
 
     /**
-     * 第一次绘制控件
+     * 上一帧的结果点，本帧画成小点
      */
-    boolean isFirst = true;
+    private float[] lastPoints = new float[MAX_RESULT_POINTS * 2];
+
+    private int lastPointCount;
 
     private CameraManager cameraManager;
 
@@ -101,8 +134,6 @@ public final class ViewfinderView extends View {
     public ViewfinderView(Context context, AttributeSet attrs) {
         super(context, attrs);
 
-        paint = new Paint(Paint.ANTI_ALIAS_FLAG); // 开启反锯齿
-
         Resources resources = getResources();
         CORNER_PADDING = dip2px(context, resources.getDimension(R.dimen.corner_padding));//角图标的padding
         MIDDLE_LINE_PADDING = dip2px(context, resources.getDimension(R.dimen.middle_line_padding));//中间扫描线的padding
@@ -112,21 +143,48 @@ public final class ViewfinderView extends View {
         resultColor = resources.getColor(R.color.result_view);
 
         resultPointColor = resources.getColor(R.color.possible_result_points);
-        possibleResultPoints = new ArrayList<ResultPoint>(5);
-        lastPossibleResultPoints = null;
 
+        // 开启反锯齿
+        maskPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        maskPaint.setColor(resultColor);
+        bitmapPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        resultPointPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        resultPointPaint.setColor(resultPointColor);
+        resultPointPaint.setAlpha(OPAQUE);
+        lastResultPointPaint = new Paint(Paint.ANTI_ALIAS_FLAG);
+        lastResultPointPaint.setColor(resultPointColor);
+        lastResultPointPaint.setAlpha(OPAQUE / 2);
+
+        laserBitmap = ((BitmapDrawable) resources.getDrawable(R.drawable.scan_laser)).getBitmap();
+        cornerTopLeft = BitmapFactory.decodeResource(resources, R.drawable.scan_corner_top_left);
+        cornerTopRight = BitmapFactory.decodeResource(resources, R.drawable.scan_corner_top_right);
+        cornerBottomLeft = BitmapFactory.decodeResource(resources, R.drawable.scan_corner_bottom_left);
+        cornerBottomRight = BitmapFactory.decodeResource(resources, R.drawable.scan_corner_bottom_right);
     }
 
     public void setCameraManager(CameraManager cameraManager) {
         this.cameraManager = cameraManager;
     }
 
+    @Override
+    protected void onSizeChanged(int w, int h, int oldw, int oldh) {
+        super.onSizeChanged(w, h, oldw, oldh);
+        // 尺寸变了，缓存图下一帧重新生成
+        staticLayer = null;
+        staticLayerFailed = false;
+    }
+
+    @Override
+    protected void onDetachedFromWindow() {
+        super.onDetachedFromWindow();
+        staticLayer = null;
+    }
+
     @Override
     public void onDraw(Canvas canvas) {
         if (cameraManager == null) {
             return; // not ready yet, early draw before done configuring
         }
-        Log.e("vfv", "canvas width and height----" + canvas.getWidth() + "---" + canvas.getHeight());
         Rect frame = cameraManager.getFramingRect(canvas.getWidth(), canvas.getHeight());
         if (frame == null) {
             return;
@@ -134,64 +192,94 @@ public final class ViewfinderView extends View {
 
         if (resultBitmap != null) {
             // Draw the opaque result bitmap over the scanning rectangle
-            paint.setAlpha(0xff);
-            //            Rect localRect = new Rect();
-            //            getLocalVisibleRect(localRect);
             //绘制解析成功时那一帧的图
-            canvas.drawBitmap(resultBitmap, null, frame, paint);
-            // 绘制遮掩层
-            drawCover(canvas, frame);
-            // 画扫描框边上的角
-            drawRectEdges(canvas, frame);
+            canvas.drawBitmap(resultBitmap, null, frame, bitmapPaint);
+            // 绘制遮掩层和扫描框边上的角
+            drawStaticLayer(canvas, frame);
         } else {
 
             if (cameraManager.getFramingRectOnScreen() == null) {
-                int[] location = new int[2];
+                int[] location = locationOnScreen;
                 getLocationOnScreen(location);
-                Log.e("vfv", "ViewFinderView location on screen ----" + location[0] + "--" + location[1]);
                 cameraManager.setFramingRectOnScreen(location[0] + frame.left, location[1] + frame.top, location[0] + frame.right, location[1] + frame.bottom);
             }
 
-            // 绘制遮掩层
-            drawCover(canvas, frame);
-
-            // 画扫描框边上的角
-            drawRectEdges(canvas, frame);
+            // 绘制遮掩层和扫描框边上的角
+            drawStaticLayer(canvas, frame);
 
             // 绘制扫描线
             drawScanningLine(canvas, frame);
 
             //画随机闪光点
-            List<ResultPoint> currentPossible = possibleResultPoints;
-            Collection<ResultPoint> currentLast = lastPossibleResultPoints;
-            if (currentPossible.isEmpty()) {
-                lastPossibleResultPoints = null;
-            } else {
-                possibleResultPoints = new ArrayList<ResultPoint>(5);
-                lastPossibleResultPoints = currentPossible;
-                paint.setAlpha(OPAQUE);
-                paint.setColor(resultPointColor);
-                for (ResultPoint point : currentPossible) {
-                    canvas.drawCircle(frame.left + point.getX(), frame.top
-                            + point.getY(), 6.0f, paint);
-                }
-            }
-            if (currentLast != null) {
-                paint.setAlpha(OPAQUE / 2);
-                paint.setColor(resultPointColor);
-                for (ResultPoint point : currentLast) {
-                    canvas.drawCircle(frame.left + point.getX(), frame.top
-                            + point.getY(), 3.0f, paint);
-                }
-            }
+            drawResultPoints(canvas, frame);
 
-            // 只刷新扫描框的内容，其他地方不刷新
-            postInvalidateDelayed(ANIMATION_DELAY, frame.left, frame.top,
+            // 只刷新扫描框的内容，其他地方不刷新；下一个垂直同步信号时重绘，4.1以下退化成延时刷新
+            ViewCompat.postInvalidateOnAnimation(this, frame.left, frame.top,
                     frame.right, frame.bottom);
 
         }
     }
 
+    /**
+     * Draws the mask and the corners. On a hardware accelerated canvas they
+     * are drawn directly: four rects and four small bitmaps only add a few
+     * operations to the display list, while a cached bitmap the size of the
+     * view would take about 10 MB on a 1080p screen and have to be uploaded
+     * as a texture again each time it changes. A hardware layer would not
+     * help either, the scan line invalidates the view every frame.
+     * <p/>
+     * In software rendering each draw rasterizes the mask into the window
+     * buffer, so it is drawn once into a cached layer, rendered again only
+     * when the size of the view or the framing rect changes. If the layer
+     * cannot be allocated, the mask is drawn directly until the size changes.
+     * <p/>
+     * 绘制遮掩层和四个角。硬件加速时直接画；软件绘制时从缓存图画，
+     * 尺寸或扫描框变化时先重新生成缓存图，内存不够时在尺寸变化前都直接画
+     *
+     * @param canvas
+     * @param frame  扫描框
+     */
+    private void drawStaticLayer(Canvas canvas, Rect frame) {
+        if (canvas.isHardwareAccelerated() || staticLayerFailed) {
+            staticLayer = null;
+            drawCover(canvas, frame);
+            drawRectEdges(canvas, frame);
+            return;
+        }
+        int width = canvas.getWidth();
+        int height = canvas.getHeight();
+        Bitmap layer = staticLayer;
+        if (layer == null || layer.getWidth() != width || layer.getHeight() != height) {
+            // 先放掉旧的缓存图再申请新的
+            staticLayer = null;
+            layer = null;
+            try {
+                layer = Bitmap.createBitmap(width, height, Bitmap.Config.ARGB_8888);
+            } catch (OutOfMemoryError e) {
+                // 内存不够时不缓存，直接画，尺寸变化之前不再申请
+                staticLayerFailed = true;
+                drawCover(canvas, frame);
+                drawRectEdges(canvas, frame);
+                return;
+            }
+            staticLayer = layer;
+            renderStaticLayer(layer, frame);
+        } else if (!staticLayerFrame.equals(frame)) {
+            layer.eraseColor(Color.TRANSPARENT);
+            renderStaticLayer(layer, frame);
+        }
+        canvas.drawBitmap(layer, 0, 0, null);
+    }
+
+    private void renderStaticLayer(Bitmap layer, Rect frame) {
+        Canvas layerCanvas = staticLayerCanvas;
+        layerCanvas.setBitmap(layer);
+        drawCover(layerCanvas, frame);
+        drawRectEdges(layerCanvas, frame);
+        layerCanvas.setBitmap(null);
+        staticLayerFrame.set(frame);
+    }
+
     /**
      * 绘制扫描线
      *
@@ -200,31 +288,42 @@ public final class ViewfinderView extends View {
      */
     private void drawScanningLine(Canvas canvas, Rect frame) {
 
-        // 初始化中间线滑动的最上边和最下边
-        if (isFirst) {
-            isFirst = false;
-            slideTop = frame.top;
-            slideBottom = frame.bottom;
-        }
-
-        // 绘制中间的线,每次刷新界面，中间的线往下移动SPEEN_DISTANCE
-        slideTop += SPEEN_DISTANCE;
-        if (slideTop >= slideBottom) {
-            slideTop = frame.top;
-        }
+        // 绘制中间的线，每次刷新界面，中间的线按经过的时间往下移动
+        int slideTop = scanLine.nextPosition(frame.top, frame.bottom, getDrawingTime());
 
         // 从图片资源画扫描线
-        Rect lineRect = new Rect();
         lineRect.left = frame.left + MIDDLE_LINE_PADDING;
         lineRect.right = frame.right - MIDDLE_LINE_PADDING;
         lineRect.top = slideTop;
         lineRect.bottom = (slideTop + MIDDLE_LINE_WIDTH);
-        canvas.drawBitmap(((BitmapDrawable) (BitmapDrawable) getResources()
-                        .getDrawable(R.drawable.scan_laser)).getBitmap(), null,
-                lineRect, paint);
+        canvas.drawBitmap(laserBitmap, null, lineRect, bitmapPaint);
 
     }
 
+    /**
+     * 画解码线程找到的可能结果点，本帧新找到的画成大点，上一帧的画成小点
+     *
+     * @param canvas
+     * @param frame  扫描框
+     */
+    private void drawResultPoints(Canvas canvas, Rect frame) {
+        float[] points = currentPoints;
+        int count = possibleResultPoints.drainTo(points);
+        for (int i = 0; i < count; i++) {
+            canvas.drawCircle(frame.left + points[i * 2], frame.top + points[i * 2 + 1],
+                    6.0f, resultPointPaint);
+        }
+        float[] last = lastPoints;
+        for (int i = 0; i < lastPointCount; i++) {
+            canvas.drawCircle(frame.left + last[i * 2], frame.top + last[i * 2 + 1],
+                    3.0f, lastResultPointPaint);
+        }
+        // 两个数组轮换使用，本帧的点下一帧画成小点
+        currentPoints = last;
+        lastPoints = points;
+        lastPointCount = count;
+    }
+
     /**
      * 绘制遮掩层
      *
@@ -239,7 +338,7 @@ public final class ViewfinderView extends View {
 
         // Draw the exterior (i.e. outside the framing rect) darkened
         //		paint.setColor(resultBitmap != null ? resultColor : maskColor);
-        paint.setColor(resultColor);
+        Paint paint = maskPaint;
 
         // 画出扫描框外面的阴影部分，共四个部分，扫描框的上面到屏幕上面，扫描框的下面到屏幕下面
         // 扫描框的左边面到屏幕左边，扫描框的右边到屏幕右边
@@ -257,52 +356,25 @@ public final class ViewfinderView extends View {
      * @param frame
      */
     private void drawRectEdges(Canvas canvas, Rect frame) {
+        Paint paint = bitmapPaint;
 
-        paint.setColor(Color.WHITE);
-        paint.setAlpha(OPAQUE);
-
-        Resources resources = getResources();
-        /**
-         * 这些资源可以用缓存进行管理，不需要每次刷新都新建
-         */
-        Bitmap bitmapCornerTopleft = BitmapFactory.decodeResource(resources,
-                R.drawable.scan_corner_top_left);
-        Bitmap bitmapCornerTopright = BitmapFactory.decodeResource(resources,
-                R.drawable.scan_corner_top_right);
-        Bitmap bitmapCornerBottomLeft = BitmapFactory.decodeResource(resources,
-                R.drawable.scan_corner_bottom_left);
-        Bitmap bitmapCornerBottomRight = BitmapFactory.decodeResource(
-                resources, R.drawable.scan_corner_bottom_right);
-
-        canvas.drawBitmap(bitmapCornerTopleft, frame.left + CORNER_PADDING,
+        canvas.drawBitmap(cornerTopLeft, frame.left + CORNER_PADDING,
                 frame.top + CORNER_PADDING, paint);
-        canvas.drawBitmap(bitmapCornerTopright, frame.right - CORNER_PADDING
-                        - bitmapCornerTopright.getWidth(), frame.top + CORNER_PADDING,
+        canvas.drawBitmap(cornerTopRight, frame.right - CORNER_PADDING
+                        - cornerTopRight.getWidth(), frame.top + CORNER_PADDING,
                 paint);
-        canvas.drawBitmap(bitmapCornerBottomLeft, frame.left + CORNER_PADDING,
-                2 + (frame.bottom - CORNER_PADDING - bitmapCornerBottomLeft
+        canvas.drawBitmap(cornerBottomLeft, frame.left + CORNER_PADDING,
+                2 + (frame.bottom - CORNER_PADDING - cornerBottomLeft
                         .getHeight()), paint);
-        canvas.drawBitmap(bitmapCornerBottomRight, frame.right - CORNER_PADDING
-                - bitmapCornerBottomRight.getWidth(), 2 + (frame.bottom
-                - CORNER_PADDING - bitmapCornerBottomRight.getHeight()), paint);
-
-        bitmapCornerTopleft.recycle();
-        bitmapCornerTopleft = null;
-        bitmapCornerTopright.recycle();
-        bitmapCornerTopright = null;
-        bitmapCornerBottomLeft.recycle();
-        bitmapCornerBottomLeft = null;
-        bitmapCornerBottomRight.recycle();
-        bitmapCornerBottomRight = null;
-
+        canvas.drawBitmap(cornerBottomRight, frame.right - CORNER_PADDING
+                - cornerBottomRight.getWidth(), 2 + (frame.bottom
+                - CORNER_PADDING - cornerBottomRight.getHeight()), paint);
     }
 
     public void drawViewfinder() {
-        Bitmap resultBitmap = this.resultBitmap;
+        // 结果图由解码线程复用，这里只放弃引用，不能recycle
         this.resultBitmap = null;
-        if (resultBitmap != null) {
-            resultBitmap.recycle();
-        }
+        scanLine.reset();
         invalidate();
     }
 
@@ -318,16 +390,14 @@ public final class ViewfinderView extends View {
         invalidate();
     }
 
+    /**
+     * Called from the decode threads. Never blocks: the point is handed over
+     * through a lock-free ring and dropped if the ring is full.
+     *
+     * @param point A possible result point in framing rect coordinates.
+     */
     public void addPossibleResultPoint(ResultPoint point) {
-        List<ResultPoint> points = possibleResultPoints;
-        synchronized (points) {
-            points.add(point);
-            int size = points.size();
-            if (size > MAX_RESULT_POINTS) {
-                // trim it
-                points.subList(0, size - MAX_RESULT_POINTS / 2).clear();
-            }
-        }
+        possibleResultPoints.add(point.getX(), point.getY());
     }
 
     /**
@@ -0,0 +1,60 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+public class CameraConfigCacheTest {
+
+    private static final String FINGERPRINT = "brand/product/device:7.0/NRD90M/123:user/release-keys";
+
+    @Test
+    public void entrySurvivesEncoding() {
+        CameraConfigCache.Entry entry = new CameraConfigCache.Entry(1280, 720,
+                "auto", "torch", "off", "negative");
+        CameraConfigCache.Entry decoded = CameraConfigCache.Entry.decode(
+                entry.encode(FINGERPRINT), FINGERPRINT);
+        assertEquals(1280, decoded.previewWidth);
+        assertEquals(720, decoded.previewHeight);
+        assertEquals("auto", decoded.focusMode);
+        assertEquals("torch", decoded.torchOnMode);
+        assertEquals("off", decoded.torchOffMode);
+        assertEquals("negative", decoded.negativeEffect);
+    }
+
+    @Test
+    public void unsupportedModesStayNull() {
+        CameraConfigCache.Entry entry = new CameraConfigCache.Entry(640, 480,
+                null, null, null, null);
+        CameraConfigCache.Entry decoded = CameraConfigCache.Entry.decode(
+                entry.encode(FINGERPRINT), FINGERPRINT);
+        assertEquals(640, decoded.previewWidth);
+        assertNull(decoded.focusMode);
+        assertNull(decoded.torchOnMode);
+        assertNull(decoded.torchOffMode);
+        assertNull(decoded.negativeEffect);
+    }
+
+    @Test
+    public void entryOfAnotherSystemBuildIsIgnored() {
+        String value = new CameraConfigCache.Entry(1280, 720, "auto", null, null, null)
+                .encode(FINGERPRINT);
+        assertNull(CameraConfigCache.Entry.decode(value, FINGERPRINT + "-update"));
+    }
+
+    @Test
+    public void malformedValuesAreIgnored() {
+        assertNull(CameraConfigCache.Entry.decode(null, FINGERPRINT));
+        assertNull(CameraConfigCache.Entry.decode("", FINGERPRINT));
+        assertNull(CameraConfigCache.Entry.decode("1;" + FINGERPRINT + ";1280;720", FINGERPRINT));
+        assertNull(CameraConfigCache.Entry.decode(
+                "1;" + FINGERPRINT + ";wide;720;auto;;;", FINGERPRINT));
+        assertNull(CameraConfigCache.Entry.decode(
+                "1;" + FINGERPRINT + ";0;720;auto;;;", FINGERPRINT));
+        assertNull(CameraConfigCache.Entry.decode(
+                (CameraConfigCache.VERSION + 1) + ";" + FINGERPRINT + ";1280;720;auto;;;",
+                FINGERPRINT));
+    }
+
+}
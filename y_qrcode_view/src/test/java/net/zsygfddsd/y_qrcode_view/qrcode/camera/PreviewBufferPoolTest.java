@@ -0,0 +1,140 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Drives {@link PreviewBufferPool} with a fake camera that fills the queued
+ * callback buffers with recorded frames, the way
+ * {@code Camera.setPreviewCallbackWithBuffer} does.
+ */
+public class PreviewBufferPoolTest {
+
+    private static final int WIDTH = 64;
+
+    private static final int HEIGHT = 48;
+
+    private static final int FRAME_SIZE = WIDTH * HEIGHT * 3 / 2;
+
+    private FakeCamera camera;
+
+    private PreviewBufferPool pool;
+
+    private List<byte[]> recordedFrames;
+
+    @Before
+    public void setUp() {
+        camera = new FakeCamera();
+        pool = new PreviewBufferPool(3, camera);
+        recordedFrames = new ArrayList<byte[]>();
+        Random random = new Random(7);
+        for (int i = 0; i < 10; i++) {
+            byte[] frame = new byte[FRAME_SIZE];
+            random.nextBytes(frame);
+            recordedFrames.add(frame);
+        }
+    }
+
+    @Test
+    public void longSessionReusesTheSameBuffers() {
+        pool.start(FRAME_SIZE);
+        assertEquals(3, camera.queue.size());
+
+        Set<byte[]> seen = Collections.newSetFromMap(new IdentityHashMap<byte[], Boolean>());
+        for (int i = 0; i < 1000; i++) {
+            byte[] recorded = recordedFrames.get(i % recordedFrames.size());
+            byte[] frame = camera.pushFrame(recorded);
+            assertArrayEquals(recorded, frame);
+            seen.add(frame);
+            // 解码线程处理完毕后归还
+            assertTrue(pool.release(frame));
+        }
+        assertEquals(3, seen.size());
+        assertEquals(3, pool.getQueuedCount());
+        assertEquals(0, camera.droppedFrames);
+    }
+
+    @Test
+    public void cameraDropsFramesWhileDecoderHoldsEveryBuffer() {
+        pool.start(FRAME_SIZE);
+        List<byte[]> held = new ArrayList<byte[]>();
+        for (int i = 0; i < 5; i++) {
+            byte[] frame = camera.pushFrame(recordedFrames.get(i));
+            if (frame != null) {
+                held.add(frame);
+            }
+        }
+        assertEquals(3, held.size());
+        assertEquals(2, camera.droppedFrames);
+        assertEquals(0, pool.getQueuedCount());
+
+        pool.release(held.get(0));
+        assertArrayEquals(recordedFrames.get(5), camera.pushFrame(recordedFrames.get(5)));
+    }
+
+    @Test
+    public void foreignAndDoubleReleasesAreIgnored() {
+        pool.start(FRAME_SIZE);
+        byte[] frame = camera.pushFrame(recordedFrames.get(0));
+        assertTrue(pool.release(frame));
+        assertFalse(pool.release(frame));
+        assertFalse(pool.release(new byte[FRAME_SIZE]));
+        assertFalse(pool.release(null));
+        assertEquals(3, camera.queue.size());
+    }
+
+    @Test
+    public void buffersReleasedAfterClearDoNotGoBackToTheCamera() {
+        pool.start(FRAME_SIZE);
+        byte[] frame = camera.pushFrame(recordedFrames.get(0));
+        pool.clear();
+        camera.queue.clear();
+        assertFalse(pool.release(frame));
+        assertTrue(camera.queue.isEmpty());
+
+        pool.start(FRAME_SIZE);
+        assertEquals(3, camera.queue.size());
+    }
+
+    /**
+     * 模拟相机：只把帧数据写进已经交给它的缓冲区，没有可用缓冲区时丢帧
+     */
+    private final class FakeCamera implements PreviewBufferPool.CallbackBufferQueue {
+
+        final Deque<byte[]> queue = new ArrayDeque<byte[]>();
+
+        int droppedFrames;
+
+        @Override
+        public void addCallbackBuffer(byte[] buffer) {
+            queue.addLast(buffer);
+        }
+
+        byte[] pushFrame(byte[] recorded) {
+            byte[] buffer = queue.pollFirst();
+            if (buffer == null) {
+                droppedFrames++;
+                return null;
+            }
+            System.arraycopy(recorded, 0, buffer, 0, recorded.length);
+            assertTrue(pool.onFrameDelivered(buffer));
+            return buffer;
+        }
+
+    }
+
+}
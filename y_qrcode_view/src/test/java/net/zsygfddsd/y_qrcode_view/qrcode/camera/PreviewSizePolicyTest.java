@@ -0,0 +1,64 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.camera;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+public class PreviewSizePolicyTest {
+
+    /**
+     * 16:9的预览尺寸，从大到小
+     */
+    private static List<int[]> sizes() {
+        List<int[]> sizes = new ArrayList<int[]>();
+        sizes.add(new int[]{3840, 2160});
+        sizes.add(new int[]{1920, 1080});
+        sizes.add(new int[]{1280, 720});
+        sizes.add(new int[]{960, 540});
+        sizes.add(new int[]{640, 360});
+        return sizes;
+    }
+
+    @Test
+    public void largestPolicyTakesTheFirstSize() {
+        assertEquals(0, PreviewSizePolicy.largest().select(sizes(), 0.5f));
+    }
+
+    @Test
+    public void budgetPolicyTakesTheSmallestSizeResolvingTheCode() {
+        // 57个模块，每个3个像素，扫描框占短边一半：短边至少342
+        assertEquals(4, PreviewSizePolicy.decodeBudget().select(sizes(), 0.5f));
+        // 每个模块5个像素时短边至少570
+        assertEquals(2, PreviewSizePolicy.decodeBudget(57, 5f, 0L).select(sizes(), 0.5f));
+        // 177个模块（版本40）每个4个像素，只有4K够用
+        assertEquals(0, PreviewSizePolicy.decodeBudget(177, 4f, 0L).select(sizes(), 0.5f));
+    }
+
+    @Test
+    public void noSizeLargeEnoughFallsBackToTheLargest() {
+        assertEquals(0, PreviewSizePolicy.decodeBudget(177, 10f, 0L).select(sizes(), 0.5f));
+    }
+
+    @Test
+    public void findSmallerStepsDownUntilTwoPixelsPerModule() {
+        PreviewSizePolicy policy = PreviewSizePolicy.decodeBudget(57, 5f, 100L);
+        assertEquals(2, policy.findSmaller(sizes(), 1920, 1080, 0.5f));
+        assertEquals(3, policy.findSmaller(sizes(), 1280, 720, 0.5f));
+        // 每个模块至少2个像素时短边至少228，640x360还可以用
+        assertEquals(4, policy.findSmaller(sizes(), 960, 540, 0.5f));
+        assertEquals(-1, policy.findSmaller(sizes(), 640, 360, 0.5f));
+
+        // 版本40的码需要短边至少708，720以下不再降
+        PreviewSizePolicy dense = PreviewSizePolicy.decodeBudget(177, 4f, 100L);
+        assertEquals(-1, dense.findSmaller(sizes(), 1280, 720, 0.5f));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void modulePixelsBelowTheMinimumAreRejected() {
+        PreviewSizePolicy.decodeBudget(57, 1.5f, 0L);
+    }
+
+}
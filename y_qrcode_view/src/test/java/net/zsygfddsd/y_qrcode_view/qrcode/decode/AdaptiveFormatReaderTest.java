@@ -0,0 +1,148 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.datamatrix.DataMatrixWriter;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class AdaptiveFormatReaderTest {
+
+    @Test
+    public void onlyConfiguredFormatsGetAReader() throws Exception {
+        AdaptiveFormatReader reader = new AdaptiveFormatReader(
+                hints(EnumSet.of(BarcodeFormat.QR_CODE)));
+        BinaryBitmap code128 = image(new Code128Writer().encode("Y_QRCODE_VIEW",
+                BarcodeFormat.CODE_128, 300, 80));
+        for (int i = 0; i < 10; i++) {
+            assertNotFound(reader, code128);
+            assertEquals(Arrays.asList("QR"), reader.getLastTryOrder());
+        }
+    }
+
+    @Test
+    public void qrFirstThenColdReadersTakeTurns() throws Exception {
+        AdaptiveFormatReader reader = new AdaptiveFormatReader(null);
+        BinaryBitmap blank = image(new BitMatrix(200, 200));
+        String[] cold = {"1D", "DATA_MATRIX", "AZTEC", "PDF_417", "MAXICODE"};
+        for (int round = 0; round < 2; round++) {
+            for (String name : cold) {
+                assertNotFound(reader, blank);
+                assertEquals(Arrays.asList("QR", name), reader.getLastTryOrder());
+            }
+        }
+    }
+
+    @Test
+    public void recentHitsAreTriedEveryFrame() throws Exception {
+        AdaptiveFormatReader reader = new AdaptiveFormatReader(null);
+        BinaryBitmap qr = image(new QRCodeWriter().encode("qr", BarcodeFormat.QR_CODE, 200, 200));
+        BinaryBitmap code128 = image(new Code128Writer().encode("Y_QRCODE_VIEW",
+                BarcodeFormat.CODE_128, 300, 80));
+        BinaryBitmap blank = image(new BitMatrix(200, 200));
+
+        // 第一帧轮到1D，命中后1D变成热门解码器
+        assertEquals(BarcodeFormat.CODE_128, decode(reader, code128).getBarcodeFormat());
+        assertNotFound(reader, blank);
+        assertEquals(Arrays.asList("QR", "1D", "DATA_MATRIX"), reader.getLastTryOrder());
+        assertNotFound(reader, blank);
+        assertEquals(Arrays.asList("QR", "1D", "AZTEC"), reader.getLastTryOrder());
+
+        // 之后一直是二维码，1D的得分慢慢衰减，回到轮流尝试
+        for (int i = 0; i < 20; i++) {
+            assertEquals(BarcodeFormat.QR_CODE, decode(reader, qr).getBarcodeFormat());
+        }
+        assertNotFound(reader, blank);
+        assertEquals(2, reader.getLastTryOrder().size());
+    }
+
+    @Test
+    public void coldFormatIsFoundWithinOneRotation() throws Exception {
+        Map<DecodeHintType, Object> hints = hints(EnumSet.of(BarcodeFormat.QR_CODE,
+                BarcodeFormat.CODE_128, BarcodeFormat.DATA_MATRIX));
+        AdaptiveFormatReader reader = new AdaptiveFormatReader(hints);
+        // DataMatrixWriter每个模块只画一个像素，放大后再识别
+        BinaryBitmap dataMatrix = image(new DataMatrixWriter().encode("data matrix",
+                BarcodeFormat.DATA_MATRIX, 0, 0), 8);
+        Result result = null;
+        for (int frame = 0; frame < 2 && result == null; frame++) {
+            try {
+                result = reader.decode(dataMatrix);
+            } catch (NotFoundException e) {
+                // not its turn yet
+            } finally {
+                reader.reset();
+            }
+        }
+        assertNotNull(result);
+        assertEquals(BarcodeFormat.DATA_MATRIX, result.getBarcodeFormat());
+        assertTrue(reader.getLastTryOrder().contains("DATA_MATRIX"));
+    }
+
+    private static Map<DecodeHintType, Object> hints(EnumSet<BarcodeFormat> formats) {
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, formats);
+        return hints;
+    }
+
+    private static Result decode(AdaptiveFormatReader reader, BinaryBitmap image)
+            throws NotFoundException {
+        try {
+            return reader.decode(image);
+        } finally {
+            reader.reset();
+        }
+    }
+
+    private static void assertNotFound(AdaptiveFormatReader reader, BinaryBitmap image) {
+        try {
+            decode(reader, image);
+            fail("Expected no result");
+        } catch (NotFoundException e) {
+            // expected
+        }
+    }
+
+    /**
+     * 把编码出的矩阵画成白底黑码的图像，四周留白
+     */
+    private static BinaryBitmap image(BitMatrix code) {
+        return image(code, 1);
+    }
+
+    private static BinaryBitmap image(BitMatrix code, int scale) {
+        int margin = 20;
+        int width = code.getWidth() * scale + 2 * margin;
+        int height = code.getHeight() * scale + 2 * margin;
+        int[] pixels = new int[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                int codeX = x < margin ? -1 : (x - margin) / scale;
+                int codeY = y < margin ? -1 : (y - margin) / scale;
+                boolean black = codeX >= 0 && codeX < code.getWidth()
+                        && codeY >= 0 && codeY < code.getHeight() && code.get(codeX, codeY);
+                pixels[y * width + x] = black ? 0xFF000000 : 0xFFFFFFFF;
+            }
+        }
+        return new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+    }
+
+}
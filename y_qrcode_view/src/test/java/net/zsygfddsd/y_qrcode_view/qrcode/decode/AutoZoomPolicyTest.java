@@ -0,0 +1,76 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class AutoZoomPolicyTest {
+
+    private static final float DELTA = 1e-4f;
+
+    @Test
+    public void zoomsInAfterSeveralFramesWithASmallCode() {
+        AutoZoomPolicy policy = new AutoZoomPolicy();
+        // 定位点范围60，扫描框600，码只占1/10
+        for (int i = 1; i < AutoZoomPolicy.SMALL_FRAMES_BEFORE_ZOOM; i++) {
+            assertEquals(0f, policy.onFrameFailed(60f, 600, 1f, 10000L + i), DELTA);
+        }
+        // 要放大4倍才能达到目标大小，一次最多放大2倍
+        assertEquals(2f, policy.onFrameFailed(60f, 600, 1f, 10010L), DELTA);
+    }
+
+    @Test
+    public void stepIsSizedToReachTheTarget() {
+        AutoZoomPolicy policy = new AutoZoomPolicy();
+        float ratio = 0f;
+        for (int i = 0; i < AutoZoomPolicy.SMALL_FRAMES_BEFORE_ZOOM; i++) {
+            ratio = policy.onFrameFailed(132f, 600, 1.5f, 10000L + i);
+        }
+        // 占0.22，放大0.4 / 0.22倍正好达到目标大小
+        assertEquals(1.5f * 0.4f / 0.22f, ratio, DELTA);
+
+        // 占0.35，已经够大，不放大
+        policy = new AutoZoomPolicy();
+        for (int i = 0; i < AutoZoomPolicy.SMALL_FRAMES_BEFORE_ZOOM; i++) {
+            ratio = policy.onFrameFailed(140f, 400, 1f, 10000L + i);
+        }
+        assertEquals(0f, ratio, DELTA);
+    }
+
+    @Test
+    public void largeCodesAndFramesWithoutCandidatesResetTheCount() {
+        AutoZoomPolicy policy = new AutoZoomPolicy();
+        policy.onFrameFailed(60f, 600, 1f, 10000L);
+        policy.onFrameFailed(60f, 600, 1f, 10001L);
+        policy.onFrameFailed(-1f, 600, 1f, 10002L);
+        assertEquals(0f, policy.onFrameFailed(60f, 600, 1f, 10003L), DELTA);
+        policy.onFrameFailed(60f, 600, 1f, 10004L);
+        policy.onFrameFailed(300f, 600, 1f, 10005L);
+        assertEquals(0f, policy.onFrameFailed(60f, 600, 1f, 10006L), DELTA);
+    }
+
+    @Test
+    public void waitsForTheCooldownAndStopsAtTheMaximum() {
+        AutoZoomPolicy policy = new AutoZoomPolicy();
+        long now = 10000L;
+        float ratio = 0f;
+        for (int i = 0; i < AutoZoomPolicy.SMALL_FRAMES_BEFORE_ZOOM; i++) {
+            ratio = policy.onFrameFailed(60f, 600, 3f, now++);
+        }
+        assertEquals(AutoZoomPolicy.MAX_RATIO, ratio, DELTA);
+
+        for (int i = 0; i < AutoZoomPolicy.SMALL_FRAMES_BEFORE_ZOOM; i++) {
+            ratio = policy.onFrameFailed(60f, 600, 1f, now++);
+        }
+        assertEquals(0f, ratio, DELTA);
+
+        now += AutoZoomPolicy.COOLDOWN_MS;
+        assertEquals(2f, policy.onFrameFailed(60f, 600, 1f, now), DELTA);
+        for (int i = 0; i < AutoZoomPolicy.SMALL_FRAMES_BEFORE_ZOOM; i++) {
+            ratio = policy.onFrameFailed(60f, 600, AutoZoomPolicy.MAX_RATIO,
+                    now + AutoZoomPolicy.COOLDOWN_MS + i);
+        }
+        assertEquals(0f, ratio, DELTA);
+    }
+
+}
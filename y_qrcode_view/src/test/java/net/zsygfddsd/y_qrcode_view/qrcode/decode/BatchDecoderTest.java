@@ -0,0 +1,203 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class BatchDecoderTest {
+
+    /**
+     * Items are the text to encode; "missing" cannot be read, "blank" has no
+     * code, and a text starting with "slow" takes a while to load.
+     */
+    private static final BatchDecoder.SourceLoader<String> LOADER = new BatchDecoder.SourceLoader<String>() {
+        @Override
+        public LuminanceSource load(String item) throws IOException {
+            if (item.equals("missing")) {
+                throw new IOException("missing");
+            }
+            if (item.startsWith("slow")) {
+                try {
+                    Thread.sleep(30L);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+            }
+            return item.equals("blank") ? blank(200) : encode(item);
+        }
+    };
+
+    private final BatchDecoder<String> decoder = new BatchDecoder<String>(LOADER, 4);
+
+    @After
+    public void shutdown() {
+        decoder.shutdown();
+    }
+
+    @Test
+    public void deliversInSubmissionOrder() throws InterruptedException {
+        List<String> items = new ArrayList<String>();
+        for (int i = 0; i < 24; i++) {
+            items.add(i % 3 == 0 ? "slow-" + i : "code-" + i);
+        }
+        RecordingListener listener = new RecordingListener();
+        BatchReport report = decoder.decode(items, true, listener).await(30, TimeUnit.SECONDS);
+
+        assertNotNull(report);
+        assertEquals(items.size(), listener.results.size());
+        for (int i = 0; i < items.size(); i++) {
+            BatchItemResult<String> result = listener.results.get(i);
+            assertEquals(i, result.getIndex());
+            assertEquals(items.get(i), result.getResult().getText());
+        }
+        assertEquals(items.size(), report.getProcessedCount());
+        assertEquals(items.size(), report.getDecodedCount());
+        assertEquals(items.size(), report.getItemLatency().getCount());
+        assertFalse(report.isCancelled());
+        assertTrue(report.getItemsPerSecond() > 0f);
+        assertTrue(listener.finished == report);
+    }
+
+    @Test
+    public void deliversEveryItemAsCompleted() throws InterruptedException {
+        List<String> items = Arrays.asList("slow-a", "b", "c", "slow-d", "e", "f", "g");
+        RecordingListener listener = new RecordingListener();
+        BatchReport report = decoder.decode(items, false, listener).await(30, TimeUnit.SECONDS);
+
+        assertNotNull(report);
+        List<String> texts = new ArrayList<String>();
+        for (BatchItemResult<String> result : listener.results) {
+            assertEquals(items.get(result.getIndex()), result.getItem());
+            texts.add(result.getResult().getText());
+        }
+        Collections.sort(texts);
+        List<String> expected = new ArrayList<String>(items);
+        Collections.sort(expected);
+        assertEquals(expected, texts);
+    }
+
+    @Test
+    public void reportsUnreadableItemsAndItemsWithoutCode() throws InterruptedException {
+        List<String> items = Arrays.asList("first", "missing", "blank", "last");
+        RecordingListener listener = new RecordingListener();
+        BatchReport report = decoder.decode(items, true, listener).await(30, TimeUnit.SECONDS);
+
+        assertTrue(listener.results.get(0).isDecoded());
+        BatchItemResult<String> missing = listener.results.get(1);
+        assertFalse(missing.isDecoded());
+        assertTrue(missing.getError() instanceof IOException);
+        BatchItemResult<String> blank = listener.results.get(2);
+        assertFalse(blank.isDecoded());
+        assertNull(blank.getError());
+        assertTrue(listener.results.get(3).isDecoded());
+        assertEquals(2, report.getDecodedCount());
+        assertEquals(1, report.getErrorCount());
+        assertEquals(1, report.getNotFoundCount());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void cancelStopsDelivery() throws InterruptedException {
+        List<String> items = new ArrayList<String>();
+        for (int i = 0; i < 200; i++) {
+            items.add("slow-" + i);
+        }
+        final BatchDecoder.Batch<String>[] batch = new BatchDecoder.Batch[1];
+        RecordingListener listener = new RecordingListener() {
+            @Override
+            public synchronized void onItemDecoded(BatchItemResult<String> result) {
+                super.onItemDecoded(result);
+                if (results.size() == 3) {
+                    batch[0].cancel();
+                }
+            }
+        };
+        BatchDecoder<String> serial = new BatchDecoder<String>(LOADER, 1);
+        try {
+            synchronized (listener) {
+                batch[0] = serial.decode(items, true, listener);
+            }
+            BatchReport report = batch[0].await(30, TimeUnit.SECONDS);
+            assertNotNull(report);
+            assertTrue(report.isCancelled());
+            assertEquals(3, report.getProcessedCount());
+            assertEquals(3, listener.results.size());
+            assertTrue(batch[0].isDone());
+        } finally {
+            serial.shutdown();
+        }
+    }
+
+    @Test
+    public void emptyBatchFinishesAtOnce() throws InterruptedException {
+        RecordingListener listener = new RecordingListener();
+        BatchDecoder.Batch<String> batch = decoder.decode(Collections.<String>emptyList(), true, listener);
+        assertTrue(batch.isDone());
+        assertEquals(0, batch.await(0, TimeUnit.SECONDS).getProcessedCount());
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void rejectsBatchesAfterShutdown() {
+        decoder.shutdown();
+        decoder.decode(Arrays.asList("a"), true, new RecordingListener());
+    }
+
+    private static class RecordingListener implements BatchDecoder.Listener<String> {
+
+        final List<BatchItemResult<String>> results = new ArrayList<BatchItemResult<String>>();
+
+        volatile BatchReport finished;
+
+        @Override
+        public synchronized void onItemDecoded(BatchItemResult<String> result) {
+            results.add(result);
+        }
+
+        @Override
+        public void onBatchFinished(BatchReport report) {
+            finished = report;
+        }
+
+    }
+
+    private static LuminanceSource encode(String text) {
+        try {
+            BitMatrix matrix = new QRCodeWriter().encode(text, BarcodeFormat.QR_CODE, 200, 200);
+            int[] pixels = new int[matrix.getWidth() * matrix.getHeight()];
+            for (int y = 0; y < matrix.getHeight(); y++) {
+                for (int x = 0; x < matrix.getWidth(); x++) {
+                    pixels[y * matrix.getWidth() + x] = matrix.get(x, y) ? 0xFF000000 : 0xFFFFFFFF;
+                }
+            }
+            return new RGBLuminanceSource(matrix.getWidth(), matrix.getHeight(), pixels);
+        } catch (WriterException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static LuminanceSource blank(int size) {
+        int[] pixels = new int[size * size];
+        Arrays.fill(pixels, 0xFFFFFFFF);
+        return new RGBLuminanceSource(size, size, pixels);
+    }
+
+}
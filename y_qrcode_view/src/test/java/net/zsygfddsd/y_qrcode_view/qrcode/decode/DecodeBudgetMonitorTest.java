@@ -0,0 +1,47 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecodeBudgetMonitorTest {
+
+    @Test
+    public void signalsOnlyAfterEnoughFramesOverBudget() {
+        DecodeBudgetMonitor monitor = new DecodeBudgetMonitor(100L);
+        long now = 0L;
+        for (int i = 1; i < DecodeBudgetMonitor.MIN_FRAMES; i++) {
+            assertFalse(monitor.onFrameDecoded(200L, now += 200L));
+        }
+        assertTrue(monitor.onFrameDecoded(200L, now += 200L));
+    }
+
+    @Test
+    public void decodesWithinBudgetNeverSignal() {
+        DecodeBudgetMonitor monitor = new DecodeBudgetMonitor(100L);
+        long now = 0L;
+        for (int i = 0; i < 10 * DecodeBudgetMonitor.MIN_FRAMES; i++) {
+            assertFalse(monitor.onFrameDecoded(i % 2 == 0 ? 60L : 130L, now += 100L));
+        }
+    }
+
+    @Test
+    public void waitsForTheCooldownAfterASignal() {
+        DecodeBudgetMonitor monitor = new DecodeBudgetMonitor(100L);
+        long now = 0L;
+        int frames = 0;
+        while (!monitor.onFrameDecoded(200L, now += 10L)) {
+            frames++;
+        }
+        assertEquals(DecodeBudgetMonitor.MIN_FRAMES - 1, frames);
+        long signalled = now;
+        // 重新统计，冷却时间内不再发信号
+        while (now - signalled < DecodeBudgetMonitor.COOLDOWN_MS - 10L) {
+            assertFalse(monitor.onFrameDecoded(200L, now += 10L));
+        }
+        assertTrue(monitor.onFrameDecoded(200L, now + 10L));
+    }
+
+}
@@ -0,0 +1,71 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class FrameBackpressureTest {
+
+    @Test
+    public void framesOlderThanTwoIntervalsAreStale() {
+        FrameBackpressure backpressure = new FrameBackpressure(2);
+        backpressure.setFrameInterval(33L);
+        assertFalse(backpressure.dropIfStale(0L));
+        assertFalse(backpressure.dropIfStale(66L));
+        assertTrue(backpressure.dropIfStale(67L));
+        assertEquals(1, backpressure.getStaleFrameCount());
+
+        // 帧率未知时按30帧每秒
+        backpressure.setFrameInterval(0L);
+        assertTrue(backpressure.dropIfStale(2 * FrameBackpressure.DEFAULT_FRAME_INTERVAL_MS + 1));
+        backpressure.onFrameBusy();
+        assertEquals(2, backpressure.getStaleFrameCount());
+        assertEquals(1, backpressure.getBusyFrameCount());
+    }
+
+    @Test
+    public void requestsAreNotDelayedWhileDecodingKeepsUp() {
+        FrameBackpressure backpressure = new FrameBackpressure(2);
+        backpressure.setFrameInterval(33L);
+        for (int i = 0; i < 20; i++) {
+            backpressure.onFrameDecoded(20L);
+        }
+        backpressure.onFrameRequested(1000L);
+        assertEquals(0, backpressure.getRequestSpacing());
+        assertEquals(0, backpressure.getRequestDelay(1000L));
+    }
+
+    @Test
+    public void slowDecodingSpacesRequestsOverTheWorkers() {
+        FrameBackpressure backpressure = new FrameBackpressure(2);
+        backpressure.setFrameInterval(33L);
+        for (int i = 0; i < 50; i++) {
+            backpressure.onFrameDecoded(120L);
+        }
+        assertEquals(120f, backpressure.getAverageDecodeMs(), 1f);
+        assertEquals(60, backpressure.getRequestSpacing());
+
+        // 第一次请求不等待
+        assertEquals(0, backpressure.getRequestDelay(1000L));
+        backpressure.onFrameRequested(1000L);
+        assertEquals(60, backpressure.getRequestDelay(1000L));
+        assertEquals(20, backpressure.getRequestDelay(1040L));
+        assertEquals(0, backpressure.getRequestDelay(1060L));
+
+        // 重新开始扫描时马上要帧
+        backpressure.reset();
+        assertEquals(0, backpressure.getRequestDelay(1001L));
+    }
+
+    @Test
+    public void decodeTimeIsSmoothed() {
+        FrameBackpressure backpressure = new FrameBackpressure(1);
+        backpressure.onFrameDecoded(100L);
+        assertEquals(100f, backpressure.getAverageDecodeMs(), 0.01f);
+        backpressure.onFrameDecoded(0L);
+        assertEquals(80f, backpressure.getAverageDecodeMs(), 0.01f);
+    }
+
+}
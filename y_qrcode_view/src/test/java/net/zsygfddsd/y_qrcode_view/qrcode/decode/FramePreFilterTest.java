@@ -0,0 +1,218 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.ReaderException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Runs {@link FramePreFilter} on synthetic preview frames: frames with a code
+ * must pass under every lighting condition, and so must every frame the reader
+ * can decode, however small or blurred the code; blank frames and frames far
+ * out of focus must not.
+ */
+public class FramePreFilterTest {
+
+    private static final int[][] PREVIEW_SIZES = {{1280, 720}, {1920, 1080}, {640, 480}};
+
+    /**
+     * 光照条件：亮度增益、偏移和噪声
+     */
+    private static final int[][] LIGHTING = {
+            {100, 0, 0},
+            {100, 0, 4},
+            {30, 10, 4},
+            {60, 90, 12},
+            {120, -20, 25},
+    };
+
+    @Test
+    public void acceptsFramesWithACode() throws Exception {
+        FramePreFilter filter = new FramePreFilter();
+        for (int[] size : PREVIEW_SIZES) {
+            for (int[] lighting : LIGHTING) {
+                byte[] frame = RotatedPlanarYUVLuminanceSourceTest.renderFrame(size[0], size[1],
+                        lighting[0], lighting[1], lighting[2]);
+                boolean accepted = filter.accept(centerCrop(frame, size[0], size[1]));
+                assertTrue(describe(filter, size, lighting), accepted);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsBlankFrames() {
+        FramePreFilter filter = new FramePreFilter();
+        for (int[] size : PREVIEW_SIZES) {
+            for (int[] lighting : LIGHTING) {
+                if (lighting[2] > 12) {
+                    // 噪声这么大的画面看起来和暗处的小码一样有对比度，留给解码器去判断
+                    continue;
+                }
+                byte[] frame = renderBlank(size[0], size[1], lighting[0], lighting[1], lighting[2]);
+                boolean accepted = filter.accept(centerCrop(frame, size[0], size[1]));
+                assertFalse(describe(filter, size, lighting), accepted);
+            }
+        }
+    }
+
+    @Test
+    public void rejectsFramesFarOutOfFocus() throws Exception {
+        FramePreFilter filter = new FramePreFilter();
+        for (int[] size : PREVIEW_SIZES) {
+            byte[] frame = RotatedPlanarYUVLuminanceSourceTest.renderFrame(size[0], size[1], 100, 0, 2);
+            boxBlur(frame, size[0], size[1], size[1] / 20);
+            boolean accepted = filter.accept(centerCrop(frame, size[0], size[1]));
+            assertFalse(describe(filter, size, new int[]{100, 0, 2}), accepted);
+        }
+    }
+
+    @Test
+    public void acceptsEveryFrameTheReaderDecodes() throws Exception {
+        int width = 1280;
+        int height = 720;
+        int crop = height * 3 / 5;
+        FramePreFilter filter = new FramePreFilter();
+        MultiFormatReader reader = new MultiFormatReader();
+        int decoded = 0;
+        int rejected = 0;
+        // 码从扫描框的五分之一到整个扫描框，模块越大能承受的模糊越强；短内容的码模块最大
+        String[] texts = {"Y", RotatedPlanarYUVLuminanceSourceTest.CONTENTS};
+        int[] sides = {crop / 5, crop / 3, crop / 2, crop};
+        int[] blurs = {0, 1, 2, 4, 6, 10, 24};
+        for (String text : texts) {
+            for (int side : sides) {
+                for (int[] lighting : LIGHTING) {
+                    for (int blur : blurs) {
+                        byte[] frame = renderCode(width, height, text, side,
+                                lighting[0], lighting[1], lighting[2], blur);
+                        RotatedPlanarYUVLuminanceSource source = centerCrop(frame, width, height);
+                        boolean accepted = filter.accept(source);
+                        if (!accepted) {
+                            rejected++;
+                        }
+                        try {
+                            reader.decode(new BinaryBitmap(new HybridBinarizer(source)));
+                        } catch (ReaderException e) {
+                            continue;
+                        } finally {
+                            reader.reset();
+                        }
+                        decoded++;
+                        assertTrue("side " + side + " blur " + blur + " "
+                                + describe(filter, new int[]{width, height}, lighting), accepted);
+                    }
+                }
+            }
+        }
+        assertTrue(decoded > 0);
+        // 过滤器还是要起作用：严重失焦的帧被过滤掉
+        assertTrue(rejected > 0);
+    }
+
+    private static RotatedPlanarYUVLuminanceSource centerCrop(byte[] frame, int width, int height) {
+        int crop = height * 3 / 5;
+        return new RotatedPlanarYUVLuminanceSource(frame, width, height,
+                (height - crop) / 2, (width - crop) / 2, crop, crop, null);
+    }
+
+    private static String describe(FramePreFilter filter, int[] size, int[] lighting) {
+        return size[0] + "x" + size[1] + " lighting " + lighting[0] + "/" + lighting[1] + "/"
+                + lighting[2] + ": contrast " + filter.getLastContrast()
+                + ", sharpness " + filter.getLastSharpness();
+    }
+
+    /**
+     * 没有条码的画面，只有和renderFrame一样的光照渐变和噪声
+     */
+    private static byte[] renderBlank(int width, int height, int gainPercent, int offset, int noise) {
+        Random random = new Random(width);
+        byte[] frame = new byte[width * height * 3 / 2];
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < height; x++) {
+                int luma = (200 + x * 40 / height) * gainPercent / 100 + offset;
+                if (noise > 0) {
+                    luma += random.nextInt(2 * noise + 1) - noise;
+                }
+                frame[y + (height - 1 - x) * width] = (byte) Math.max(0, Math.min(255, luma));
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * 和renderFrame一样的光照，码的大小和内容可以指定，先模糊再加光照和噪声
+     */
+    private static byte[] renderCode(int width, int height, String contents, int side,
+                                     int gainPercent, int offset, int noise, int blur)
+            throws Exception {
+        BitMatrix code = new QRCodeWriter().encode(contents, BarcodeFormat.QR_CODE, side, side);
+        int codeLeft = (height - side) / 2;
+        int codeTop = (width - side) / 2;
+        byte[] frame = new byte[width * height * 3 / 2];
+        // (x, y)为竖屏图像中的坐标，竖屏图像宽为height，高为width
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < height; x++) {
+                boolean black = x >= codeLeft && x < codeLeft + side
+                        && y >= codeTop && y < codeTop + side
+                        && code.get(x - codeLeft, y - codeTop);
+                frame[y + (height - 1 - x) * width] = (byte) (black ? 30 : 200 + x * 40 / height);
+            }
+        }
+        if (blur > 0) {
+            boxBlur(frame, width, height, blur);
+        }
+        Random random = new Random(side * 31 + blur);
+        for (int i = 0; i < width * height; i++) {
+            int luma = (frame[i] & 0xff) * gainPercent / 100 + offset;
+            if (noise > 0) {
+                luma += random.nextInt(2 * noise + 1) - noise;
+            }
+            frame[i] = (byte) Math.max(0, Math.min(255, luma));
+        }
+        return frame;
+    }
+
+    /**
+     * 横向和纵向各做一次盒式模糊，模拟对焦中的画面
+     */
+    private static void boxBlur(byte[] frame, int width, int height, int radius) {
+        int[] line = new int[Math.max(width, height)];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                line[x] = frame[y * width + x] & 0xff;
+            }
+            for (int x = 0; x < width; x++) {
+                frame[y * width + x] = (byte) average(line, width, x, radius);
+            }
+        }
+        for (int x = 0; x < width; x++) {
+            for (int y = 0; y < height; y++) {
+                line[y] = frame[y * width + x] & 0xff;
+            }
+            for (int y = 0; y < height; y++) {
+                frame[y * width + x] = (byte) average(line, height, y, radius);
+            }
+        }
+    }
+
+    private static int average(int[] line, int length, int center, int radius) {
+        int sum = 0;
+        int count = 0;
+        for (int i = Math.max(0, center - radius); i <= Math.min(length - 1, center + radius); i++) {
+            sum += line[i];
+            count++;
+        }
+        return sum / count;
+    }
+
+}
@@ -0,0 +1,187 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.WriterException;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * Feeds {@link MotionEstimator} frame sequences of a textured scene: held
+ * still, panned, and with the exposure changing; and of a QR code held by a
+ * slightly trembling hand.
+ */
+public class MotionEstimatorTest {
+
+    private static final int WIDTH = 1280;
+
+    private static final int HEIGHT = 720;
+
+    /**
+     * 场景比一帧大，平移时取其中不同的窗口
+     */
+    private static final int SCENE_MARGIN = 200;
+
+    private static final int CODE_SIZE = 700;
+
+    private final byte[] scene = renderScene(WIDTH + 2 * SCENE_MARGIN, HEIGHT + 2 * SCENE_MARGIN);
+
+    private final Random noise = new Random(7);
+
+    @Test
+    public void stillFramesAreDecoded() {
+        MotionEstimator estimator = new MotionEstimator();
+        for (int i = 0; i < 20; i++) {
+            assertTrue("frame " + i + " motion " + estimator.getLastMotion(),
+                    estimator.shouldDecode(frame(0, 0, 0, 6), WIDTH, HEIGHT));
+        }
+        assertEquals(0, estimator.getSkippedFrameCount());
+    }
+
+    @Test
+    public void exposureChangeIsNotMotion() {
+        MotionEstimator estimator = new MotionEstimator();
+        estimator.shouldDecode(frame(0, 0, 0, 4), WIDTH, HEIGHT);
+        assertTrue(estimator.shouldDecode(frame(0, 0, 40, 4), WIDTH, HEIGHT));
+        assertTrue(estimator.shouldDecode(frame(0, 0, -30, 4), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void panningIsSkippedUntilTheImageSettles() {
+        MotionEstimator estimator = new MotionEstimator();
+        assertTrue(estimator.shouldDecode(frame(0, 0, 0, 4), WIDTH, HEIGHT));
+        assertEquals(-1f, estimator.getLastMotion(), 0f);
+
+        // 手机在平移，每帧移动15像素
+        int x = 0;
+        for (int i = 0; i < 6; i++) {
+            x += 15;
+            assertFalse("frame " + i + " motion " + estimator.getLastMotion(),
+                    estimator.shouldDecode(frame(x, x / 3, 0, 4), WIDTH, HEIGHT));
+        }
+        assertEquals(6, estimator.getSkippedFrameCount());
+
+        // 停下来后第一帧和上一帧比还在动，第二帧开始恢复解码
+        assertFalse(estimator.shouldDecode(frame(x + 15, x / 3, 0, 4), WIDTH, HEIGHT));
+        assertTrue(estimator.shouldDecode(frame(x + 15, x / 3, 0, 4), WIDTH, HEIGHT));
+        assertTrue(estimator.shouldDecode(frame(x + 15, x / 3, 0, 4), WIDTH, HEIGHT));
+    }
+
+    @Test
+    public void constantShakingStillLetsFramesThrough() {
+        MotionEstimator estimator = new MotionEstimator();
+        int decoded = 0;
+        int frames = 5 * (MotionEstimator.MAX_CONSECUTIVE_SKIPS + 1);
+        for (int i = 0; i < frames; i++) {
+            int offset = (i % 2) * 30;
+            if (estimator.shouldDecode(frame(offset, offset, 0, 4), WIDTH, HEIGHT)) {
+                decoded++;
+            }
+        }
+        // 第一帧，以及之后每跳过MAX_CONSECUTIVE_SKIPS帧放过一帧
+        assertEquals(5, decoded);
+    }
+
+    @Test
+    public void handTremorOverACodeIsNotMotion() throws WriterException {
+        // 离得很近，码几乎占满画面的高度，手抖时每帧偏移1到2像素
+        byte[] code = renderCode(CODE_SIZE);
+        Random tremor = new Random(3);
+        MotionEstimator estimator = new MotionEstimator();
+        for (int i = 0; i < 30; i++) {
+            int x = tremor.nextInt(5) - 2;
+            int y = tremor.nextInt(5) - 2;
+            assertTrue("frame " + i + " motion " + estimator.getLastMotion(),
+                    estimator.shouldDecode(codeFrame(code, CODE_SIZE, x, y, 4), WIDTH, HEIGHT));
+        }
+        assertEquals(0, estimator.getSkippedFrameCount());
+    }
+
+    @Test
+    public void sizeChangeStartsOver() {
+        MotionEstimator estimator = new MotionEstimator();
+        estimator.shouldDecode(frame(0, 0, 0, 4), WIDTH, HEIGHT);
+        byte[] small = new byte[640 * 480 * 3 / 2];
+        assertTrue(estimator.shouldDecode(small, 640, 480));
+        assertEquals(-1f, estimator.getLastMotion(), 0f);
+    }
+
+    /**
+     * 从场景中取一帧，(x, y)是窗口的偏移，再加上亮度变化和噪声
+     */
+    private byte[] frame(int x, int y, int brightness, int noiseLevel) {
+        int sceneWidth = WIDTH + 2 * SCENE_MARGIN;
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        for (int row = 0; row < HEIGHT; row++) {
+            int sceneOffset = (row + y + SCENE_MARGIN) * sceneWidth + x + SCENE_MARGIN;
+            for (int col = 0; col < WIDTH; col++) {
+                int luma = (scene[sceneOffset + col] & 0xff) + brightness
+                        + noise.nextInt(2 * noiseLevel + 1) - noiseLevel;
+                frame[row * WIDTH + col] = (byte) Math.max(0, Math.min(255, luma));
+            }
+        }
+        return frame;
+    }
+
+    /**
+     * 白色背景中间放一个码，(x, y)是码相对中心的偏移，再加上噪声
+     */
+    private byte[] codeFrame(byte[] code, int size, int x, int y, int noiseLevel) {
+        byte[] frame = new byte[WIDTH * HEIGHT * 3 / 2];
+        int left = (WIDTH - size) / 2 + x;
+        int top = (HEIGHT - size) / 2 + y;
+        for (int row = 0; row < HEIGHT; row++) {
+            for (int col = 0; col < WIDTH; col++) {
+                int codeRow = row - top;
+                int codeCol = col - left;
+                int luma = 200;
+                if (codeRow >= 0 && codeRow < size && codeCol >= 0 && codeCol < size) {
+                    luma = code[codeRow * size + codeCol] & 0xff;
+                }
+                luma += noise.nextInt(2 * noiseLevel + 1) - noiseLevel;
+                frame[row * WIDTH + col] = (byte) Math.max(0, Math.min(255, luma));
+            }
+        }
+        return frame;
+    }
+
+    private static byte[] renderCode(int size) throws WriterException {
+        BitMatrix matrix = new QRCodeWriter().encode("https://github.com/zsygfddsd/Y_QRCodeView",
+                BarcodeFormat.QR_CODE, size, size);
+        byte[] code = new byte[size * size];
+        for (int y = 0; y < size; y++) {
+            for (int x = 0; x < size; x++) {
+                code[y * size + x] = (byte) (matrix.get(x, y) ? 30 : 200);
+            }
+        }
+        return code;
+    }
+
+    /**
+     * 随机灰度的方块纹理，类似桌面上的杂物
+     */
+    private static byte[] renderScene(int width, int height) {
+        int block = 24;
+        Random random = new Random(42);
+        int blocksX = width / block + 1;
+        int[] shades = new int[blocksX * (height / block + 1)];
+        for (int i = 0; i < shades.length; i++) {
+            shades[i] = 40 + random.nextInt(170);
+        }
+        byte[] scene = new byte[width * height];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++) {
+                scene[y * width + x] = (byte) shades[(y / block) * blocksX + x / block];
+            }
+        }
+        return scene;
+    }
+
+}
@@ -0,0 +1,140 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.DecodeHintType;
+import com.google.zxing.RGBLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.oned.Code128Writer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class MultiCodeReaderTest {
+
+    @Test
+    public void everyCodeOfTheFrameIsFound() throws Exception {
+        // 一张图里两个二维码和一个条形码，像货架上的多个标签
+        int width = 900;
+        int height = 600;
+        int[] pixels = blank(width, height);
+        draw(pixels, width, new QRCodeWriter().encode("label-1", BarcodeFormat.QR_CODE, 200, 200),
+                40, 40);
+        draw(pixels, width, new QRCodeWriter().encode("label-2", BarcodeFormat.QR_CODE, 200, 200),
+                600, 40);
+        draw(pixels, width, new Code128Writer().encode("PALLET-0042", BarcodeFormat.CODE_128,
+                400, 100), 250, 420);
+
+        List<Result> results = new MultiCodeReader(null).decode(image(width, height, pixels));
+        Set<String> texts = new HashSet<String>();
+        for (Result result : results) {
+            texts.add(result.getText());
+        }
+        assertEquals(3, texts.size());
+        assertTrue(texts.contains("label-1"));
+        assertTrue(texts.contains("label-2"));
+        assertTrue(texts.contains("PALLET-0042"));
+    }
+
+    @Test
+    public void onlyConfiguredFormatsAreReported() throws Exception {
+        int width = 600;
+        int height = 300;
+        int[] pixels = blank(width, height);
+        draw(pixels, width, new QRCodeWriter().encode("label-1", BarcodeFormat.QR_CODE, 200, 200),
+                20, 50);
+        draw(pixels, width, new Code128Writer().encode("PALLET-0042", BarcodeFormat.CODE_128,
+                300, 100), 280, 100);
+
+        Map<DecodeHintType, Object> hints = new EnumMap<DecodeHintType, Object>(DecodeHintType.class);
+        hints.put(DecodeHintType.POSSIBLE_FORMATS, EnumSet.of(BarcodeFormat.QR_CODE));
+        List<Result> results = new MultiCodeReader(hints).decode(image(width, height, pixels));
+        assertEquals(1, results.size());
+        assertEquals(BarcodeFormat.QR_CODE, results.get(0).getBarcodeFormat());
+    }
+
+    @Test
+    public void blankFrameFindsNothing() throws Exception {
+        int[] pixels = blank(300, 300);
+        assertTrue(new MultiCodeReader(null).decode(image(300, 300, pixels)).isEmpty());
+    }
+
+    @Test
+    public void duplicatesAreSuppressedWithinTheWindow() {
+        ResultDeduplicator deduplicator = new ResultDeduplicator(1000L);
+        Result a = new Result("a", null, null, BarcodeFormat.QR_CODE);
+        Result b = new Result("b", null, null, BarcodeFormat.QR_CODE);
+        Result aAsCode128 = new Result("a", null, null, BarcodeFormat.CODE_128);
+
+        assertTrue(deduplicator.isNew(a, 0L));
+        assertTrue(deduplicator.isNew(b, 0L));
+        assertTrue(deduplicator.isNew(aAsCode128, 0L));
+        // 一直在画面里的码每帧都刷新时间，不会过期
+        for (long now = 500L; now <= 5000L; now += 500L) {
+            assertFalse(deduplicator.isNew(a, now));
+        }
+        // b早就离开画面了，超过窗口后重新上报
+        assertTrue(deduplicator.isNew(b, 5000L));
+        assertEquals(2, deduplicator.size());
+
+        deduplicator.reset();
+        assertTrue(deduplicator.isNew(a, 5001L));
+    }
+
+    @Test
+    public void leastRecentlySeenCodeIsEvicted() {
+        // 不按时间过期，只按个数淘汰
+        ResultDeduplicator deduplicator = new ResultDeduplicator(Long.MAX_VALUE, 2);
+        Result a = new Result("a", null, null, BarcodeFormat.QR_CODE);
+        Result b = new Result("b", null, null, BarcodeFormat.QR_CODE);
+        Result c = new Result("c", null, null, BarcodeFormat.QR_CODE);
+
+        assertTrue(deduplicator.isNew(a, 0L));
+        assertTrue(deduplicator.isNew(b, 1L));
+        assertFalse(deduplicator.isNew(a, 100000L));
+        assertTrue(deduplicator.isNew(c, 100001L));
+        assertEquals(2, deduplicator.size());
+        assertFalse(deduplicator.isNew(a, 100002L));
+        assertTrue(deduplicator.isNew(b, 100003L));
+
+        // 没能送出去的码忘掉，下一次看到时重新上报
+        deduplicator.forget(b);
+        assertTrue(deduplicator.isNew(b, 100004L));
+    }
+
+    private static int[] blank(int width, int height) {
+        int[] pixels = new int[width * height];
+        for (int i = 0; i < pixels.length; i++) {
+            pixels[i] = 0xFFFFFFFF;
+        }
+        return pixels;
+    }
+
+    private static void draw(int[] pixels, int width, BitMatrix code, int left, int top) {
+        for (int y = 0; y < code.getHeight(); y++) {
+            for (int x = 0; x < code.getWidth(); x++) {
+                if (code.get(x, y)) {
+                    pixels[(top + y) * width + left + x] = 0xFF000000;
+                }
+            }
+        }
+    }
+
+    private static BinaryBitmap image(int width, int height, int[] pixels) {
+        return new BinaryBitmap(new HybridBinarizer(new RGBLuminanceSource(width, height, pixels)));
+    }
+
+}
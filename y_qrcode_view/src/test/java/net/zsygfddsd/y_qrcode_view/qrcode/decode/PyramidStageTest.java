@@ -0,0 +1,70 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeReader;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+
+public class PyramidStageTest {
+
+    @Test
+    public void everyPixelIsTheMeanOfA2x2BlockOfTheRotatedCrop() throws Exception {
+        int width = 640;
+        int height = 480;
+        byte[] frame = new byte[width * height * 3 / 2];
+        new Random(7).nextBytes(frame);
+        // 奇数宽高时丢掉最后一列和最后一行
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(
+                frame, width, height, 31, 17, 301, 257, null);
+
+        LuminanceSource half = source.downsample(new PyramidStage());
+        assertEquals(150, half.getWidth());
+        assertEquals(128, half.getHeight());
+        byte[] row = null;
+        for (int y = 0; y < half.getHeight(); y++) {
+            row = half.getRow(y, row);
+            for (int x = 0; x < half.getWidth(); x++) {
+                int sum = source.getLuminance(2 * x, 2 * y) + source.getLuminance(2 * x + 1, 2 * y)
+                        + source.getLuminance(2 * x, 2 * y + 1)
+                        + source.getLuminance(2 * x + 1, 2 * y + 1);
+                assertEquals("(" + x + ", " + y + ")", (sum + 2) / 4, row[x] & 0xff);
+            }
+        }
+    }
+
+    @Test
+    public void bufferIsReusedBetweenFrames() throws Exception {
+        PyramidStage stage = new PyramidStage();
+        byte[] frame = new byte[1280 * 720 * 3 / 2];
+        byte[] first = stage.downsample(frame, 1280, 720, 100, 100, 400, 400);
+        byte[] second = stage.downsample(frame, 1280, 720, 120, 120, 300, 300);
+        assertSame(first, second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cropOutsideFrameIsRejected() throws Exception {
+        new PyramidStage().downsample(new byte[1280 * 720], 1280, 720, 400, 0, 400, 400);
+    }
+
+    @Test
+    public void qrCodeDecodesAtHalfResolution() throws Exception {
+        int width = 1920;
+        int height = 1080;
+        byte[] frame = RotatedPlanarYUVLuminanceSourceTest.renderFrame(width, height, 100, 0, 8);
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(
+                frame, width, height, 0, 0, height, width, null);
+
+        Result result = new QRCodeReader().decode(new BinaryBitmap(new HybridBinarizer(
+                source.downsample(new PyramidStage()))));
+        assertEquals(RotatedPlanarYUVLuminanceSourceTest.CONTENTS, result.getText());
+    }
+
+}
@@ -0,0 +1,25 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+/**
+ * The full-frame rotation DecodeHandler used to run on every preview frame,
+ * kept as the reference the rotating stages are checked against. The JMH
+ * module {@code benchmark} measures both.
+ */
+final class ReferenceRotation {
+
+    private ReferenceRotation() {
+    }
+
+    /**
+     * Rotates the whole Y plane of a landscape frame by 90 degrees clockwise.
+     */
+    static byte[] rotateFullFrame(byte[] data, int width, int height) {
+        byte[] rotatedData = new byte[data.length];
+        for (int y = 0; y < height; y++) {
+            for (int x = 0; x < width; x++)
+                rotatedData[x * height + height - y - 1] = data[x + y * width];
+        }
+        return rotatedData;
+    }
+
+}
@@ -0,0 +1,158 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.ResultPoint;
+import com.google.zxing.ResultPointCallback;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class RoiTrackerTest {
+
+    @Test
+    public void noRegionBeforeAnyCandidate() {
+        RoiTracker tracker = new RoiTracker();
+        assertFalse(tracker.nextRegion(600, 600, new int[4]));
+    }
+
+    @Test
+    public void regionSurroundsTheCandidatesWithAMargin() {
+        RoiTracker tracker = new RoiTracker();
+        // 三个定位点构成一个60x60的外接矩形
+        tracker.onCandidate(100, 100);
+        tracker.onCandidate(160, 100);
+        tracker.onCandidate(100, 160);
+
+        int[] region = new int[4];
+        assertTrue(tracker.nextRegion(600, 600, region));
+        // 余量取外接矩形边长的一半和扫描框边长的1/6中的较大值
+        assertArrayEquals(new int[]{0, 0, 260, 260}, region);
+    }
+
+    @Test
+    public void regionIsClampedToTheFramingRect() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.onCandidate(590, 590);
+        int[] region = new int[4];
+        assertTrue(tracker.nextRegion(600, 600, region));
+        assertEquals(490, region[0]);
+        assertEquals(490, region[1]);
+        assertEquals(110, region[2]);
+        assertEquals(110, region[3]);
+    }
+
+    @Test
+    public void everyFewFramesTheWholeRectIsDecoded() {
+        RoiTracker tracker = new RoiTracker();
+        int[] region = new int[4];
+        for (int frame = 1; frame <= 2 * RoiTracker.FULL_FRAME_INTERVAL; frame++) {
+            tracker.onCandidate(300, 300);
+            assertEquals(frame % RoiTracker.FULL_FRAME_INTERVAL != 0,
+                    tracker.nextRegion(600, 600, region));
+        }
+    }
+
+    @Test
+    public void regionExpiresWithoutNewCandidates() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.onCandidate(300, 300);
+        int[] region = new int[4];
+        int used = 0;
+        for (int frame = 0; frame < 3 * RoiTracker.MAX_ROI_FRAMES; frame++) {
+            if (tracker.nextRegion(600, 600, region)) {
+                used++;
+            }
+        }
+        // 整帧解码的那几帧也算在有效期内
+        assertTrue(used > 0 && used < RoiTracker.MAX_ROI_FRAMES);
+        assertFalse(tracker.nextRegion(600, 600, region));
+    }
+
+    @Test
+    public void regionIsDroppedWhenItShowsNoCandidate() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.onCandidate(300, 300);
+        int[] region = new int[4];
+        assertTrue(tracker.nextRegion(600, 600, region));
+        // 这一帧在区域里什么也没找到，码已经移走了
+        assertTrue(tracker.onRegionMissed());
+        assertFalse(tracker.nextRegion(600, 600, region));
+    }
+
+    @Test
+    public void regionIsKeptWhileItStillShowsCandidates() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.onCandidate(300, 300);
+        int[] region = new int[4];
+        assertTrue(tracker.nextRegion(600, 600, region));
+        // 区域里还能看到定位点，只是这一帧没有解出来
+        tracker.onCandidate(310, 300);
+        assertFalse(tracker.onRegionMissed());
+        assertTrue(tracker.nextRegion(600, 600, region));
+    }
+
+    @Test
+    public void largeRegionFallsBackToTheWholeRect() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.onCandidate(50, 50);
+        tracker.onCandidate(550, 550);
+        assertFalse(tracker.nextRegion(600, 600, new int[4]));
+    }
+
+    @Test
+    public void newFrameStartsANewBoundingBox() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.onCandidate(50, 50);
+        int[] region = new int[4];
+        assertTrue(tracker.nextRegion(600, 600, region));
+        // 下一帧里的点替换掉上一帧的外接矩形，而不是合并
+        tracker.onCandidate(500, 500);
+        assertTrue(tracker.nextRegion(600, 600, region));
+        assertEquals(400, region[0]);
+        assertEquals(400, region[1]);
+    }
+
+    @Test
+    public void extentIsOnlyReportedForTheFrameJustDecoded() {
+        RoiTracker tracker = new RoiTracker();
+        tracker.nextRegion(600, 600, new int[4]);
+        tracker.onCandidate(100, 100);
+        tracker.onCandidate(130, 100);
+        assertEquals(-1f, tracker.getCandidateExtent(3), 0f);
+        tracker.onCandidate(100, 140);
+        assertEquals(40f, tracker.getCandidateExtent(3), 0f);
+        // 下一帧开始后还没有新的定位点
+        tracker.nextRegion(600, 600, new int[4]);
+        assertEquals(-1f, tracker.getCandidateExtent(3), 0f);
+    }
+
+    @Test
+    public void callbackMovesPointsIntoFramingRectCoordinates() {
+        RoiTracker tracker = new RoiTracker();
+        final List<ResultPoint> forwarded = new ArrayList<ResultPoint>();
+        RoiResultPointCallback callback = new RoiResultPointCallback(tracker,
+                new ResultPointCallback() {
+                    @Override
+                    public void foundPossibleResultPoint(ResultPoint point) {
+                        forwarded.add(point);
+                    }
+                });
+        callback.setTransform(200, 300, 1);
+        callback.foundPossibleResultPoint(new ResultPoint(10, 20));
+
+        assertEquals(1, forwarded.size());
+        assertEquals(210f, forwarded.get(0).getX(), 0f);
+        assertEquals(320f, forwarded.get(0).getY(), 0f);
+        int[] region = new int[4];
+        assertTrue(tracker.nextRegion(600, 600, region));
+        assertEquals(110, region[0]);
+        assertEquals(220, region[1]);
+    }
+
+}
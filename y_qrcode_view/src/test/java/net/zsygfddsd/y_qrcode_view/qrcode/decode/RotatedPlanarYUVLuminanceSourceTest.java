@@ -0,0 +1,167 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import com.google.zxing.BarcodeFormat;
+import com.google.zxing.BinaryBitmap;
+import com.google.zxing.LuminanceSource;
+import com.google.zxing.MultiFormatReader;
+import com.google.zxing.NotFoundException;
+import com.google.zxing.PlanarYUVLuminanceSource;
+import com.google.zxing.Result;
+import com.google.zxing.common.BitArray;
+import com.google.zxing.common.BitMatrix;
+import com.google.zxing.common.HybridBinarizer;
+import com.google.zxing.qrcode.QRCodeWriter;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+/**
+ * Golden-frame checks that {@link RotatedPlanarYUVLuminanceSource} gives the
+ * binarizer exactly the same input as the old rotate-then-crop path.
+ */
+public class RotatedPlanarYUVLuminanceSourceTest {
+
+    static final String CONTENTS = "https://github.com/yanyusong/Y_QRCode_View";
+
+    /**
+     * 预览分辨率，横向
+     */
+    private static final int[][] PREVIEW_SIZES = {{1280, 720}, {1920, 1080}, {640, 480}};
+
+    /**
+     * 光照条件：亮度增益、偏移和噪声
+     */
+    private static final int[][] LIGHTING = {
+            {100, 0, 0},
+            {30, 10, 4},
+            {60, 90, 12},
+            {120, -20, 25},
+    };
+
+    @Test
+    public void binarizerOutputMatchesRotateThenCrop() throws Exception {
+        RotationStage stage = new RotationStage();
+        for (int[] size : PREVIEW_SIZES) {
+            for (int[] lighting : LIGHTING) {
+                int width = size[0];
+                int height = size[1];
+                byte[] frame = renderFrame(width, height, lighting[0], lighting[1], lighting[2]);
+                int crop = height * 3 / 5;
+                int left = (height - crop) / 2;
+                int top = (width - crop) / 2;
+
+                LuminanceSource expected = rotateThenCrop(frame, width, height, left, top, crop, crop);
+                LuminanceSource actual = new RotatedPlanarYUVLuminanceSource(frame, width, height,
+                        left, top, crop, crop, stage);
+                assertSameBinarization(width + "x" + height, expected, actual);
+
+                // 裁剪出的子区域也要一致
+                int half = crop / 2;
+                assertSameBinarization(width + "x" + height + " cropped",
+                        expected.crop(half / 2, half / 2, half, half),
+                        actual.crop(half / 2, half / 2, half, half));
+            }
+        }
+    }
+
+    @Test
+    public void thumbnailMatchesPlanarYUVLuminanceSource() throws Exception {
+        int width = 1280;
+        int height = 720;
+        byte[] frame = renderFrame(width, height, 100, 0, 8);
+        int crop = 431;
+        PlanarYUVLuminanceSource expected = rotateThenCrop(frame, width, height, 150, 400, crop, crop);
+        RotatedPlanarYUVLuminanceSource actual = new RotatedPlanarYUVLuminanceSource(frame,
+                width, height, 150, 400, crop, crop, null);
+        assertEquals(expected.getThumbnailWidth(), actual.getThumbnailWidth());
+        assertEquals(expected.getThumbnailHeight(), actual.getThumbnailHeight());
+        assertArrayEquals(expected.renderThumbnail(), actual.renderThumbnail());
+    }
+
+    @Test
+    public void decodesSameContents() throws Exception {
+        byte[] frame = renderFrame(1280, 720, 100, 0, 0);
+        RotatedPlanarYUVLuminanceSource source = new RotatedPlanarYUVLuminanceSource(frame,
+                1280, 720, 144, 424, 432, 432, new RotationStage());
+        Result result = new MultiFormatReader().decode(new BinaryBitmap(new HybridBinarizer(source)));
+        assertEquals(CONTENTS, result.getText());
+    }
+
+    private static void assertSameBinarization(String frame, LuminanceSource expected,
+                                               LuminanceSource actual) throws Exception {
+        BitMatrix expectedMatrix = new HybridBinarizer(expected).getBlackMatrix();
+        BitMatrix actualMatrix = new HybridBinarizer(actual).getBlackMatrix();
+        assertEquals(frame, expectedMatrix, actualMatrix);
+
+        byte[] expectedRow = null;
+        byte[] actualRow = null;
+        for (int y = 0; y < expected.getHeight(); y += 7) {
+            expectedRow = expected.getRow(y, expectedRow);
+            actualRow = actual.getRow(y, actualRow);
+            for (int x = 0; x < expected.getWidth(); x++) {
+                assertEquals(frame + " row " + y, expectedRow[x], actualRow[x]);
+            }
+            assertEquals(frame + " black row " + y, blackRow(expected, y), blackRow(actual, y));
+        }
+    }
+
+    /**
+     * 一维码走的是逐行二值化，低对比度的行会抛NotFoundException，两边都抛也算一致
+     */
+    private static String blackRow(LuminanceSource source, int y) {
+        try {
+            BitArray row = new HybridBinarizer(source).getBlackRow(y, null);
+            return row.toString();
+        } catch (NotFoundException e) {
+            return "not found";
+        }
+    }
+
+    private static PlanarYUVLuminanceSource rotateThenCrop(byte[] frame, int width, int height,
+                                                           int left, int top, int cropWidth,
+                                                           int cropHeight) {
+        byte[] rotatedData = ReferenceRotation.rotateFullFrame(frame, width, height);
+        return new PlanarYUVLuminanceSource(rotatedData, height, width, left, top,
+                cropWidth, cropHeight, false);
+    }
+
+    /**
+     * Renders a QR code in the middle of the portrait image and stores it the
+     * way the camera delivers it: landscape NV21, rotated 90 degrees counter
+     * clockwise.
+     */
+    static byte[] renderFrame(int width, int height, int gainPercent, int offset, int noise)
+            throws Exception {
+        int side = height / 2;
+        BitMatrix code = new QRCodeWriter().encode(CONTENTS, BarcodeFormat.QR_CODE, side, side);
+        Random random = new Random(width * 31 + gainPercent);
+        byte[] frame = new byte[width * height * 3 / 2];
+        int codeLeft = (height - side) / 2;
+        int codeTop = (width - side) / 2;
+        // (x, y)为竖屏图像中的坐标，竖屏图像宽为height，高为width
+        for (int y = 0; y < width; y++) {
+            for (int x = 0; x < height; x++) {
+                boolean black = x >= codeLeft && x < codeLeft + side
+                        && y >= codeTop && y < codeTop + side
+                        && code.get(x - codeLeft, y - codeTop);
+                // 加一点从左到右的渐变，模拟不均匀的光照
+                int luma = black ? 30 : 200 + x * 40 / height;
+                luma = luma * gainPercent / 100 + offset;
+                if (noise > 0) {
+                    luma += random.nextInt(2 * noise + 1) - noise;
+                }
+                luma = Math.max(0, Math.min(255, luma));
+                frame[y + (height - 1 - x) * width] = (byte) luma;
+            }
+        }
+        for (int i = width * height; i < frame.length; i++) {
+            frame[i] = (byte) 128;
+        }
+        return frame;
+    }
+
+}
@@ -0,0 +1,68 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.decode;
+
+import org.junit.Test;
+
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertSame;
+
+/**
+ * Checks {@link RotationStage} against the full-frame rotation loop that
+ * DecodeHandler used before.
+ */
+public class RotationStageTest {
+
+    @Test
+    public void rotatedCropMatchesFullFrameRotation() throws Exception {
+        int[][] sizes = {{1280, 720}, {1920, 1080}, {640, 480}, {37, 23}};
+        Random random = new Random(42);
+        RotationStage stage = new RotationStage();
+        for (int[] size : sizes) {
+            int width = size[0];
+            int height = size[1];
+            byte[] frame = new byte[width * height * 3 / 2];
+            random.nextBytes(frame);
+
+            // 旋转后的图像为height*width
+            int cropWidth = height * 3 / 5;
+            int cropHeight = cropWidth;
+            int left = (height - cropWidth) / 2;
+            int top = (width - cropHeight) / 3;
+
+            byte[] expected = cropOfFullRotation(frame, width, height,
+                    left, top, cropWidth, cropHeight);
+            byte[] actual = stage.rotate(frame, width, height,
+                    left, top, cropWidth, cropHeight);
+            byte[] trimmed = new byte[cropWidth * cropHeight];
+            System.arraycopy(actual, 0, trimmed, 0, trimmed.length);
+            assertArrayEquals(width + "x" + height, expected, trimmed);
+        }
+    }
+
+    @Test
+    public void bufferIsReusedBetweenFrames() throws Exception {
+        RotationStage stage = new RotationStage();
+        byte[] frame = new byte[1280 * 720 * 3 / 2];
+        byte[] first = stage.rotate(frame, 1280, 720, 100, 100, 400, 400);
+        byte[] second = stage.rotate(frame, 1280, 720, 120, 120, 300, 300);
+        assertSame(first, second);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void cropOutsideFrameIsRejected() throws Exception {
+        new RotationStage().rotate(new byte[1280 * 720], 1280, 720, 400, 0, 400, 400);
+    }
+
+    static byte[] cropOfFullRotation(byte[] data, int width, int height,
+                                     int left, int top, int cropWidth, int cropHeight) {
+        byte[] rotatedData = ReferenceRotation.rotateFullFrame(data, width, height);
+        byte[] crop = new byte[cropWidth * cropHeight];
+        for (int y = 0; y < cropHeight; y++) {
+            System.arraycopy(rotatedData, (top + y) * height + left, crop,
+                    y * cropWidth, cropWidth);
+        }
+        return crop;
+    }
+
+}
@@ -0,0 +1,114 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class DecodeMetricsTest {
+
+    @Test
+    public void histogramBucketsByPowerOfTwo() {
+        assertEquals(0, LatencyHistogram.bucketOf(0));
+        assertEquals(1, LatencyHistogram.bucketOf(1));
+        assertEquals(2, LatencyHistogram.bucketOf(3));
+        assertEquals(11, LatencyHistogram.bucketOf(1024));
+        assertEquals(LatencyHistogram.BUCKET_COUNT - 1, LatencyHistogram.bucketOf(Long.MAX_VALUE));
+    }
+
+    @Test
+    public void histogramPercentiles() {
+        LatencyHistogram histogram = new LatencyHistogram();
+        for (int i = 0; i < 90; i++) {
+            histogram.record(100000L); // 100 us
+        }
+        for (int i = 0; i < 10; i++) {
+            histogram.record(5000000L); // 5 ms
+        }
+        histogram.record(-1L);
+
+        assertEquals(100, histogram.getCount());
+        assertEquals(590, histogram.getMeanMicros());
+        assertEquals(5000, histogram.getMaxMicros());
+        assertEquals(128, histogram.getPercentileMicros(50));
+        assertEquals(128, histogram.getPercentileMicros(90));
+        assertEquals(5000, histogram.getPercentileMicros(99));
+
+        histogram.reset();
+        assertEquals(0, histogram.getCount());
+        assertEquals(0, histogram.getPercentileMicros(50));
+    }
+
+    @Test
+    public void concurrentRecordersLoseNothing() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        Thread[] threads = new Thread[4];
+        for (int t = 0; t < threads.length; t++) {
+            final long value = (t + 1) * 1000L;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    for (int i = 0; i < 10000; i++) {
+                        histogram.record(value);
+                    }
+                }
+            };
+            threads[t].start();
+        }
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        assertEquals(40000, histogram.getCount());
+        assertEquals(4, histogram.getMaxMicros());
+        assertEquals(10000, histogram.getBucketCount(1));
+        assertEquals(20000, histogram.getBucketCount(2));
+        assertEquals(10000, histogram.getBucketCount(3));
+    }
+
+    @Test
+    public void countsFramesAndReportsTimings() {
+        final List<FrameTimings> reported = new ArrayList<FrameTimings>();
+        DecodeMetrics metrics = new DecodeMetrics(new DecodeMetrics.Listener() {
+            @Override
+            public void onFrameTimed(FrameTimings timings) {
+                reported.add(timings.copy());
+            }
+        });
+        FrameTimings timings = new FrameTimings();
+
+        metrics.onScanStarted();
+        metrics.record(timings, DecodeMetrics.Stage.ROTATE, 2000L);
+        metrics.record(timings, DecodeMetrics.Stage.READER, 3000L);
+        metrics.onFrameFinished(timings, false);
+        assertEquals(-1L, timings.getNanos(DecodeMetrics.Stage.ROTATE));
+
+        metrics.record(timings, DecodeMetrics.Stage.ROTATE, 4000L);
+        metrics.onFrameFinished(timings, true);
+
+        assertEquals(2, metrics.getFramesAttempted());
+        assertEquals(1, metrics.getFramesDecoded());
+        assertEquals(1, metrics.getTimeToFirstDecode().getCount());
+        assertEquals(2, metrics.getHistogram(DecodeMetrics.Stage.ROTATE).getCount());
+        assertEquals(0, metrics.getHistogram(DecodeMetrics.Stage.UI).getCount());
+
+        assertEquals(2, reported.size());
+        assertFalse(reported.get(0).isDecoded());
+        assertEquals(5000L, reported.get(0).getTotalNanos());
+        assertEquals(-1L, reported.get(0).getNanos(DecodeMetrics.Stage.BINARIZE));
+        assertTrue(reported.get(1).isDecoded());
+        assertEquals(4000L, reported.get(1).getNanos(DecodeMetrics.Stage.ROTATE));
+
+        // 同一轮扫描只记录一次首次解码时间
+        metrics.onFrameFinished(timings, true);
+        assertEquals(1, metrics.getTimeToFirstDecode().getCount());
+
+        metrics.reset();
+        assertEquals(0, metrics.getFramesAttempted());
+        assertEquals(0, metrics.getHistogram(DecodeMetrics.Stage.ROTATE).getCount());
+    }
+
+}
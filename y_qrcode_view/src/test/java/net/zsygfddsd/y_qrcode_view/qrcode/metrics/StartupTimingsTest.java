@@ -0,0 +1,51 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class StartupTimingsTest {
+
+    @Test
+    public void stepsAreMeasuredFromTheOpenRequest() {
+        StartupTimings timings = new StartupTimings();
+        timings.onOpenRequested(1000L);
+        assertEquals(-1, timings.getTimeToOpenMillis());
+
+        timings.onCameraOpened(1350L);
+        timings.onPreviewStarted(1420L);
+        timings.onFrameDecoded(1500L);
+        // 只有第一帧算数
+        timings.onFrameDecoded(1530L);
+
+        assertEquals(350, timings.getTimeToOpenMillis());
+        assertEquals(420, timings.getTimeToFirstPreviewMillis());
+        assertEquals(500, timings.getTimeToFirstDecodeMillis());
+    }
+
+    @Test
+    public void reopeningStartsOver() {
+        StartupTimings timings = new StartupTimings();
+        timings.onOpenRequested(0L);
+        timings.onCameraOpened(300L);
+        timings.onPreviewStarted(400L);
+        timings.onFrameDecoded(450L);
+
+        timings.onOpenRequested(10000L);
+        assertEquals(-1, timings.getTimeToOpenMillis());
+        assertEquals(-1, timings.getTimeToFirstPreviewMillis());
+        assertEquals(-1, timings.getTimeToFirstDecodeMillis());
+        timings.onFrameDecoded(10200L);
+        assertEquals(200, timings.getTimeToFirstDecodeMillis());
+    }
+
+    @Test
+    public void nothingIsMeasuredBeforeARequest() {
+        StartupTimings timings = new StartupTimings();
+        timings.onCameraOpened(300L);
+        timings.onFrameDecoded(450L);
+        assertEquals(-1, timings.getTimeToOpenMillis());
+        assertEquals(-1, timings.getTimeToFirstDecodeMillis());
+    }
+
+}
@@ -0,0 +1,49 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.metrics;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+public class ThroughputMeterTest {
+
+    @Test
+    public void firstMinuteIsExtrapolated() {
+        ThroughputMeter meter = new ThroughputMeter();
+        meter.start(100000L);
+        for (int i = 0; i < 10; i++) {
+            meter.record(100000L + i * 1000L);
+        }
+        // 10秒10个码，折算成每分钟60个
+        assertEquals(60f, meter.getPerMinute(110000L), 0.01f);
+        assertEquals(10, meter.getTotal());
+    }
+
+    @Test
+    public void onlyTheLastMinuteCounts() {
+        ThroughputMeter meter = new ThroughputMeter();
+        meter.start(0L);
+        // 第一分钟每秒一个码，之后每两秒一个
+        for (long now = 0L; now < 60000L; now += 1000L) {
+            meter.record(now);
+        }
+        for (long now = 60000L; now < 120000L; now += 2000L) {
+            meter.record(now);
+        }
+        assertEquals(30f, meter.getPerMinute(119999L), 0f);
+        assertEquals(90, meter.getTotal());
+
+        // 停下来一分钟后归零
+        assertEquals(0f, meter.getPerMinute(180000L), 0f);
+    }
+
+    @Test
+    public void startForgetsEarlierEvents() {
+        ThroughputMeter meter = new ThroughputMeter();
+        meter.start(0L);
+        meter.record(500L);
+        meter.start(1000L);
+        assertEquals(0f, meter.getPerMinute(2000L), 0f);
+        assertEquals(0, meter.getTotal());
+    }
+
+}
@@ -0,0 +1,74 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.view;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class ResultPointBufferTest {
+
+    @Test
+    public void drainMovesPointsInOrder() {
+        ResultPointBuffer buffer = new ResultPointBuffer(4);
+        buffer.add(1f, 2f);
+        buffer.add(3f, 4f);
+        float[] out = new float[8];
+        assertEquals(2, buffer.drainTo(out));
+        assertEquals(1f, out[0], 0f);
+        assertEquals(2f, out[1], 0f);
+        assertEquals(3f, out[2], 0f);
+        assertEquals(4f, out[3], 0f);
+        assertEquals(0, buffer.drainTo(out));
+    }
+
+    @Test
+    public void dropsNewPointsWhenFull() {
+        ResultPointBuffer buffer = new ResultPointBuffer(4);
+        for (int i = 0; i < 4; i++) {
+            assertTrue(buffer.add(i, -i));
+        }
+        assertFalse(buffer.add(4f, -4f));
+        float[] out = new float[8];
+        assertEquals(4, buffer.drainTo(out));
+        assertEquals(3f, out[6], 0f);
+        // 读完之后位置空出来，跨过数组末尾继续写
+        assertTrue(buffer.add(5f, -5f));
+        assertTrue(buffer.add(6f, -6f));
+        assertEquals(2, buffer.drainTo(out));
+        assertEquals(5f, out[0], 0f);
+        assertEquals(-6f, out[3], 0f);
+    }
+
+    @Test
+    public void pointsArriveWholeAndInOrderAcrossThreads() throws InterruptedException {
+        final ResultPointBuffer buffer = new ResultPointBuffer(20);
+        final int total = 200000;
+        Thread producer = new Thread(new Runnable() {
+            @Override
+            public void run() {
+                for (int i = 1; i <= total; ) {
+                    if (buffer.add(i, i + 0.5f)) {
+                        i++;
+                    }
+                }
+            }
+        });
+        producer.start();
+        float[] out = new float[40];
+        float last = 0f;
+        int received = 0;
+        while (received < total) {
+            int count = buffer.drainTo(out);
+            for (int i = 0; i < count; i++) {
+                assertEquals(last + 1f, out[i * 2], 0f);
+                assertEquals(out[i * 2] + 0.5f, out[i * 2 + 1], 0f);
+                last = out[i * 2];
+            }
+            received += count;
+        }
+        producer.join();
+        assertEquals(0, buffer.drainTo(out));
+    }
+
+}
@@ -0,0 +1,84 @@
+package net.zsygfddsd.y_qrcode_view.qrcode.view;
+
+import org.junit.Assume;
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * The per-frame work of the viewfinder outside of the canvas calls must not
+ * allocate. Measured with the allocation counter of HotSpot, skipped on other
+ * VMs.
+ */
+public class ViewfinderFrameAllocationTest {
+
+    private static final int FRAMES = 10000;
+
+    @Test
+    public void scanLineMovesByTimeAndWraps() {
+        ScanLineAnimator scanLine = new ScanLineAnimator();
+        assertEquals(100, scanLine.nextPosition(100, 400, 1000L));
+        assertEquals(100 + (int) (16 * ScanLineAnimator.SPEED), scanLine.nextPosition(100, 400, 1016L));
+        // 长时间没有绘制，只按最大间隔移动
+        int position = scanLine.nextPosition(100, 400, 60000L);
+        assertEquals(100 + (int) ((16 + ScanLineAnimator.MAX_FRAME_INTERVAL_MS) * ScanLineAnimator.SPEED),
+                position);
+        long now = 60000L;
+        for (int i = 0; i < 100; i++) {
+            position = scanLine.nextPosition(100, 400, now += 16L);
+            assertTrue(position >= 100 && position < 400);
+        }
+    }
+
+    @Test
+    public void framesDoNotAllocate() {
+        com.sun.management.ThreadMXBean threads = threadMXBean();
+        Assume.assumeTrue(threads != null);
+
+        ScanLineAnimator scanLine = new ScanLineAnimator();
+        ResultPointBuffer points = new ResultPointBuffer(20);
+        float[] out = new float[40];
+        // 先跑一遍，让类加载和编译的开销不算在里面
+        runFrames(scanLine, points, out, 0L);
+        long threadId = Thread.currentThread().getId();
+        long before = threads.getThreadAllocatedBytes(threadId);
+        long sink = runFrames(scanLine, points, out, FRAMES * 16L);
+        long allocated = threads.getThreadAllocatedBytes(threadId) - before;
+        assertTrue(sink != 0);
+        // 允许计数本身带来的少量误差，但远小于每帧一个对象
+        assertTrue("allocated " + allocated + " bytes in " + FRAMES + " frames", allocated < FRAMES);
+    }
+
+    private static long runFrames(ScanLineAnimator scanLine, ResultPointBuffer points,
+                                  float[] out, long start) {
+        long sink = 0;
+        long now = start;
+        for (int i = 0; i < FRAMES; i++) {
+            points.add(i, i + 1);
+            points.add(i + 2, i + 3);
+            sink += scanLine.nextPosition(100, 400, now += 16L);
+            sink += points.drainTo(out);
+        }
+        return sink;
+    }
+
+    private static com.sun.management.ThreadMXBean threadMXBean() {
+        try {
+            java.lang.management.ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+            if (threads instanceof com.sun.management.ThreadMXBean) {
+                com.sun.management.ThreadMXBean hotspot = (com.sun.management.ThreadMXBean) threads;
+                if (hotspot.isThreadAllocatedMemorySupported()) {
+                    hotspot.setThreadAllocatedMemoryEnabled(true);
+                    return hotspot;
+                }
+            }
+        } catch (LinkageError e) {
+            // 不是HotSpot虚拟机
+        }
+        return null;
+    }
+
+}